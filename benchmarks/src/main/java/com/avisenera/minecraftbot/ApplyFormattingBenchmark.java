@@ -0,0 +1,132 @@
+package com.avisenera.minecraftbot;
+
+import com.avisenera.minecraftbot.hooks.Hook;
+import com.avisenera.minecraftbot.hooks.HookCache;
+import com.avisenera.minecraftbot.message.IRCMessage;
+import com.avisenera.minecraftbot.message.MCMessage;
+import com.avisenera.minecraftbot.message.Message;
+import com.avisenera.minecraftbot.message.Template;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Turning an event into the line that is relayed: filling in the formatting line,
+ * replacing hook variables from the cache, and translating the color codes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ApplyFormattingBenchmark {
+    private static final int LINES = 1024; // a power of two, see next()
+    private static final int PLAYERS = 32;
+
+    // "none" uses a formatting line without hook variables; "cached" has two, with values in the cache
+    @Param({"none", "cached"})
+    public String hooks;
+
+    @Param({"plain", "colors", "utf8"})
+    public String corpus;
+
+    private ConfigSnapshot config;
+    private HookCache cache;
+    private final LatencyStats latency = new LatencyStats();
+    private Template toIRC;
+    private Template toMinecraft;
+    private MCMessage[] fromMinecraft;
+    private IRCMessage[] fromIRC;
+    private int i = 0;
+
+    // A hook that always has a value, like a faction or rank plugin
+    static class FixedHook extends Hook {
+        private final String value;
+
+        FixedHook(String variable, String value) {
+            super(variable);
+            this.value = value;
+        }
+
+        @Override
+        protected String get(PluginManager pm, Player player) {
+            return value;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        FakeServer.install();
+        ConfigSnapshot.Builder values = new ConfigSnapshot.Builder();
+        values.ignore_list.addAll(Corpus.nicks(100, 8));
+        config = values.build();
+
+        cache = new HookCache(null);
+        if (hooks.equals("cached")) {
+            cache.register(new FixedHook("faction", "\u00A72Wolves"));
+            cache.register(new FixedHook("rank", "\u00A76Moderator"));
+            toIRC = Template.compile("&7[%faction%&7] %rank% &r<%name%&r> %message%");
+        } else {
+            toIRC = Template.compile("<%name%> %message%");
+        }
+        toMinecraft = Template.compile("&7[IRC] <%name%&7>&f %message%");
+
+        String[] lines;
+        if (corpus.equals("plain")) lines = Corpus.plain(LINES);
+        else if (corpus.equals("colors")) lines = Corpus.minecraftColors(LINES);
+        else lines = Corpus.longUTF8(LINES);
+        String[] ircLines = (corpus.equals("colors") ? Corpus.ircColors(LINES) : lines);
+        Object[] nicks = Corpus.mixedCaseNicks(PLAYERS, 9).toArray();
+
+        Player[] players = new Player[PLAYERS];
+        for (int p = 0; p < PLAYERS; p++) players[p] = FakeServer.player((String) nicks[p]);
+
+        fromMinecraft = new MCMessage[LINES];
+        fromIRC = new IRCMessage[LINES];
+        for (int n = 0; n < LINES; n++) {
+            MCMessage mc = new MCMessage();
+            mc.player = players[n % PLAYERS];
+            mc.name = mc.player.getDisplayName();
+            mc.message = lines[n];
+            fromMinecraft[n] = mc;
+
+            IRCMessage irc = new IRCMessage();
+            irc.name = (String) nicks[n % PLAYERS];
+            irc.message = ircLines[n];
+            fromIRC[n] = irc;
+        }
+
+        // Fill the cache, like the join event does on a real server
+        for (MCMessage mc : fromMinecraft) cache.apply("%", mc);
+    }
+
+    private int next() {
+        return (i = (i + 1) & (LINES - 1));
+    }
+
+    @Benchmark
+    public String toIRC() {
+        return format(toIRC, fromMinecraft[next()]);
+    }
+
+    @Benchmark
+    public String toMinecraft() {
+        return format(toMinecraft, fromIRC[next()]);
+    }
+
+    private String format(Template template, Message msg) {
+        return Message.applyFormatting(config, cache, latency, template, msg);
+    }
+}
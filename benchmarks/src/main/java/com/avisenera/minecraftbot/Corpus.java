@@ -0,0 +1,139 @@
+package com.avisenera.minecraftbot;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Lines and names that look like what a busy server relays.<br>
+ * Everything is generated from a fixed seed, so every run measures the same input.
+ */
+public final class Corpus {
+    private static final String[] WORDS = {
+        "hey", "anyone", "want", "to", "go", "mining", "the", "nether", "portal", "is", "at", "spawn",
+        "lol", "brb", "who", "took", "my", "diamonds", "creeper", "blew", "up", "house", "again", "gg",
+        "trade", "iron", "for", "emeralds", "base", "coords", "village", "farm", "server", "lag"
+    };
+    // French, German, Russian, Japanese, Chinese, Korean, Arabic, Spanish, symbols and emoji
+    private static final String[] UTF8_WORDS = {
+        "\u00E7a", "va", "\u00FCber", "gr\u00FC\u00DFe", "\u043F\u0440\u0438\u0432\u0435\u0442", "\u043C\u0438\u0440",
+        "\u3053\u3093\u306B\u3061\u306F", "\u4E16\u754C", "\uC548\uB155", "\u0645\u0631\u062D\u0628\u0627",
+        "\u00A1hola!", "\u00BFqu\u00E9", "\u2764", "\u2603", "\uD83D\uDE00", "\uD83C\uDF89", "caf\u00E9", "na\u00EFve"
+    };
+    private static final String MC_CODES = "0123456789abcdefklmnor";
+
+    private Corpus() {}
+
+    /**
+     * Ordinary chat lines, with no formatting codes.
+     */
+    public static String[] plain(int count) {
+        Random r = new Random(1);
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) lines[i] = words(r, WORDS, 4 + r.nextInt(12));
+        return lines;
+    }
+
+    /**
+     * Lines with Minecraft color codes before most words, as written by chat formatting plugins.
+     */
+    public static String[] minecraftColors(int count) {
+        Random r = new Random(2);
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            int n = 4 + r.nextInt(12);
+            for (int w = 0; w < n; w++) {
+                if (w > 0) sb.append(' ');
+                if (r.nextInt(4) != 0) sb.append('\u00A7').append(MC_CODES.charAt(r.nextInt(MC_CODES.length())));
+                sb.append(WORDS[r.nextInt(WORDS.length)]);
+            }
+            lines[i] = sb.toString();
+        }
+        return lines;
+    }
+
+    /**
+     * Lines with IRC colors (with and without backgrounds), hex colors and control codes.
+     */
+    public static String[] ircColors(int count) {
+        Random r = new Random(3);
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            int n = 4 + r.nextInt(12);
+            for (int w = 0; w < n; w++) {
+                if (w > 0) sb.append(' ');
+                switch (r.nextInt(6)) {
+                case 0: sb.append('\u0003').append(r.nextInt(16)); break;
+                case 1: sb.append('\u0003').append(String.format("%02d,%02d", r.nextInt(16), r.nextInt(16))); break;
+                case 2: sb.append('\u0003').append(16 + r.nextInt(83)); break;
+                case 3: sb.append('\u0004').append(String.format("%06X", r.nextInt(0x1000000))); break;
+                case 4: sb.append("\u0002\u001d\u001f".charAt(r.nextInt(3))); break;
+                default: break;
+                }
+                sb.append(WORDS[r.nextInt(WORDS.length)]);
+            }
+            sb.append('\u000f');
+            lines[i] = sb.toString();
+        }
+        return lines;
+    }
+
+    /**
+     * Long lines, close to the IRC line limit, mixing many scripts and emoji.
+     */
+    public static String[] longUTF8(int count) {
+        Random r = new Random(4);
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            while (sb.length() < 380) {
+                if (sb.length() > 0) sb.append(' ');
+                sb.append(r.nextBoolean() ? UTF8_WORDS[r.nextInt(UTF8_WORDS.length)] : WORDS[r.nextInt(WORDS.length)]);
+            }
+            lines[i] = sb.toString();
+        }
+        return lines;
+    }
+
+    /**
+     * Distinct IRC nicks, already in lower case like in the ignore list.
+     */
+    public static Set<String> nicks(int count, long seed) {
+        Random r = new Random(seed);
+        Set<String> nicks = new HashSet<String>(count * 2);
+        while (nicks.size() < count) nicks.add(nick(r).toLowerCase());
+        return nicks;
+    }
+
+    /**
+     * IRC nicks with their original case.
+     */
+    public static List<String> mixedCaseNicks(int count, long seed) {
+        Random r = new Random(seed);
+        List<String> nicks = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) nicks.add(nick(r));
+        return nicks;
+    }
+
+    private static String nick(Random r) {
+        String chars = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789_[]`^";
+        int len = 3 + r.nextInt(13);
+        StringBuilder sb = new StringBuilder(len);
+        sb.append((char) ('a' + r.nextInt(26)));
+        for (int i = 1; i < len; i++) sb.append(chars.charAt(r.nextInt(chars.length())));
+        return sb.toString();
+    }
+
+    private static String words(Random r, String[] from, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(from[r.nextInt(from.length)]);
+        }
+        return sb.toString();
+    }
+}
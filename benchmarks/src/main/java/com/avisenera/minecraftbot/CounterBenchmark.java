@@ -0,0 +1,52 @@
+package com.avisenera.minecraftbot;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counting relayed lines from many chat threads at once.<br>
+ * The lines used to be counted by MetricsLineCount.increment(), which took a lock
+ * for every line. That counter is kept here as the baseline to compare RelayStats to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(8)
+public class CounterBenchmark {
+    private final RelayStats stats = new RelayStats();
+    private final LockedCounter locked = new LockedCounter();
+
+    // The counter as it was before RelayStats
+    static class LockedCounter {
+        private static final Object lock = new Object();
+        private int count = 0;
+
+        void increment() {
+            synchronized (lock) {
+                count++;
+            }
+        }
+    }
+
+    @Benchmark
+    public void relayStats() {
+        stats.count(Keys.line_to_irc.chat, RelayStats.Outcome.relayed);
+    }
+
+    @Benchmark
+    public void locked() {
+        locked.increment();
+    }
+}
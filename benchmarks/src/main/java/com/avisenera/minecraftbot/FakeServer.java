@@ -0,0 +1,83 @@
+package com.avisenera.minecraftbot;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+import java.util.logging.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginManager;
+
+/**
+ * Just enough of a Bukkit server for the relay code to run in a benchmark.<br>
+ * Every method returns an empty value, except the few the relay needs. The benchmark
+ * thread counts as the main thread, so that hook values can be fetched.
+ */
+public final class FakeServer {
+    private FakeServer() {}
+
+    /**
+     * Makes Bukkit use a fake server, if it doesn't have one yet.
+     */
+    public static synchronized void install() {
+        if (Bukkit.getServer() != null) return;
+        final PluginManager pm = fake(PluginManager.class, null);
+        final Logger logger = Logger.getLogger("Benchmark");
+        Bukkit.setServer(fake(Server.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getPluginManager")) return pm;
+                if (name.equals("getLogger")) return logger;
+                if (name.equals("isPrimaryThread")) return true;
+                if (method.getReturnType() == String.class) return "Benchmark";
+                return empty(method.getReturnType());
+            }
+        }));
+    }
+
+    /**
+     * Creates a player with the given name.
+     */
+    public static Player player(final String name) {
+        final UUID id = UUID.nameUUIDFromBytes(name.getBytes());
+        return fake(Player.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String m = method.getName();
+                if (m.equals("getUniqueId")) return id;
+                if (m.equals("getName") || m.equals("getDisplayName") || m.equals("getPlayerListName")) return name;
+                if (m.equals("hashCode")) return id.hashCode();
+                if (m.equals("equals")) return proxy == args[0];
+                if (m.equals("toString")) return "FakePlayer{" + name + "}";
+                return empty(method.getReturnType());
+            }
+        });
+    }
+
+    private static <T> T fake(Class<T> type, InvocationHandler handler) {
+        if (handler == null) {
+            handler = new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return empty(method.getReturnType());
+                }
+            };
+        }
+        return type.cast(Proxy.newProxyInstance(FakeServer.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static Object empty(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        if (type == double.class) return 0d;
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        return 0;
+    }
+}
@@ -0,0 +1,62 @@
+package com.avisenera.minecraftbot;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Translating color codes, in both directions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FormattingBenchmark {
+    private static final int LINES = 1024; // a power of two, see next()
+
+    @Param({"plain", "colors", "utf8"})
+    public String corpus;
+
+    private String[] toIRC;
+    private String[] toMC;
+    private int i = 0;
+
+    @Setup
+    public void setup() {
+        if (corpus.equals("plain")) {
+            toIRC = Corpus.plain(LINES);
+            toMC = toIRC;
+        } else if (corpus.equals("colors")) {
+            toIRC = Corpus.minecraftColors(LINES);
+            toMC = Corpus.ircColors(LINES);
+        } else {
+            toIRC = Corpus.longUTF8(LINES);
+            toMC = toIRC;
+        }
+    }
+
+    private int next() {
+        return (i = (i + 1) & (LINES - 1));
+    }
+
+    @Benchmark
+    public String toIRC() {
+        return Formatting.toIRC(toIRC[next()]);
+    }
+
+    @Benchmark
+    public String toMC() {
+        return Formatting.toMC(toMC[next()]);
+    }
+}
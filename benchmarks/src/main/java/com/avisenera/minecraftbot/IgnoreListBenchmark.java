@@ -0,0 +1,71 @@
+package com.avisenera.minecraftbot;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Checking every IRC line's sender against the ignore list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class IgnoreListBenchmark {
+    private static final int NICKS = 1024; // a power of two, see next()
+
+    @Param({"10", "10000"})
+    public int size;
+
+    private ConfigSnapshot config;
+    private String[] ignored; // in the list, with different case
+    private String[] others;  // not in the list
+    private int i = 0;
+
+    @Setup
+    public void setup() {
+        Set<String> list = Corpus.nicks(size, 5);
+        ConfigSnapshot.Builder values = new ConfigSnapshot.Builder();
+        values.ignore_list.addAll(list);
+        config = values.build();
+
+        String[] listed = list.toArray(new String[list.size()]);
+        ignored = new String[NICKS];
+        for (int n = 0; n < NICKS; n++) ignored[n] = listed[n % listed.length].toUpperCase();
+
+        List<String> mixed = Corpus.mixedCaseNicks(NICKS * 2, 6);
+        others = new String[NICKS];
+        int n = 0;
+        for (String nick : mixed) {
+            if (n == NICKS) break;
+            if (!list.contains(nick.toLowerCase())) others[n++] = nick;
+        }
+    }
+
+    private int next() {
+        return (i = (i + 1) & (NICKS - 1));
+    }
+
+    @Benchmark
+    public boolean ignored() {
+        return config.isIgnored(ignored[next()]);
+    }
+
+    @Benchmark
+    public boolean notIgnored() {
+        return config.isIgnored(others[next()]);
+    }
+}
@@ -0,0 +1,58 @@
+package com.avisenera.minecraftbot.listeners;
+
+import com.avisenera.minecraftbot.Corpus;
+import com.avisenera.minecraftbot.Keys;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Finding out whether an IRC line is a command, which is done for every line from the channel.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CommandDispatchBenchmark {
+    private static final int LINES = 1024; // a power of two, see next()
+    private static final String[] COMMANDS = {"!players", "!time", "!mckick Steve griefing", "!mcban Steve"};
+
+    // Percentage of lines that are commands
+    @Param({"0", "5"})
+    public int commands;
+
+    @Param({"plain", "utf8"})
+    public String corpus;
+
+    private String[] lines;
+    private int i = 0;
+
+    @Setup
+    public void setup() {
+        lines = (corpus.equals("plain") ? Corpus.plain(LINES) : Corpus.longUTF8(LINES));
+        Random r = new Random(7);
+        for (int n = 0; n < LINES; n++)
+            if (r.nextInt(100) < commands) lines[n] = COMMANDS[r.nextInt(COMMANDS.length)];
+    }
+
+    private int next() {
+        return (i = (i + 1) & (LINES - 1));
+    }
+
+    @Benchmark
+    public Keys.commands commandOf() {
+        return IRCListener.commandOf(lines[next()]);
+    }
+}
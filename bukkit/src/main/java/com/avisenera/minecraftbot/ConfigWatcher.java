@@ -0,0 +1,109 @@
+package com.avisenera.minecraftbot;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches config.yml, ignorelist.txt and filterlist.txt, and reloads the configuration
+ * when any of them is changed. Editors often write a file several times when saving it, so
+ * the reload only happens once the files have been left alone for a moment, or after a few
+ * seconds at most. Other files written to the data folder don't hold up the reload.<br>
+ * Everything happens on this class's own thread, never on the main thread.
+ */
+public class ConfigWatcher implements Runnable {
+    private static final long DEBOUNCE = 500; // milliseconds
+    private static final long MAX_WAIT = 5000; // milliseconds, from the first change
+
+    private final MinecraftBot plugin;
+    private WatchService watcher;
+    private Thread thread;
+
+    public ConfigWatcher(MinecraftBot instance) {
+        plugin = instance;
+    }
+
+    /**
+     * Starts watching the plugin's data folder.
+     */
+    public synchronized void start() {
+        if (thread != null) return;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            plugin.getDataFolder().toPath().register(watcher,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            plugin.log(1, "Unable to watch the configuration files for changes: " + e.getMessage());
+            return;
+        }
+        thread = new Thread(this, "MinecraftBot config watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching and waits for the thread to end.
+     */
+    public synchronized void stop() {
+        if (thread == null) return;
+        try {
+            watcher.close();
+        } catch (IOException e) {}
+        if (thread != Thread.currentThread()) {
+            thread.interrupt();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        thread = null;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                if (!changed(watcher.take())) continue;
+
+                // Wait until the files haven't been touched for a while, but not forever
+                long last = System.nanoTime();
+                long giveUp = last + TimeUnit.MILLISECONDS.toNanos(MAX_WAIT);
+                while (true) {
+                    long wait = Math.min(last + TimeUnit.MILLISECONDS.toNanos(DEBOUNCE), giveUp) - System.nanoTime();
+                    if (wait <= 0) break;
+                    WatchKey key = watcher.poll(wait, TimeUnit.NANOSECONDS);
+                    if (key != null && changed(key)) last = System.nanoTime();
+                }
+
+                plugin.log(0, "Configuration files have changed. Reloading...");
+                plugin.reload();
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        } catch (ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    // Checks if any of the events were for one of the configuration files
+    private boolean changed(WatchKey key) {
+        boolean relevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) { // events were lost
+                relevant = true;
+                continue;
+            }
+            String name = ((Path) event.context()).getFileName().toString();
+            if (name.equals("config.yml") || name.equals("ignorelist.txt") || name.equals("filterlist.txt")) relevant = true;
+        }
+        key.reset();
+        return relevant;
+    }
+}
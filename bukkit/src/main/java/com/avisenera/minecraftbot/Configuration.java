@@ -1,30 +1,31 @@
 package com.avisenera.minecraftbot;
 
 import java.io.*;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 
 /**
  * This class manages the configuration values.
  * When it starts, it reads the configuration file and holds on
  * to all its contents.<br>
  * Other classes should always get the necessary values from this class
- * because the values will change when the configuration is reloaded.
+ * because the values will change when the configuration is reloaded.<br>
+ * All values are held in a {@link ConfigSnapshot}. Classes that need several
+ * values that belong together should get them from the same {@link #snapshot()}.
  */
 public class Configuration {
     private MinecraftBot plugin;
     
-    private boolean valid = false;
-    
-    private EnumMap<Keys.connection, String> connection;
-    private EnumMap<Keys.commands, String> commands;
-    private EnumMap<Keys.settings, String> settings;
-    private EnumMap<Keys.line_to_irc, String> line_to_irc;
-    private EnumMap<Keys.line_to_minecraft, String> line_to_minecraft;
-    private ArrayList<String> ignore_list;
+    // Replaced as a whole when the configuration is reloaded. Readers never need a lock.
+    private volatile ConfigSnapshot snapshot;
 
     /**
      * When instantiating this class, the configuration is not loaded.<br>
@@ -36,19 +37,25 @@ public class Configuration {
     
     /**
      * (Re)loads values from the configuration file. If an error occurs,
-     * the current configuration values are not changed.
+     * the current configuration values are not changed.<br>
+     * This may be called from any thread.
      * @return False if an error occured.
      */
     public boolean load() {
         FileConfiguration config = getConfigFile(plugin);
         if (config == null) return false;
         
-        EnumMap<Keys.connection, String> new_c = new EnumMap<Keys.connection, String>(Keys.connection.class);
-        EnumMap<Keys.commands, String> new_co = new EnumMap<Keys.commands, String>(Keys.commands.class);
-        EnumMap<Keys.settings, String> new_s = new EnumMap<Keys.settings, String>(Keys.settings.class);
-        EnumMap<Keys.line_to_irc, String> new_lti = new EnumMap<Keys.line_to_irc, String>(Keys.line_to_irc.class);
-        EnumMap<Keys.line_to_minecraft, String> new_ltm = new EnumMap<Keys.line_to_minecraft, String>(Keys.line_to_minecraft.class);
-        ArrayList<String> new_ignores = new ArrayList<String>();
+        ConfigSnapshot.Builder values = new ConfigSnapshot.Builder();
+        EnumMap<Keys.connection, String> new_c = values.connection;
+        EnumMap<Keys.commands, String> new_co = values.commands;
+        EnumMap<Keys.settings, String> new_s = values.settings;
+        EnumMap<Keys.line_to_irc, String> new_lti = values.line_to_irc;
+        EnumMap<Keys.line_to_minecraft, String> new_ltm = values.line_to_minecraft;
+        EnumMap<Keys.line_to_irc, String> new_aw = values.aggregate_window;
+        EnumMap<Keys.line_to_irc, String> new_as = values.aggregate_summary;
+        Set<String> new_ignores = values.ignore_list;
+        List<String> new_filter = values.filter;
+        List<RewriteRules.Definition> new_rw = values.rewrites;
         
         for (Keys.connection c : Keys.connection.values())
             new_c.put(c, config.getString("connection."+c, ""));
@@ -60,6 +67,14 @@ public class Configuration {
             new_lti.put(c, config.getString("line_formatting.to_irc."+c, ""));
         for (Keys.line_to_minecraft c : Keys.line_to_minecraft.values())
             new_ltm.put(c, config.getString("line_formatting.to_minecraft."+c, ""));
+        for (Keys.line_to_irc c : Keys.line_to_irc.values()) {
+            new_aw.put(c, config.getString("aggregate.window."+c, ""));
+            new_as.put(c, config.getString("aggregate.summary."+c, ""));
+        }
+        ConfigurationSection rewrite = config.getConfigurationSection("rewrite");
+        if (rewrite != null) for (String name : rewrite.getKeys(false))
+            new_rw.add(new RewriteRules.Definition(name, rewrite.getString(name+".pattern", ""),
+                    rewrite.getString(name+".replace", ""), rewrite.getString(name+".direction", "both")));
         
         boolean accepted = true;
         
@@ -74,6 +89,22 @@ public class Configuration {
         } catch (IOException e1) {
             plugin.log(2, "An error occured while attempting to read the ignore list.");
             accepted = false;
+        } finally {
+            try { ignores.close(); }
+            catch (IOException e) {}
+        }
+        
+        // Getting filter list
+        BufferedReader filter = getFilterList(plugin);
+        if (filter == null) accepted = false;
+        else try {
+            while ((lineinput = filter.readLine()) != null) new_filter.add(lineinput);
+        } catch (IOException e1) {
+            plugin.log(2, "An error occured while attempting to read the filter list.");
+            accepted = false;
+        } finally {
+            try { filter.close(); }
+            catch (IOException e) {}
         }
         
         // Checking for all required values #########################
@@ -127,25 +158,33 @@ public class Configuration {
         }
         
         if (accepted) {
-            connection = new_c;
-            commands = new_co;
-            settings = new_s;
-            line_to_irc = new_lti;
-            line_to_minecraft = new_ltm;
-            ignore_list = new_ignores;
+            ConfigSnapshot loaded = values.build();
+            for (String error : loaded.filter().getErrors()) plugin.log(1, "filterlist.txt: " + error);
+            for (String error : loaded.rewrites().getErrors()) plugin.log(1, "rewrite: " + error);
+            synchronized (this) {
+                snapshot = loaded;
+            }
             plugin.log(0, "Configuration has been loaded.");
-            
-            valid = true;
         }
         
         return accepted;
     }
     
+    /**
+     * Returns the current configuration values, or null if they were never loaded.
+     * The snapshot never changes, even when the configuration is reloaded.
+     */
+    public ConfigSnapshot snapshot() {
+        return snapshot;
+    }
+    
     /**
      * Returns the Map containing all the configuration options under connection.
      */
     public EnumMap<Keys.connection, String> connection() {
-        return connection.clone();
+        ConfigSnapshot s = snapshot;
+        if (s == null) return new EnumMap<Keys.connection, String>(Keys.connection.class);
+        return s.connection();
     }
     
     /**
@@ -153,11 +192,9 @@ public class Configuration {
      * @param value Equivalent to config.getString("connection.(value)")
      */
     public String connection(Keys.connection value) {
-        if (!valid || value == null) return "";
-        
-        String rv = connection.get(value);
-        if (rv == null) return "";
-        else return rv;
+        ConfigSnapshot s = snapshot;
+        if (s == null) return "";
+        return s.connection(value);
     }
     
     /**
@@ -165,11 +202,19 @@ public class Configuration {
      * @param value Equivalent to config.getString("settings.(value)", "")
      */
     public String settingsS(Keys.settings value) {
-        if (!valid || value == null) return "";
-        
-        String rv = settings.get(value);
-        if (rv == null) return "";
-        else return rv;
+        ConfigSnapshot s = snapshot;
+        if (s == null) return "";
+        return s.settingsS(value);
+    }
+    
+    /**
+     * Returns the given settings value as a number in the configuration file.
+     * @param value Equivalent to config.getInt("settings.(value)", def)
+     */
+    public int settingsI(Keys.settings value, int def) {
+        ConfigSnapshot s = snapshot;
+        if (s == null) return def;
+        return s.settingsI(value, def);
     }
     
     /**
@@ -177,8 +222,9 @@ public class Configuration {
      * @param value Equivalent to config.getBoolean("commands.(value)", false)
      */
     public boolean commandsB(Keys.commands value) {
-        String rv = commandsS(value);
-        return (rv.equalsIgnoreCase("true"));
+        ConfigSnapshot s = snapshot;
+        if (s == null) return false;
+        return s.commandsB(value);
     }
     
     /**
@@ -186,11 +232,9 @@ public class Configuration {
      * @param value Equivalent to config.getString("commands.(value)", "")
      */
     public String commandsS(Keys.commands value) {
-        if (!valid || value == null) return "";
-        
-        String rv = commands.get(value);
-        if (rv == null) return "";
-        else return rv;
+        ConfigSnapshot s = snapshot;
+        if (s == null) return "";
+        return s.commandsS(value);
     }
     
     /**
@@ -198,8 +242,9 @@ public class Configuration {
      * @param value Equivalent to config.getBoolean("settings.(value)", false)
      */
     public boolean settingsB(Keys.settings value) {
-        String rv = settingsS(value);
-        return (rv.equalsIgnoreCase("true"));
+        ConfigSnapshot s = snapshot;
+        if (s == null) return false;
+        return s.settingsB(value);
     }
     
     /**
@@ -207,30 +252,55 @@ public class Configuration {
      * @param value Equivalent to config.getString("line_formatting.to_irc.(value)")
      */
     public String line_to_irc(Keys.line_to_irc value) {
-        if (!valid || value == null) return "";
-        
-        String rv = line_to_irc.get(value);
-        if (rv == null) return "";
-        else return rv;
+        ConfigSnapshot s = snapshot;
+        if (s == null || value == null) return "";
+        return s.template(value).toString();
     }
     
     /**
      * Returns the formatting string value that was entered in the configuration file.
-     * @param value Equivalent to config.getString("line_formatting.to_irc.(value)")
+     * @param value Equivalent to config.getString("line_formatting.to_minecraft.(value)")
      */
     public String line_to_minecraft(Keys.line_to_minecraft value) {
-        if (!valid || value == null) return "";
-        
-        String rv = line_to_minecraft.get(value);
-        if (rv == null) return "";
-        else return rv;
+        ConfigSnapshot s = snapshot;
+        if (s == null || value == null) return "";
+        return s.template(value).toString();
+    }
+    
+    /**
+     * Returns a set containing all the current ignore values. The set can't be modified.
+     * Use {@link #addIgnore(String)} and {@link #removeIgnore(String)} instead.
+     */
+    public Set<String> ignoreList() {
+        ConfigSnapshot s = snapshot;
+        if (s == null) return Collections.emptySet();
+        return s.ignoreList();
+    }
+    
+    /**
+     * Adds a nick to the ignore list. The change is lost when the configuration is reloaded.
+     * @return False if the nick was already in the ignore list.
+     */
+    public synchronized boolean addIgnore(String nick) {
+        ConfigSnapshot s = snapshot;
+        if (s == null) return false;
+        Set<String> ignores = new HashSet<String>(s.ignoreList());
+        if (!ignores.add(nick.toLowerCase())) return false;
+        snapshot = s.withIgnoreList(ignores);
+        return true;
     }
     
     /**
-     * Returns an array list containing all the current ignore values.
+     * Removes a nick from the ignore list. The change is lost when the configuration is reloaded.
+     * @return False if the nick was not in the ignore list.
      */
-    public ArrayList<String> ignoreList() {
-        return ignore_list;
+    public synchronized boolean removeIgnore(String nick) {
+        ConfigSnapshot s = snapshot;
+        if (s == null) return false;
+        Set<String> ignores = new HashSet<String>(s.ignoreList());
+        if (!ignores.remove(nick.toLowerCase())) return false;
+        snapshot = s.withIgnoreList(ignores);
+        return true;
     }
     
     /**
@@ -243,8 +313,10 @@ public class Configuration {
         // Returns false if an error occured.
         try {
             if (!plugin.getDataFolder().exists()) plugin.getDataFolder().mkdirs();
-            plugin.getConfig().load(new File(plugin.getDataFolder(), "config.yml"));
-            return plugin.getConfig();
+            // A new object every time, so that the file can be read from any thread
+            YamlConfiguration config = new YamlConfiguration();
+            config.load(new File(plugin.getDataFolder(), "config.yml"));
+            return config;
         } catch (FileNotFoundException e) {
             plugin.log(0, "No config file found. Creating a default configuration file.");
             plugin.log(0, "You must edit this file before being able to use this plugin.");
@@ -281,6 +353,32 @@ public class Configuration {
         return null;
     }
     
+    private BufferedReader getFilterList(MinecraftBot plugin) {
+        // Checks if the filter list file exists, and if it doesn't, creates it.
+        try {
+            File fl = new File(plugin.getDataFolder(), "filterlist.txt");
+            if (!fl.exists()) {
+                // Create the new filter list
+                fl.createNewFile();
+                BufferedWriter out = new BufferedWriter(new FileWriter(fl));
+                out.write("# Filter list - Anything matching a line in this file is replaced with asterisks in chat,"); out.newLine();
+                out.write("# both from Minecraft to IRC and from IRC to Minecraft."); out.newLine();
+                out.write("# Words are found whatever their case, and also when written in leetspeak (such as h3ll0)."); out.newLine();
+                out.write("# A word with * at its start or end is also found inside longer words."); out.newLine();
+                out.write("# Lines starting with regex: are regular expressions, such as:"); out.newLine();
+                out.write("#regex:\\b\\d{1,3}(\\.\\d{1,3}){3}\\b"); out.newLine();
+                out.newLine();
+                out.write("#One word or expression per line."); out.newLine();
+                out.flush();
+                out.close();
+            }
+            return new BufferedReader(new FileReader(fl));
+        } catch (IOException ex) {
+            plugin.log(2, "Failed to create new filter list file. Check if the plugins folder is writable.");
+        }
+        return null;
+    }
+    
     private void saveFile(MinecraftBot plugin) {
         try
         {
@@ -0,0 +1,204 @@
+package com.avisenera.minecraftbot;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.zip.GZIPOutputStream;
+import org.bukkit.Bukkit;
+
+/**
+ * Posts metrics reports to a web address, on its own thread.<br>
+ * Each report is sent URL-encoded, the way mcstats.org expects it. When more than one
+ * report is waiting, up to maxBatch of them go out in one request, one per line.
+ * The request body is gzipped. A request that fails is tried again later, waiting
+ * twice as long after every failure. Only a few reports are kept while waiting; when
+ * there are too many, the oldest ones are thrown away.
+ */
+public class HttpMetricsSink implements MetricsSink, Runnable {
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 10000;
+    private static final int CAPACITY = 12; // two hours of reports at the default interval
+    private static final long MIN_BACKOFF = 30000;
+    private static final long MAX_BACKOFF = 3600000;
+
+    private final URL url;
+    private final int maxBatch;
+    private final Runnable onFirstUpdate;
+    private final ArrayDeque<Map<String, String>> pending = new ArrayDeque<Map<String, String>>();
+    private final Thread thread;
+    private volatile boolean closed = false;
+    private long dropped = 0;
+
+    /**
+     * @param url Where to post the reports
+     * @param maxBatch The most reports to send in one request. mcstats.org only reads one.
+     * @param onFirstUpdate Run when mcstats.org says this is the first report this hour, or null
+     */
+    public HttpMetricsSink(URL url, int maxBatch, Runnable onFirstUpdate) {
+        this.url = url;
+        this.maxBatch = Math.max(1, maxBatch);
+        this.onFirstUpdate = onFirstUpdate;
+        thread = new Thread(this, "MinecraftBot metrics sender");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void submit(Map<String, String> report) {
+        synchronized (pending) {
+            if (closed) return;
+            if (pending.size() >= CAPACITY) {
+                pending.pollFirst();
+                dropped++;
+            }
+            pending.addLast(report);
+            pending.notify();
+        }
+    }
+
+    @Override
+    public void close(long timeout) {
+        synchronized (pending) {
+            closed = true;
+            pending.clear();
+            pending.notify();
+        }
+        thread.interrupt();
+        try {
+            thread.join(timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the amount of reports thrown away because too many were waiting.
+     */
+    public long getDropped() {
+        synchronized (pending) {
+            return dropped;
+        }
+    }
+
+    @Override
+    public void run() {
+        long backoff = MIN_BACKOFF;
+        boolean failing = false;
+        while (!closed) {
+            List<Map<String, String>> batch = new ArrayList<Map<String, String>>(maxBatch);
+            try {
+                synchronized (pending) {
+                    while (pending.isEmpty() && !closed) pending.wait();
+                    while (batch.size() < maxBatch && !pending.isEmpty()) batch.add(pending.pollFirst());
+                }
+                if (closed) return;
+
+                post(batch);
+                if (failing) Bukkit.getLogger().log(Level.INFO, "[Metrics] Reports are being sent again");
+                failing = false;
+                backoff = MIN_BACKOFF;
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                if (!failing) Bukkit.getLogger().log(Level.INFO, "[Metrics] " + e.getMessage()
+                        + " - trying again in " + (backoff / 1000) + " seconds");
+                failing = true;
+
+                // Put the batch back in front, unless newer reports took its place
+                synchronized (pending) {
+                    for (int i = batch.size() - 1; i >= 0 && !closed; i--) {
+                        if (pending.size() >= CAPACITY) {
+                            dropped += i + 1;
+                            break;
+                        }
+                        pending.addFirst(batch.get(i));
+                    }
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF);
+            }
+        }
+    }
+
+    private void post(List<Map<String, String>> batch) throws IOException {
+        StringBuilder data = new StringBuilder();
+        for (Map<String, String> report : batch) {
+            if (data.length() > 0) data.append('\n');
+            encode(data, report);
+        }
+        byte[] body = data.toString().getBytes(StandardCharsets.UTF_8);
+
+        // Mineshafter creates a socks proxy, so we can safely bypass it
+        // It does not reroute POST requests so we need to go around it
+        HttpURLConnection connection = (HttpURLConnection) (isMineshafterPresent()
+                ? url.openConnection(Proxy.NO_PROXY) : url.openConnection());
+        try {
+            connection.setConnectTimeout(CONNECT_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setRequestProperty("Connection", "close");
+
+            OutputStream out = new GZIPOutputStream(connection.getOutputStream());
+            try {
+                out.write(body);
+            } finally {
+                out.close();
+            }
+
+            int status = connection.getResponseCode();
+            if (status < 200 || status >= 300) throw new IOException("Server answered with HTTP " + status);
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8));
+            String response;
+            try {
+                response = reader.readLine();
+            } finally {
+                reader.close();
+            }
+
+            if (response != null && response.startsWith("ERR")) throw new IOException(response);
+            if (response != null && onFirstUpdate != null && response.contains("OK This is your first update this hour"))
+                onFirstUpdate.run();
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static void encode(StringBuilder buffer, Map<String, String> report) throws UnsupportedEncodingException {
+        boolean first = true;
+        for (Map.Entry<String, String> e : report.entrySet()) {
+            if (!first) buffer.append('&');
+            first = false;
+            buffer.append(URLEncoder.encode(e.getKey(), "UTF-8")).append('=')
+                  .append(URLEncoder.encode(e.getValue(), "UTF-8"));
+        }
+    }
+
+    private static boolean isMineshafterPresent() {
+        try {
+            Class.forName("mineshafter.MineServer");
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
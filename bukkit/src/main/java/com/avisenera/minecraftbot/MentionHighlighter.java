@@ -0,0 +1,190 @@
+package com.avisenera.minecraftbot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.bukkit.ChatColor;
+import org.bukkit.Server;
+import org.bukkit.Sound;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Highlights the name of online players in chat from IRC, for the players mentioned,
+ * and may play them a sound (see {@link Keys.settings#mention_highlight} and
+ * {@link Keys.settings#mention_sound}).<br>
+ * The names of online players are put in an {@link AhoCorasick} automaton, so a line is
+ * searched for all of them in one pass. The automaton is built again in the background
+ * when players join or quit, and replaces the old one when it's done. Only the players
+ * mentioned get a line of their own, made by adding colors around their name in the line
+ * everybody else gets. Like a broadcast, the line only goes to players allowed to see
+ * broadcasts, and to the console.
+ */
+public class MentionHighlighter implements Listener {
+    // The online players' names at one moment. Never modified after being created.
+    private static class Index {
+        final AhoCorasick names;
+        final UUID[] ids; // by the index of the name
+
+        Index(AhoCorasick names, UUID[] ids) {
+            this.names = names;
+            this.ids = ids;
+        }
+    }
+
+    private final MinecraftBot plugin;
+    private final ConcurrentHashMap<UUID, String> online = new ConcurrentHashMap<UUID, String>();
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final AtomicLong builds = new AtomicLong();
+    private long built = 0; // the build in use, so that an older one never replaces it
+    private volatile Index index = new Index(new AhoCorasick(new String[0]), new UUID[0]);
+    private volatile String badSound = null; // last sound name that didn't exist, so it's only logged once
+
+    public MentionHighlighter(MinecraftBot instance) {
+        plugin = instance;
+    }
+
+    /**
+     * Starts following who is online. Must be called on the main thread.
+     */
+    public void start() {
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        for (Player p : plugin.getServer().getOnlinePlayers()) online.put(p.getUniqueId(), p.getName());
+        rebuild();
+    }
+
+    /**
+     * Shows a line from IRC to everyone who sees broadcasts, with the names of the players
+     * mentioned in it highlighted for them. Safe to call from any thread.
+     * @param line The line, formatted for Minecraft
+     * @param sender The nick of the IRC user who said it. A player with the same name isn't
+     * highlighted, since it's usually the same person.
+     * @return False if nobody is mentioned, or mentions are turned off. The line isn't shown then.
+     */
+    public boolean deliver(String line, String sender) {
+        String highlight = plugin.config.settingsS(Keys.settings.mention_highlight);
+        String sound = plugin.config.settingsS(Keys.settings.mention_sound);
+        if (highlight.isEmpty() && sound.isEmpty()) return false;
+
+        // Where each mentioned player's name is in the line
+        final Index current = index;
+        final String text = line;
+        final Map<UUID, List<int[]>> mentioned = new HashMap<UUID, List<int[]>>();
+        current.names.find(line, new AhoCorasick.Hits() {
+            @Override
+            protected void hit(int word, int start, int end) {
+                if (!isWord(text, start, end)) return;
+                UUID id = current.ids[word];
+                List<int[]> spans = mentioned.get(id);
+                if (spans == null) mentioned.put(id, spans = new ArrayList<int[]>());
+                spans.add(new int[] {start, end});
+            }
+        });
+        for (UUID id : new ArrayList<UUID>(mentioned.keySet()))
+            if (sender.equalsIgnoreCase(online.get(id))) mentioned.remove(id);
+        if (mentioned.isEmpty()) return false;
+
+        String color = highlight.replace("&", "\u00A7");
+        plugin.getServer().getConsoleSender().sendMessage(line);
+        List<UUID> pinged = new ArrayList<UUID>();
+        for (UUID id : online.keySet()) {
+            Player p = plugin.getServer().getPlayer(id);
+            if (p == null || !p.hasPermission(Server.BROADCAST_CHANNEL_USERS)) continue;
+            List<int[]> spans = mentioned.get(id);
+            if (spans != null) pinged.add(id);
+            p.sendMessage(spans == null || color.isEmpty() ? line : highlight(line, spans, color));
+        }
+        if (!sound.isEmpty() && !pinged.isEmpty()) ping(pinged, sound);
+        return true;
+    }
+
+    // Plays the sound to the mentioned players, on the main thread
+    private void ping(final Iterable<UUID> players, final String name) {
+        final Sound sound;
+        try {
+            sound = Sound.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            if (!name.equals(badSound)) plugin.log(1, "mention_sound is not a sound: " + name);
+            badSound = name;
+            return;
+        }
+        plugin.getServer().getScheduler().runTask(plugin, new Runnable() {
+            @Override
+            public void run() {
+                for (UUID id : players) {
+                    Player p = plugin.getServer().getPlayer(id);
+                    if (p != null) p.playSound(p.getLocation(), sound, 1, 1);
+                }
+            }
+        });
+    }
+
+    // Colors the spans, and brings back the colors the line had before each of them
+    private static String highlight(String line, List<int[]> spans, String color) {
+        StringBuilder sb = new StringBuilder(line.length() + spans.size() * 8);
+        int done = 0;
+        for (int[] span : spans) {
+            if (span[0] < done) continue; // overlaps the last one
+            sb.append(line, done, span[0]).append(color).append(line, span[0], span[1]);
+            String before = ChatColor.getLastColors(line.substring(0, span[0]));
+            sb.append(before.isEmpty() ? Formatting.RESET.mc : before);
+            done = span[1];
+        }
+        return sb.append(line, done, line.length()).toString();
+    }
+
+    // Names are only mentioned as a whole, not as part of a longer word
+    private static boolean isWord(String text, int start, int end) {
+        if (start > 0 && isNameChar(text.charAt(start - 1)) && (start < 2 || text.charAt(start - 2) != '\u00A7')) return false;
+        return end == text.length() || !isNameChar(text.charAt(end));
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    // Builds a new automaton in the background, unless one is about to be built already
+    private void rebuild() {
+        if (!pending.compareAndSet(false, true)) return;
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            @Override
+            public void run() {
+                pending.set(false); // changes from now on need another build
+                long build = builds.incrementAndGet();
+                List<String> names = new ArrayList<String>();
+                List<UUID> ids = new ArrayList<UUID>();
+                for (Map.Entry<UUID, String> e : online.entrySet()) {
+                    ids.add(e.getKey());
+                    names.add(e.getValue());
+                }
+                Index next = new Index(new AhoCorasick(names.toArray(new String[names.size()])), ids.toArray(new UUID[ids.size()]));
+                synchronized (MentionHighlighter.this) {
+                    if (build < built) return;
+                    built = build;
+                    index = next;
+                }
+            }
+        });
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        online.put(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+        rebuild();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        online.remove(event.getPlayer().getUniqueId());
+        rebuild();
+    }
+}
@@ -35,20 +35,17 @@ import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.scheduler.BukkitTask;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
-import java.net.Proxy;
 import java.net.URL;
-import java.net.URLConnection;
 import java.net.URLEncoder;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.logging.Level;
@@ -63,6 +60,7 @@ import java.util.logging.Level;
  * <code>
  * Graph createGraph(String name); <br/>
  * void addCustomData(Metrics.Plotter plotter); <br/>
+ * void setSink(MetricsSink sink); <br/>
  * void start(); <br/>
  * </code>
  */
@@ -139,6 +137,11 @@ public class Metrics {
      */
     private volatile BukkitTask task = null;
 
+    /**
+     * Where reports are sent
+     */
+    private MetricsSink sink = null;
+
     public Metrics(final Plugin plugin) throws IOException {
         if (plugin == null) {
             throw new IllegalArgumentException("Plugin cannot be null");
@@ -206,7 +209,8 @@ public class Metrics {
     /**
      * Start measuring statistics. This will immediately create an async repeating task as the plugin and send
      * the initial data to the metrics backend, and then after that it will post in increments of
-     * PING_INTERVAL * 1200 ticks.
+     * PING_INTERVAL * 1200 ticks. The task only collects the data; the sink sends it on its own thread,
+     * so a slow or unreachable backend never holds up the scheduler.
      *
      * @return True if statistics measuring is running, otherwise false.
      */
@@ -321,23 +325,23 @@ public class Metrics {
     }
 
     /**
-     * Generic method that posts a plugin to the metrics website
+     * Collects the plugin's data and hands it to the sink, which sends it on its own thread
      */
     private void postPlugin(final boolean isPing) throws IOException {
         // The plugin's description file containg all of the plugin data such as name, version, author, etc
         final PluginDescriptionFile description = plugin.getDescription();
 
-        // Construct the post data
-        final StringBuilder data = new StringBuilder();
-        data.append(encode("guid")).append('=').append(encode(guid));
-        encodeDataPair(data, "version", description.getVersion());
-        encodeDataPair(data, "server", Bukkit.getVersion());
-        encodeDataPair(data, "players", Integer.toString(Bukkit.getServer().getOnlinePlayers().size()));
-        encodeDataPair(data, "revision", String.valueOf(REVISION));
+        // Construct the report
+        final Map<String, String> data = new LinkedHashMap<String, String>();
+        data.put("guid", guid);
+        data.put("version", description.getVersion());
+        data.put("server", Bukkit.getVersion());
+        data.put("players", Integer.toString(Bukkit.getServer().getOnlinePlayers().size()));
+        data.put("revision", String.valueOf(REVISION));
 
         // If we're pinging, append it
         if (isPing) {
-            encodeDataPair(data, "ping", "true");
+            data.put("ping", "true");
         }
 
         // Acquire a lock on the graphs, which lets us make the assumption we also lock everything
@@ -358,91 +362,90 @@ public class Metrics {
                     // value of plotter.getValue()
                     final String value = Integer.toString(plotter.getValue());
 
-                    // Add it to the http post data :)
-                    encodeDataPair(data, key, value);
+                    data.put(key, value);
                 }
             }
         }
 
-        // Create the url
-        URL url = new URL(BASE_URL + String.format(REPORT_URL, encode(plugin.getDescription().getName())));
-
-        // Connect to the website
-        URLConnection connection;
-
-        // Mineshafter creates a socks proxy, so we can safely bypass it
-        // It does not reroute POST requests so we need to go around it
-        if (isMineshafterPresent()) {
-            connection = url.openConnection(Proxy.NO_PROXY);
-        } else {
-            connection = url.openConnection();
-        }
-
-        connection.setDoOutput(true);
-
-        // Write the data
-        final OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-        writer.write(data.toString());
-        writer.flush();
-
-        // Now read the response
-        final BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-        final String response = reader.readLine();
-
-        // close resources
-        writer.close();
-        reader.close();
+        getSink().submit(data);
+    }
 
-        if (response == null || response.startsWith("ERR")) {
-            throw new IOException(response); //Throw the exception
-        } else {
-            // Is this the first update this hour?
-            if (response.contains("OK This is your first update this hour")) {
-                synchronized (graphs) {
-                    final Iterator<Graph> iter = graphs.iterator();
+    /**
+     * Resets every plotter, after the metrics website said a new hour started
+     */
+    private void resetPlotters() {
+        synchronized (graphs) {
+            final Iterator<Graph> iter = graphs.iterator();
 
-                    while (iter.hasNext()) {
-                        final Graph graph = iter.next();
+            while (iter.hasNext()) {
+                final Graph graph = iter.next();
 
-                        for (Plotter plotter : graph.getPlotters()) {
-                            plotter.reset();
-                        }
-                    }
+                for (Plotter plotter : graph.getPlotters()) {
+                    plotter.reset();
                 }
             }
         }
     }
 
     /**
-     * Check if mineshafter is present. If it is, we need to bypass it to send POST requests
+     * Sends reports somewhere other than the metrics website, such as a local collector.
+     * Must be called before {@link #start()}.
      *
-     * @return
+     * @param sink
      */
-    private boolean isMineshafterPresent() {
-        try {
-            Class.forName("mineshafter.MineServer");
-            return true;
-        } catch (Exception e) {
-            return false;
+    public synchronized void setSink(final MetricsSink sink) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Sink cannot be null");
         }
+        this.sink = sink;
+    }
+
+    /**
+     * Sends reports to another address, such as a local collector, in batches.
+     * Plotters are reset when the collector answers like the metrics website does at the start
+     * of an hour; otherwise they keep counting up. Must be called before {@link #start()}.
+     *
+     * @param url
+     * @param maxBatch The most reports to send in one request
+     */
+    public synchronized void setSink(final URL url, final int maxBatch) {
+        setSink(new HttpMetricsSink(url, maxBatch, new Runnable() {
+            public void run() {
+                resetPlotters();
+            }
+        }));
     }
 
     /**
-     * <p>Encode a key/value data pair to be used in a HTTP post request. This INCLUDES a & so the first
-     * key/value pair MUST be included manually, e.g:</p>
-     * <code>
-     * StringBuffer data = new StringBuffer();
-     * data.append(encode("guid")).append('=').append(encode(guid));
-     * encodeDataPair(data, "version", description.getVersion());
-     * </code>
+     * Returns the sink reports are sent to, creating the one for the metrics website if none was set
      *
-     * @param buffer
-     * @param key
-     * @param value
      * @return
+     * @throws IOException
+     */
+    private synchronized MetricsSink getSink() throws IOException {
+        if (sink == null) {
+            URL url = new URL(BASE_URL + String.format(REPORT_URL, encode(plugin.getDescription().getName())));
+            setSink(url, 1);
+        }
+        return sink;
+    }
+
+    /**
+     * Stops the metrics task and the sink. Unlike {@link #disable()}, this does not opt out.
      */
-    private static void encodeDataPair(final StringBuilder buffer, final String key, final String value) throws UnsupportedEncodingException {
-        buffer.append('&').append(encode(key)).append('=').append(encode(value));
+    public void close() {
+        synchronized (optOutLock) {
+            if (task != null) {
+                plugin.getServer().getScheduler().cancelTask(task.getTaskId());
+                task = null;
+            }
+        }
+        MetricsSink s;
+        synchronized (this) {
+            s = sink;
+            sink = null;
+        }
+        if (s != null) s.close(1000);
     }
 
     /**
@@ -0,0 +1,31 @@
+package com.avisenera.minecraftbot;
+
+/**
+ * Metrics plotter that reports the amount of lines relayed.
+ * The lines are counted by {@link RelayStats}, this only reads the totals.
+ */
+public class MetricsLineCount extends Metrics.Plotter {
+    private final RelayStats stats;
+    private volatile long base;
+
+    public MetricsLineCount(RelayStats stats) {
+        super("Lines Relayed");
+        this.stats = stats;
+        this.base = 0;
+    }
+
+    private long relayed() {
+        return stats.totalToIRC(RelayStats.Outcome.relayed)
+                + stats.totalToMinecraft(RelayStats.Outcome.relayed);
+    }
+
+    @Override
+    public int getValue() {
+        return (int) (relayed() - base);
+    }
+
+    @Override
+    public void reset() {
+        base = relayed();
+    }
+}
@@ -0,0 +1,36 @@
+package com.avisenera.minecraftbot;
+
+/**
+ * Metrics plotter that reports the amount of lines in one direction with one outcome.
+ * The plotter shows the amount since the last time the metrics were reset.
+ */
+public class MetricsOutcomeCount extends Metrics.Plotter {
+    private final RelayStats stats;
+    private final boolean toIRC;
+    private final RelayStats.Outcome outcome;
+    private volatile long base = 0;
+
+    /**
+     * @param toIRC True for lines going to IRC, false for lines going to Minecraft
+     */
+    public MetricsOutcomeCount(String name, RelayStats stats, boolean toIRC, RelayStats.Outcome outcome) {
+        super(name);
+        this.stats = stats;
+        this.toIRC = toIRC;
+        this.outcome = outcome;
+    }
+
+    private long current() {
+        return (toIRC ? stats.totalToIRC(outcome) : stats.totalToMinecraft(outcome));
+    }
+
+    @Override
+    public int getValue() {
+        return (int) (current() - base);
+    }
+
+    @Override
+    public void reset() {
+        base = current();
+    }
+}
@@ -0,0 +1,23 @@
+package com.avisenera.minecraftbot;
+
+import java.util.Map;
+
+/**
+ * Somewhere {@link Metrics} sends its reports to.<br>
+ * A report is the set of fields collected from the server and every graph's
+ * plotters, such as "guid", "players" or "C~~Default~~Lines Relayed".
+ */
+public interface MetricsSink {
+    /**
+     * Hands over a report to be sent. This must return right away; sending
+     * happens later, on the sink's own thread.
+     * @param report The report's fields, in the order they were collected
+     */
+    public void submit(Map<String, String> report);
+
+    /**
+     * Stops sending. Reports that were not sent yet are thrown away.
+     * @param timeout How long (in milliseconds) to wait for a report that is being sent
+     */
+    public void close(long timeout);
+}
@@ -0,0 +1,363 @@
+package com.avisenera.minecraftbot;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.bukkit.scheduler.BukkitTask;
+import org.pircbotx.User;
+
+import com.avisenera.minecraftbot.hooks.Faction;
+import com.avisenera.minecraftbot.hooks.Hook;
+import com.avisenera.minecraftbot.hooks.HookCache;
+import com.avisenera.minecraftbot.listeners.CommandListener;
+import com.avisenera.minecraftbot.listeners.IRCCommands;
+import com.avisenera.minecraftbot.listeners.IRCManager;
+import com.avisenera.minecraftbot.listeners.MainListener;
+
+public class MinecraftBot extends JavaPlugin implements RelayHost {
+    private static final Logger logger = Logger.getLogger("Minecraft");
+    
+    public Configuration config;
+    private Relay relay; // a new one each time the plugin is enabled, since disabling shuts it down
+    private IRCManager irc;
+    private MainListener playerListener;
+    private CommandListener commandListener;
+    private IRCCommands ircCommands;
+    
+    private HookCache hooks;
+    // Registered by other plugins. Kept while the plugin is disabled, and added to each new relay.
+    private final CopyOnWriteArrayList<MBListener> extListeners = new CopyOnWriteArrayList<MBListener>();
+    private final CopyOnWriteArrayList<Hook> extHooks = new CopyOnWriteArrayList<Hook>();
+    private final OpLog opLog = new OpLog(this);
+    private final PlayerIndex players = new PlayerIndex(this);
+    private final MentionHighlighter mentions = new MentionHighlighter(this);
+    private ConfigWatcher watcher;
+    private PrometheusExporter exporter;
+    private BukkitTask ticker;
+    
+    public MinecraftBot() {
+        super();
+    }
+    
+    // Used by tests, which run the plugin without a real server
+    MinecraftBot(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
+    
+    @Override
+    public void onEnable() {
+        config = new Configuration(this);
+
+        if (config.load()) { // If configuration properly loaded
+            // Initialize everything
+            startRelay();
+            
+            // Register everything
+            getServer().getPluginManager().registerEvents(playerListener, this);
+            getCommand("n").setExecutor(commandListener);
+            getCommand("names").setExecutor(commandListener);
+            getCommand("irc").setExecutor(commandListener);
+            getCommand("minecraftbot").setExecutor(commandListener);
+            hooks.start();
+            opLog.start();
+            players.start();
+            mentions.start();
+            startTicker();
+            
+            startMetrics();
+            
+            // Start the bot
+            irc.connect();
+            
+            watcher = new ConfigWatcher(this);
+            if (config.settingsB(Keys.settings.watch_config)) watcher.start();
+            
+            exporter = new PrometheusExporter(this, irc);
+            int port = config.settingsI(Keys.settings.metrics_port, 0);
+            if (port > 0) exporter.start(port);
+        } else {
+            log(2, "Error loading the configuration. Reload the plugin to try again.");
+            getServer().getPluginManager().disablePlugin(this);
+        }
+    }
+    
+    /**
+     * Creates everything that relays lines, without registering anything with Bukkit.
+     * The configuration must already be loaded.
+     */
+    void startRelay() {
+        relay = new Relay(this);
+        relay.start();
+        irc = relay.getIRCManager();
+        playerListener = new MainListener(this, relay.getRelayStats(), relay.getPipeline());
+        commandListener = new CommandListener(this, irc);
+        ircCommands = new IRCCommands(this, irc);
+        hooks = new HookCache(this);
+        hooks.register(new Faction());
+        for (Hook hook : extHooks) hooks.register(hook);
+        relay.setVariables(hooks);
+        relay.registerListener(playerListener);
+        
+        // Listeners may have unregistered themselves, which only the old relay heard about
+        for (MBListener listener : extListeners) {
+            if (listener.isUnregistered()) extListeners.remove(listener);
+            else relay.registerListener(listener);
+        }
+    }
+    
+    // Lets the relay measure the ticks per second, so it can do less while the server is lagging
+    private void startTicker() {
+        final LoadShedder shedder = relay.getLoadShedder();
+        ticker = getServer().getScheduler().runTaskTimer(this, new Runnable() {
+            @Override
+            public void run() {
+                shedder.tick();
+            }
+        }, 1, 1);
+    }
+    
+    /**
+     * Returns the listener relaying the game's events.
+     */
+    public MainListener getPlayerListener() {
+        return playerListener;
+    }
+    
+    // Used by tests, to send events straight to the relay
+    IRCManager getIRCManager() {
+        return irc;
+    }
+    
+    @Override
+    public void onDisable() {
+        if (watcher != null) watcher.stop();
+        if (ticker != null) ticker.cancel();
+        if (exporter != null) exporter.stop();
+        if (metrics != null) metrics.close();
+        if (irc != null) {
+            String qm = config.settingsS(Keys.settings.quit_message);
+            relay.shutdown(qm, config.settingsI(Keys.settings.shutdown_timeout, 3000));
+        }
+        if (hooks != null) hooks.stop();
+        opLog.stop();
+    }
+    
+    /**
+     * Reloads the configuration. The new values are used right away, except for
+     * the connection values: if any of those changed, the bot reconnects to IRC.
+     * This may be called from any thread.
+     * @return False if an error occured. The current values are then kept.
+     */
+    public synchronized boolean reload() {
+        ConfigSnapshot old = config.snapshot();
+        if (!config.load()) return false;
+        ConfigSnapshot loaded = config.snapshot();
+        
+        List<String> changes = loaded.differences(old);
+        if (changes.isEmpty()) {
+            log(0, "No configuration values have changed.");
+            return true;
+        }
+        log(0, "Changed: " + String.join(", ", changes));
+        
+        hooks.invalidateAll();
+        if (loaded.settingsB(Keys.settings.watch_config)) watcher.start();
+        else watcher.stop();
+        
+        int port = loaded.settingsI(Keys.settings.metrics_port, 0);
+        if (port != exporter.getPort()) {
+            exporter.stop();
+            if (port > 0) exporter.start(port);
+        }
+        
+        if (loaded.connectionDiffers(old)) {
+            log(0, "Connection settings have changed. Reconnecting...");
+            irc.reconnect(loaded.settingsS(Keys.settings.quit_message));
+        }
+        return true;
+    }
+    
+    @Override
+    public void log(int level, String message) {
+        message = "[MinecraftBot] " + message;
+        
+        if (level == 1) logger.warning(message);
+        else if (level == 2) logger.severe(message);
+        else logger.info(message);
+        
+        // Shown to ops later, on the main thread
+        if (config.settingsB(Keys.settings.send_log_to_ops)) opLog.log(message);
+    }
+    
+    @Override
+    public ConfigSnapshot currentConfig() {
+        return config.snapshot();
+    }
+    
+    @Override
+    public String getVersion() {
+        return getDescription().getVersion();
+    }
+    
+    @Override
+    public void onCommand(Keys.commands command, String sender, String message) {
+        ircCommands.run(command, sender, message);
+    }
+    
+    /**
+     * Returns the relay engine, which does the work that doesn't involve Bukkit.
+     * A new one is made each time the plugin is enabled; null before that.
+     */
+    public Relay getRelay() {
+        return relay;
+    }
+    
+    /**
+     * Returns the message formatter.
+     */
+    public MessageFormatter getFormatter() {
+        return relay.getFormatter();
+    }
+    
+    /**
+     * Returns the index used to find players by name.
+     */
+    public PlayerIndex getPlayerIndex() {
+        return players;
+    }
+    
+    /**
+     * Returns what highlights the names of players mentioned from IRC.
+     */
+    public MentionHighlighter getMentions() {
+        return mentions;
+    }
+    
+    /**
+     * Returns the cache holding the values of hook variables.
+     */
+    public HookCache getHookCache() {
+        return hooks;
+    }
+    
+    /**
+     * Registers a hook. Its variable will be available in all lines sent to IRC.
+     * Hooks stay registered while the plugin is disabled and enabled again.
+     * @param hook The hook object to register
+     */
+    public void registerHook(Hook hook) {
+        extHooks.addIfAbsent(hook);
+        HookCache cache = hooks;
+        if (cache != null) cache.register(hook);
+    }
+    /**
+     * Removes a hook. Its variable will no longer be replaced.
+     * @param hook The hook object to remove
+     */
+    public void removeHook(Hook hook) {
+        extHooks.remove(hook);
+        HookCache cache = hooks;
+        if (cache != null) cache.unregister(hook);
+    }
+    
+    /**
+     * Registers a listener. By registering the listener, it will be able to send and receive IRC messages.
+     * Listeners stay registered while the plugin is disabled and enabled again; lines sent
+     * before the plugin is enabled are dropped.
+     * @param listener The listener object to register
+     */
+    public void registerListener(MBListener listener) {
+        extListeners.addIfAbsent(listener);
+        Relay current = relay;
+        if (current != null) current.registerListener(listener);
+        else listener.initialize(null);
+    }
+    /**
+     * Removes a listener. They will no longer receive IRC messages.
+     * @param listener The listener object to remove
+     */
+    public void removeListener(MBListener listener) {
+        extListeners.remove(listener);
+        Relay current = relay;
+        if (current != null) current.removeListener(listener);
+    }
+    
+    /**
+     * Returns the counters of relayed lines.
+     */
+    public RelayStats getRelayStats() {
+        return relay.getRelayStats();
+    }
+    
+    /**
+     * Returns the latency histograms of relayed lines.
+     */
+    public LatencyStats getLatencyStats() {
+        return relay.getLatencyStats();
+    }
+    
+    /**
+     * Returns the record of recently relayed lines.
+     */
+    public RelayRecorder getRelayRecorder() {
+        return relay.getRelayRecorder();
+    }
+    
+    // Metrics
+    MetricsLineCount mlc;
+    private Metrics metrics;
+    private void startMetrics() {
+        mlc = new MetricsLineCount(relay.getRelayStats());
+        try {
+            metrics = new Metrics(this);
+            
+            // Send the statistics to a local collector instead of mcstats.org
+            String url = config.settingsS(Keys.settings.metrics_url);
+            if (!url.isEmpty()) {
+                try {
+                    metrics.setSink(new URL(url), 16);
+                } catch (MalformedURLException e) {
+                    log(1, "metrics_url is not a valid address, sending statistics to mcstats.org instead: " + url);
+                }
+            }
+            
+            // Send number of users on the IRC channel
+            metrics.addCustomData(new Metrics.Plotter("IRC Users") {
+                @Override
+                public int getValue() {
+                    try {return irc.usercount();}
+                    catch (NullPointerException e) {return 0;}
+                }
+            });
+            
+            // Get stats on how often LineSender is being used ("Lines Relayed" count)
+            metrics.addCustomData(mlc);
+            
+            // What happened to the lines, in each direction
+            Metrics.Graph outcomes = metrics.createGraph("Relay Outcomes");
+            RelayStats stats = relay.getRelayStats();
+            for (RelayStats.Outcome o : RelayStats.Outcome.values()) {
+                outcomes.addPlotter(new MetricsOutcomeCount("To IRC " + o, stats, true, o));
+                outcomes.addPlotter(new MetricsOutcomeCount("To Minecraft " + o, stats, false, o));
+            }
+            
+            metrics.start();
+        } catch (IOException ex) {
+            // Ignore errors
+        }
+    }
+    
+    public Set<User> getIRCUserList()
+    {
+    	return irc.getIRCUserList();
+    }
+}
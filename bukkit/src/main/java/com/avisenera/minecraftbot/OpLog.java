@@ -0,0 +1,209 @@
+package com.avisenera.minecraftbot;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Shows the plugin's log messages to the players allowed to manage it.<br>
+ * Messages may be logged from any thread, so they are only put in a queue there. A task on
+ * the main thread sends them a few times per second, to the players in a set that is kept
+ * up to date as players join and quit, instead of checking every online player's permissions
+ * for every message. Permissions are checked again now and then, and right after commands
+ * that usually change them.<br>
+ * A message that was already shown in the last minute isn't shown again. Once the minute is
+ * over, it's shown once more with the amount of times it came up, such as "(\u00D712)".
+ */
+public class OpLog implements Listener, Runnable {
+    static final String PERMISSION = "minecraftbot.manage";
+    private static final long PERIOD = 5;          // ticks between sends
+    private static final int RECHECK = 200;        // ticks between permission checks
+    private static final int MAX_LINES = 5;        // lines sent at once; the rest wait for the next send
+    private static final int CAPACITY = 256;       // lines waiting; more are not shown
+    private static final long WINDOW = TimeUnit.SECONDS.toNanos(60);
+
+    private final MinecraftBot plugin;
+    // Replaced as a whole when permissions are checked again, so it's never seen half-built.
+    // Only changed on the main thread; read from any thread.
+    private volatile Set<UUID> subscribers = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<String> incoming = new ConcurrentLinkedQueue<String>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger lost = new AtomicInteger();
+    private volatile boolean recheck = true;
+    private BukkitTask task;
+
+    // Only used on the main thread
+    private final ArrayDeque<String> outgoing = new ArrayDeque<String>();
+    private final Map<String, Repeat> recent = new HashMap<String, Repeat>();
+    private int ticks = 0;
+
+    // A message shown recently, and how many times it came up again since
+    private static class Repeat {
+        long shown;
+        int hidden = 0;
+
+        Repeat(long shown) {
+            this.shown = shown;
+        }
+    }
+
+    public OpLog(MinecraftBot instance) {
+        plugin = instance;
+    }
+
+    /**
+     * Starts following who may see the log and sending them messages.
+     */
+    public void start() {
+        if (task != null) return;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this, 1, PERIOD);
+    }
+
+    /**
+     * Stops sending messages. Messages still waiting are not shown.
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        subscribers = ConcurrentHashMap.newKeySet();
+        incoming.clear();
+        size.set(0);
+    }
+
+    /**
+     * Queues a message to be shown. Safe to call from any thread.
+     * Who sees it is decided when it is sent.
+     */
+    public void log(String message) {
+        if (task == null) return;
+        if (size.incrementAndGet() > CAPACITY) {
+            size.decrementAndGet();
+            lost.incrementAndGet();
+            return;
+        }
+        incoming.add(message);
+    }
+
+    /**
+     * Returns the amount of players who see the log.
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    // Sends the waiting messages. Runs on the main thread.
+    @Override
+    public void run() {
+        ticks += PERIOD;
+        if (recheck || ticks >= RECHECK) {
+            ticks = 0;
+            recheck = false;
+            Set<UUID> allowed = ConcurrentHashMap.newKeySet();
+            for (Player p : plugin.getServer().getOnlinePlayers())
+                if (p.hasPermission(PERMISSION)) allowed.add(p.getUniqueId());
+            subscribers = allowed;
+        }
+
+        long now = System.nanoTime();
+        String message;
+        while ((message = incoming.poll()) != null) {
+            size.decrementAndGet();
+            Repeat r = recent.get(message);
+            if (r != null && now - r.shown < WINDOW) {
+                r.hidden++;
+                continue;
+            }
+            if (r == null) recent.put(message, new Repeat(now));
+            else {
+                message = repeated(message, r.hidden + 1);
+                r.shown = now;
+                r.hidden = 0;
+            }
+            outgoing.add(message);
+        }
+
+        // Messages that stopped coming up are shown once more with their count
+        for (Iterator<Map.Entry<String, Repeat>> it = recent.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Repeat> e = it.next();
+            Repeat r = e.getValue();
+            if (now - r.shown < WINDOW) continue;
+            if (r.hidden > 0) outgoing.add(repeated(e.getKey(), r.hidden));
+            it.remove();
+        }
+
+        int n = lost.getAndSet(0);
+        if (n > 0) outgoing.add("[MinecraftBot] " + n + " log message" + (n==1?" was":"s were") + " not shown.");
+        while (outgoing.size() > CAPACITY) outgoing.pollFirst();
+
+        for (int i = 0; i < MAX_LINES && !outgoing.isEmpty(); i++) send(outgoing.pollFirst());
+    }
+
+    private static String repeated(String message, int times) {
+        return message + " (\u00D7" + times + ")";
+    }
+
+    private void send(String message) {
+        Set<UUID> current = subscribers;
+        for (UUID id : current) {
+            Player p = plugin.getServer().getPlayer(id);
+            if (p == null) current.remove(id);
+            else p.sendMessage(Formatting.GRAY + message);
+        }
+    }
+
+    private void check(Player p) {
+        Set<UUID> current = subscribers;
+        if (p.hasPermission(PERMISSION)) current.add(p.getUniqueId());
+        else current.remove(p.getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        check(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        subscribers.remove(event.getPlayer().getUniqueId());
+    }
+
+    // Permissions may have changed. They are checked on the next send.
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerCommandPreprocess(PlayerCommandPreprocessEvent event) {
+        if (changesPermissions(event.getMessage().substring(1))) recheck = true;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onServerCommand(ServerCommandEvent event) {
+        if (changesPermissions(event.getCommand())) recheck = true;
+    }
+
+    private static boolean changesPermissions(String command) {
+        String c = command.toLowerCase();
+        int space = c.indexOf(' ');
+        if (space != -1) c = c.substring(0, space);
+        int colon = c.indexOf(':'); // such as minecraft:op
+        if (colon != -1) c = c.substring(colon + 1);
+        return c.equals("op") || c.equals("deop") || c.startsWith("perm") || c.equals("pex")
+                || c.equals("lp") || c.equals("luckperms") || c.startsWith("manu") || c.startsWith("mang") || c.equals("reload");
+    }
+}
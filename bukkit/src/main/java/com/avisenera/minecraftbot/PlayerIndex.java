@@ -0,0 +1,174 @@
+package com.avisenera.minecraftbot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+/**
+ * Finds players by name, whether they are online or not, for commands given from IRC.<br>
+ * Names are kept in lowercase, mapped to the player's UUID. Everyone who played on the
+ * server before is loaded in the background when the plugin starts, and names are updated
+ * as players join, so players who changed their name are found by their new one. Names
+ * may be shortened as long as only one player's name starts that way.<br>
+ * The names online players have in the player list, which other plugins may change, are
+ * indexed too: when players join, and again every few seconds.
+ */
+public class PlayerIndex implements Listener, Runnable {
+    private static final long LIST_NAMES = 100; // ticks between indexing list names
+    // A name given up by a name change may be taken by another account after 37 days
+    private static final long NAME_HELD = TimeUnit.DAYS.toMillis(37);
+
+    private final MinecraftBot plugin;
+    private final ConcurrentHashMap<String, UUID> byName = new ConcurrentHashMap<String, UUID>();
+    private final ConcurrentSkipListMap<String, UUID> sorted = new ConcurrentSkipListMap<String, UUID>(); // for prefixes
+    private final ConcurrentHashMap<UUID, String> names = new ConcurrentHashMap<UUID, String>(); // as they are written
+    // Replaced as a whole when list names are indexed again. Only used on the main thread.
+    private Map<String, UUID> byListName = new ConcurrentHashMap<String, UUID>();
+
+    /**
+     * A player found by name.
+     */
+    public static class Match {
+        public final UUID id;
+        public final String name;
+
+        Match(UUID id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    public PlayerIndex(MinecraftBot instance) {
+        plugin = instance;
+    }
+
+    /**
+     * Starts following joins, and loads everyone who played before in the background.
+     * Must be called on the main thread.
+     */
+    public void start() {
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        for (Player p : plugin.getServer().getOnlinePlayers()) put(p.getUniqueId(), p.getName(), true);
+        plugin.getServer().getScheduler().runTaskTimer(plugin, this, 1, LIST_NAMES);
+
+        // Reading every player's data takes a while on large servers
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+            @Override
+            public void run() {
+                int loaded = 0;
+                for (OfflinePlayer p : plugin.getServer().getOfflinePlayers()) {
+                    String name = p.getName();
+                    if (name == null) continue;
+                    put(p.getUniqueId(), name, false);
+                    loaded++;
+                }
+                plugin.log(0, "Indexed the names of " + loaded + " players.");
+            }
+        });
+    }
+
+    /**
+     * Returns the amount of players known.
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Finds a player by their name, or by the start of their name if no name matches fully.
+     * Among several names starting that way, an online player is picked if they are the only one.
+     * @param name The name, in any case
+     * @param candidates Filled with the players that could be meant if the name is ambiguous, or null
+     * @return The player, or null if none or more than one could be meant
+     */
+    public Match find(String name, List<String> candidates) {
+        String key = name.toLowerCase();
+        UUID id = byName.get(key);
+        if (id != null) return new Match(id, names.get(id));
+
+        // Names starting with the given name
+        List<UUID> all = new ArrayList<UUID>();
+        List<UUID> online = new ArrayList<UUID>();
+        for (Map.Entry<String, UUID> e : sorted.subMap(key, key + Character.MAX_VALUE).entrySet()) {
+            all.add(e.getValue());
+            if (plugin.getServer().getPlayer(e.getValue()) != null) online.add(e.getValue());
+        }
+        if (all.size() == 1) id = all.get(0);
+        else if (online.size() == 1) id = online.get(0);
+        if (id != null) return new Match(id, names.get(id));
+
+        if (candidates != null) for (UUID c : all) candidates.add(names.get(c));
+        return null;
+    }
+
+    /**
+     * Finds an online player by the name shown in the player list, which in contrast to
+     * getDisplayName() does not include colours. Must be called on the main thread.
+     * @param listName The name, as it is shown
+     * @return The player, or null if no online player has that name in the list
+     */
+    public Player findOnline(String listName) {
+        UUID id = byListName.get(listName);
+        if (id == null) return null;
+        Player p = plugin.getServer().getPlayer(id);
+        return (p != null && listName.equals(p.getPlayerListName()) ? p : null);
+    }
+
+    /**
+     * Checks if a player found by name may not be known by that name anymore, so that the
+     * name may belong to another account now: the server knows them by another name, or
+     * they haven't played for longer than a name is held after a name change.
+     * Doesn't look anything up online.
+     */
+    public boolean isStale(Match match) {
+        OfflinePlayer p = plugin.getServer().getOfflinePlayer(match.id);
+        if (p.isOnline()) return false;
+        if (p.getName() != null && !p.getName().equalsIgnoreCase(match.name)) return true;
+        return System.currentTimeMillis() - p.getLastPlayed() > NAME_HELD;
+    }
+
+    // Indexes the list names of online players again. Runs on the main thread.
+    @Override
+    public void run() {
+        Map<String, UUID> next = new ConcurrentHashMap<String, UUID>();
+        for (Player p : plugin.getServer().getOnlinePlayers()) next.put(p.getPlayerListName(), p.getUniqueId());
+        byListName = next;
+    }
+
+    // Remembers a player's name. Names from joins replace older ones; names loaded from
+    // the server's files are only added if nothing newer is known.
+    private void put(UUID id, String name, boolean current) {
+        String old = (current ? names.put(id, name) : names.putIfAbsent(id, name));
+        if (old != null && !current) return;
+        if (old != null && !old.equalsIgnoreCase(name)) {
+            byName.remove(old.toLowerCase(), id);
+            sorted.remove(old.toLowerCase(), id);
+        }
+        byName.put(name.toLowerCase(), id);
+        sorted.put(name.toLowerCase(), id);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Player p = event.getPlayer();
+        put(p.getUniqueId(), p.getName(), true);
+        byListName.put(p.getPlayerListName(), p.getUniqueId()); // as set by the plugins that handled the join
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        Player p = event.getPlayer();
+        byListName.remove(p.getPlayerListName(), p.getUniqueId());
+    }
+}
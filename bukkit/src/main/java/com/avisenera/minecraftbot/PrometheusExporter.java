@@ -0,0 +1,193 @@
+package com.avisenera.minecraftbot;
+
+import com.avisenera.minecraftbot.listeners.IRCManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Serves the plugin's statistics in the Prometheus text format, on
+ * http://127.0.0.1:(port)/metrics.<br>
+ * Everything served here is already counted by other classes, so a scrape only
+ * reads numbers. It never uses the Bukkit API and never waits for the main thread.
+ */
+public class PrometheusExporter implements HttpHandler {
+    // Histogram buckets, in nanoseconds
+    private static final long[] BOUNDS = {
+        1000L, 2500L, 5000L, 10000L, 25000L, 50000L, 100000L, 250000L, 500000L,
+        1000000L, 2500000L, 5000000L, 10000000L, 25000000L, 50000000L, 100000000L, 250000000L, 500000000L,
+        1000000000L, 2500000000L, 5000000000L, 10000000000L
+    };
+
+    private final MinecraftBot plugin;
+    private final IRCManager irc;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public PrometheusExporter(MinecraftBot instance, IRCManager irc) {
+        this.plugin = instance;
+        this.irc = irc;
+    }
+
+    /**
+     * Starts listening on the loopback address.
+     * @param port The port to listen on
+     * @return False if the port could not be used
+     */
+    public synchronized boolean start(int port) {
+        if (server != null) return true;
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            plugin.log(1, "Unable to serve metrics on port " + port + ": " + e.getMessage());
+            return false;
+        }
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "MinecraftBot metrics");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        server.setExecutor(executor);
+        server.createContext("/metrics", this);
+        server.start();
+        plugin.log(0, "Serving metrics on http://127.0.0.1:" + port + "/metrics");
+        return true;
+    }
+
+    /**
+     * Stops listening.
+     */
+    public synchronized void stop() {
+        if (server == null) return;
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+
+    public synchronized int getPort() {
+        return (server == null ? 0 : server.getAddress().getPort());
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Writes all statistics in the Prometheus text format.
+     */
+    String scrape() {
+        StringBuilder sb = new StringBuilder(16384);
+
+        RelayStats stats = plugin.getRelayStats();
+        header(sb, "minecraftbot_lines_total", "counter", "Lines handled by the relay.");
+        for (Keys.line_to_irc k : Keys.line_to_irc.values())
+            for (RelayStats.Outcome o : RelayStats.Outcome.values())
+                sample(sb, "minecraftbot_lines_total", "direction=\"to_irc\",type=\"" + k + "\",outcome=\"" + o + "\"", stats.get(k, o));
+        for (Keys.line_to_minecraft k : Keys.line_to_minecraft.values())
+            for (RelayStats.Outcome o : RelayStats.Outcome.values())
+                sample(sb, "minecraftbot_lines_total", "direction=\"to_minecraft\",type=\"" + k + "\",outcome=\"" + o + "\"", stats.get(k, o));
+
+        LatencyStats latency = plugin.getLatencyStats();
+        header(sb, "minecraftbot_relay_latency_seconds", "histogram", "Time spent by relayed lines in each stage.");
+        for (boolean toIRC : new boolean[] {true, false}) {
+            for (LatencyStats.Stage stage : LatencyStats.Stage.values()) {
+                LatencyHistogram h = latency.get(toIRC, stage);
+                String labels = "direction=\"" + (toIRC ? "to_irc" : "to_minecraft") + "\",stage=\"" + stage + "\"";
+                histogram(sb, "minecraftbot_relay_latency_seconds", labels, h);
+            }
+        }
+
+        header(sb, "minecraftbot_main_thread_seconds", "histogram", "Time event handlers spent on the main thread before handing a line off.");
+        for (Keys.line_to_irc k : Keys.line_to_irc.values()) {
+            LatencyHistogram h = plugin.getPlayerListener().getMainThreadTime(k);
+            if (h.count() == 0) continue;
+            histogram(sb, "minecraftbot_main_thread_seconds", "handler=\"" + k + "\"", h);
+        }
+
+        List<WordFilter.Rule> rules = plugin.getRelay().getConfig().filter().getRules();
+        if (!rules.isEmpty()) {
+            header(sb, "minecraftbot_filter_hits_total", "counter", "Matches of each filter rule, by its line among the rules, since the filter list was loaded.");
+            for (int i = 0; i < rules.size(); i++)
+                sample(sb, "minecraftbot_filter_hits_total", "rule=\"" + (i + 1) + "\",kind=\"" + (rules.get(i).isRegex() ? "regex" : "word") + "\"", rules.get(i).getHits());
+        }
+
+        header(sb, "minecraftbot_outbound_queue_lines", "gauge", "Lines waiting to be sent to IRC.");
+        sample(sb, "minecraftbot_outbound_queue_lines", null, irc.queuedLines());
+
+        header(sb, "minecraftbot_irc_reconnects_total", "counter", "Times the bot connected again after the first connection.");
+        sample(sb, "minecraftbot_irc_reconnects_total", null, irc.getReconnects());
+
+        long lag = irc.getLag();
+        if (lag >= 0) {
+            header(sb, "minecraftbot_irc_lag_seconds", "gauge", "Time the IRC server last took to answer a ping.");
+            sb.append("minecraftbot_irc_lag_seconds ").append(seconds(lag)).append('\n');
+        }
+
+        header(sb, "minecraftbot_irc_channel_members", "gauge", "Users in the IRC channel.");
+        sample(sb, "minecraftbot_irc_channel_members", null, irc.getMemberCount());
+
+        LoadShedder shedder = plugin.getRelay().getLoadShedder();
+        header(sb, "minecraftbot_server_tps", "gauge", "Server ticks per second over the last few seconds.");
+        sb.append("minecraftbot_server_tps ").append(shedder.getTPS()).append('\n');
+
+        header(sb, "minecraftbot_load_shedding_stage", "gauge", "How much relaying work is skipped because the server is lagging, from 0 to 3.");
+        sample(sb, "minecraftbot_load_shedding_stage", null, shedder.getStage().ordinal());
+
+        header(sb, "minecraftbot_load_shedding_changes_total", "counter", "Times the load shedding stage changed.");
+        sample(sb, "minecraftbot_load_shedding_changes_total", null, shedder.getChanges());
+
+        return sb.toString();
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String labels, long value) {
+        sb.append(name);
+        if (labels != null) sb.append('{').append(labels).append('}');
+        sb.append(' ').append(value).append('\n');
+    }
+
+    private static void histogram(StringBuilder sb, String name, String labels, LatencyHistogram h) {
+        long count = h.count();
+        long[] cumulative = h.cumulative(BOUNDS);
+        for (int i = 0; i < BOUNDS.length; i++)
+            sample(sb, name + "_bucket", labels + ",le=\"" + seconds(BOUNDS[i]) + "\"", cumulative[i]);
+        sample(sb, name + "_bucket", labels + ",le=\"+Inf\"", count);
+        sb.append(name).append("_sum{").append(labels).append("} ").append(seconds(h.sum())).append('\n');
+        sample(sb, name + "_count", labels, count);
+    }
+
+    private static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
@@ -0,0 +1,23 @@
+package com.avisenera.minecraftbot.hooks;
+
+import com.massivecraft.factions.P;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+
+public class Faction extends Hook {
+
+    public Faction() {
+        super("faction");
+    }
+
+    @Override
+    protected String get(PluginManager pm, Player player) {
+        Plugin factionsPlugin = pm.getPlugin("Factions");
+        if (factionsPlugin == null) return null;
+        if (!(factionsPlugin instanceof com.massivecraft.factions.P)) return null;
+
+        P p = (P) factionsPlugin;
+        return p.getPlayerFactionTag(player);
+    }
+}
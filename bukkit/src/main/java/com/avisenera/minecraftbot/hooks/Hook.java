@@ -0,0 +1,63 @@
+package com.avisenera.minecraftbot.hooks;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginManager;
+
+/**
+ * A hook provides the value of a single variable (such as %faction%) using data
+ * from another plugin.<br>
+ * Hooks are only ever asked for values on the main server thread. The values are
+ * kept in the {@link HookCache}, which is what the relay reads from.
+ * Other plugins may add their own hooks (prefix, suffix, group, ...) with
+ * {@link com.avisenera.minecraftbot.MinecraftBot#registerHook(Hook)}.
+ */
+public abstract class Hook {
+    private final String variable;
+
+    // Refresh cost accounting, updated by HookCache
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong refreshNanos = new AtomicLong();
+
+    /**
+     * @param variable The variable name, without % signs. For example, "faction".
+     */
+    protected Hook(String variable) {
+        this.variable = variable.toLowerCase();
+    }
+
+    /**
+     * Returns the variable name handled by this hook, without % signs.
+     */
+    public final String getVariable() {
+        return variable;
+    }
+
+    /**
+     * Gets the value of this hook's variable for the given player.
+     * This is only called from the main server thread.
+     * @param pm The server's plugin manager
+     * @param player The player to get the value for
+     * @return The value, or null if there is none
+     */
+    protected abstract String get(PluginManager pm, Player player);
+
+    /**
+     * Returns the amount of times this hook has been asked for a value.
+     */
+    public final long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    /**
+     * Returns the total time spent getting values from this hook, in nanoseconds.
+     */
+    public final long getRefreshNanos() {
+        return refreshNanos.get();
+    }
+
+    final void recordRefresh(long nanos) {
+        refreshes.incrementAndGet();
+        refreshNanos.addAndGet(nanos);
+    }
+}
@@ -0,0 +1,269 @@
+package com.avisenera.minecraftbot.hooks;
+
+import com.avisenera.minecraftbot.Keys;
+import com.avisenera.minecraftbot.MinecraftBot;
+import com.avisenera.minecraftbot.Variables;
+import com.avisenera.minecraftbot.message.MCMessage;
+import com.avisenera.minecraftbot.message.Message;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.PluginEnableEvent;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Holds the values of all hook variables for every online player.<br>
+ * Other plugins are not safe to use from the async chat thread, so the values are
+ * only ever fetched on the main thread: when a player joins, and then again
+ * whenever they are older than the configured time to live. The relay only reads
+ * from this cache, which does not need any locking.<br>
+ * Values that may be out of date, such as after a reload or when a plugin is enabled,
+ * are only marked stale: they are still used until they are fetched again, so that
+ * lines formatted off the main thread never lose their variables. Values are only
+ * thrown away when the player quits.
+ */
+public class HookCache implements Listener, Runnable, Variables {
+    private static final int DEFAULT_TTL = 30; // seconds
+
+    private final MinecraftBot plugin;
+    private final ConcurrentHashMap<UUID, Entry> entries = new ConcurrentHashMap<UUID, Entry>();
+    private volatile Hook[] hooks = new Hook[0];
+    private BukkitTask task;
+
+    // Values for a single player. Never modified after being created.
+    private static class Entry {
+        final Hook[] hooks; // the hooks the values came from, in the same order
+        final String[] values;
+        final long loaded;
+        final boolean stale; // fetched again on the next refresh
+        final Map<String, String> byVariable;
+
+        Entry(Hook[] hooks, String[] values, long loaded) {
+            this.hooks = hooks;
+            this.values = values;
+            this.loaded = loaded;
+            this.stale = false;
+            Map<String, String> map = new HashMap<String, String>();
+            for (int i = 0; i < hooks.length; i++)
+                if (values[i] != null) map.put(hooks[i].getVariable(), values[i]);
+            byVariable = Collections.unmodifiableMap(map);
+        }
+
+        // Copy of an entry, marked stale
+        private Entry(Entry other) {
+            this.hooks = other.hooks;
+            this.values = other.values;
+            this.loaded = other.loaded;
+            this.stale = true;
+            this.byVariable = other.byVariable;
+        }
+
+        Entry markStale() {
+            return (stale ? this : new Entry(this));
+        }
+    }
+
+    public HookCache(MinecraftBot instance) {
+        plugin = instance;
+    }
+
+    /**
+     * Starts refreshing values on the main thread.
+     */
+    public void start() {
+        if (task != null) return;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+        task = plugin.getServer().getScheduler().runTaskTimer(plugin, this, 20, 20);
+    }
+
+    /**
+     * Stops refreshing values and empties the cache.
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        entries.clear();
+    }
+
+    /**
+     * Adds a hook. All cached values are marked stale so that the new variable shows up.
+     */
+    public synchronized void register(Hook hook) {
+        List<Hook> list = new ArrayList<Hook>(Arrays.asList(hooks));
+        if (list.contains(hook)) return;
+        list.add(hook);
+        hooks = list.toArray(new Hook[list.size()]);
+        invalidateAll();
+    }
+
+    /**
+     * Removes a hook. Its variable will no longer be replaced.
+     */
+    public synchronized void unregister(Hook hook) {
+        List<Hook> list = new ArrayList<Hook>(Arrays.asList(hooks));
+        if (!list.remove(hook)) return;
+        hooks = list.toArray(new Hook[list.size()]);
+        invalidateAll();
+    }
+
+    /**
+     * Returns all registered hooks.
+     */
+    public List<Hook> getHooks() {
+        return Arrays.asList(hooks.clone());
+    }
+
+    /**
+     * Marks the cached values of the given player as stale.
+     * They are still used until they are fetched again on the next refresh.
+     */
+    public void invalidate(UUID player) {
+        Entry entry;
+        while ((entry = entries.get(player)) != null && !entry.stale)
+            if (entries.replace(player, entry, entry.markStale())) return;
+    }
+
+    /**
+     * Marks all cached values as stale.
+     * They are still used until they are fetched again on the next refresh.
+     */
+    public void invalidateAll() {
+        for (UUID id : entries.keySet()) invalidate(id);
+    }
+
+    /**
+     * Returns the current values of all hook variables for the player, by variable name,
+     * so that a line can be formatted later on another thread with these values.
+     * Must only be called on the main thread. The map is never modified.
+     */
+    public Map<String, String> capture(Player player) {
+        Entry entry = entries.get(player.getUniqueId());
+        if (entry == null || entry.stale || entry.hooks != hooks) entry = refresh(player);
+        return entry.byVariable;
+    }
+
+    /**
+     * Replaces all hook variables in the line with the cached values, or with the
+     * values captured in the message if there are any.
+     * Safe to call from any thread. If nothing is cached for the player yet,
+     * the values are fetched right away when on the main thread and left
+     * as they are otherwise. Stale values are used as they are off the main thread.
+     * @param line The line which probably includes the variables to be replaced
+     * @param msg The message data
+     * @return The line with variables replaced by values from hooks
+     */
+    @Override
+    public String apply(String line, Message msg) {
+        if (!(msg instanceof MCMessage)) return line; // Hook data can only come from Minecraft
+        if (line.indexOf('%') == -1) return line;
+
+        Map<String, String> captured = ((MCMessage) msg).variables;
+        if (captured != null) {
+            for (Map.Entry<String, String> e : captured.entrySet())
+                line = line.replace("%" + e.getKey() + "%", e.getValue());
+            return line;
+        }
+
+        Player player = ((MCMessage) msg).player;
+        if (player == null) return line;
+
+        Entry entry = entries.get(player.getUniqueId());
+        if (entry == null || entry.stale || entry.hooks != hooks) {
+            if (Bukkit.isPrimaryThread()) entry = refresh(player);
+            else if (entry == null) return line;
+        }
+
+        for (int i = 0; i < entry.hooks.length; i++) {
+            String value = entry.values[i];
+            if (value == null) continue;
+            line = line.replace("%" + entry.hooks[i].getVariable() + "%", value);
+        }
+        return line;
+    }
+
+    // Refreshes values that are too old. Runs on the main thread every second.
+    @Override
+    public void run() {
+        long ttl = TimeUnit.SECONDS.toNanos(getTTL());
+        long now = System.nanoTime();
+        Hook[] current = hooks;
+        for (Player p : plugin.getServer().getOnlinePlayers()) {
+            Entry entry = entries.get(p.getUniqueId());
+            if (entry == null || entry.stale || entry.hooks != current || now - entry.loaded > ttl)
+                refresh(p);
+        }
+    }
+
+    // Gets new values from all hooks. Must only be called on the main thread.
+    private Entry refresh(Player player) {
+        Hook[] current = hooks;
+        PluginManager pm = Bukkit.getPluginManager();
+        String[] values = new String[current.length];
+
+        for (int i = 0; i < current.length; i++) {
+            long start = System.nanoTime();
+            try {
+                values[i] = current[i].get(pm, player);
+            } catch (RuntimeException ex) {
+                // A broken hook shouldn't break the relay
+                values[i] = null;
+            }
+            current[i].recordRefresh(System.nanoTime() - start);
+        }
+
+        Entry entry = new Entry(current, values, System.nanoTime());
+        entries.put(player.getUniqueId(), entry);
+        return entry;
+    }
+
+    private long getTTL() {
+        long ttl = plugin.config.settingsI(Keys.settings.hook_cache_ttl, DEFAULT_TTL);
+        return (ttl > 0 ? ttl : DEFAULT_TTL);
+    }
+
+    // Lowest priority, so that the values are available to the join message
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        refresh(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        // Removed on the next tick, so that the values are still available to the leave message
+        final UUID id = event.getPlayer().getUniqueId();
+        plugin.getServer().getScheduler().runTask(plugin, new Runnable() {
+            @Override
+            public void run() {
+                if (Bukkit.getPlayer(id) == null) entries.remove(id);
+            }
+        });
+    }
+
+    // Plugins providing hook data may have come or gone
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginEnable(PluginEnableEvent event) {
+        invalidateAll();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        invalidateAll();
+    }
+}
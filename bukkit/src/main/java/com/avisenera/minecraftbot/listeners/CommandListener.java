@@ -1,8 +1,18 @@
 package com.avisenera.minecraftbot.listeners;
 
 import com.avisenera.minecraftbot.Keys;
+import com.avisenera.minecraftbot.LatencyHistogram;
+import com.avisenera.minecraftbot.LatencyStats;
+import com.avisenera.minecraftbot.LoadShedder;
 import com.avisenera.minecraftbot.MinecraftBot;
+import com.avisenera.minecraftbot.RelayStats;
+import com.avisenera.minecraftbot.RewriteRules;
+import com.avisenera.minecraftbot.WordFilter;
+import com.avisenera.minecraftbot.hooks.Hook;
 import com.avisenera.minecraftbot.message.IRCMessage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -139,12 +149,10 @@ public class CommandListener implements CommandExecutor {
         
         else if (cmd.equals("ignore")) {
             if (args.length == 2) {
-                String ignore = args[1].toLowerCase();
-                if (plugin.config.ignoreList().contains(ignore)) {
-                    sender.sendMessage(args[1] + " is already in the ignore list.");
-                } else {
-                    plugin.config.ignoreList().add(ignore);
+                if (plugin.config.addIgnore(args[1])) {
                     sender.sendMessage(args[1] + " has been added to the ignore list.");
+                } else {
+                    sender.sendMessage(args[1] + " is already in the ignore list.");
                 }
             } else {
                 sender.sendMessage("/irc ignore (nick) - Ignores the given nick on IRC.");
@@ -154,9 +162,7 @@ public class CommandListener implements CommandExecutor {
         
         else if (cmd.equals("unignore")) {
             if (args.length == 2) {
-                String unignore = args[1].toLowerCase();
-                if (plugin.config.ignoreList().contains(unignore)) {
-                    plugin.config.ignoreList().remove(unignore);
+                if (plugin.config.removeIgnore(args[1])) {
                     sender.sendMessage(args[1] + " has been removed from the ignore list.");
                 } else {
                     sender.sendMessage(args[1] + " does not exist in the ignore list.");
@@ -211,7 +217,122 @@ public class CommandListener implements CommandExecutor {
         }
         
         else if (cmd.equals("reload")) {
-            plugin.config.load();
+            plugin.reload();
+            return true;
+        }
+        
+        else if (cmd.equals("counts")) {
+            RelayStats stats = plugin.getRelayStats();
+            sender.sendMessage("Lines to IRC (relayed/filtered/ignored/dropped/aggregated/shed):");
+            for (Keys.line_to_irc k : Keys.line_to_irc.values()) {
+                String counts = "";
+                long total = 0;
+                for (RelayStats.Outcome o : RelayStats.Outcome.values()) {
+                    long n = stats.get(k, o);
+                    counts += "/" + n;
+                    total += n;
+                }
+                if (total > 0) sender.sendMessage("  " + k + ": " + counts.substring(1));
+            }
+            sender.sendMessage("Lines to Minecraft (relayed/filtered/ignored/dropped/aggregated/shed):");
+            for (Keys.line_to_minecraft k : Keys.line_to_minecraft.values()) {
+                String counts = "";
+                long total = 0;
+                for (RelayStats.Outcome o : RelayStats.Outcome.values()) {
+                    long n = stats.get(k, o);
+                    counts += "/" + n;
+                    total += n;
+                }
+                if (total > 0) sender.sendMessage("  " + k + ": " + counts.substring(1));
+            }
+            return true;
+        }
+        
+        else if (cmd.equals("stats")) {
+            LatencyStats latency = plugin.getLatencyStats();
+            if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+                latency.reset();
+                plugin.getPlayerListener().resetMainThreadTime();
+                sender.sendMessage("Latency statistics have been reset.");
+                return true;
+            }
+            for (boolean toIRC : new boolean[] {true, false}) {
+                sender.sendMessage(toIRC ? "Minecraft to IRC:" : "IRC to Minecraft:");
+                for (LatencyStats.Stage stage : LatencyStats.Stage.values()) {
+                    LatencyHistogram h = latency.get(toIRC, stage);
+                    if (h.count() == 0) continue;
+                    sender.sendMessage("  " + stage + ": p50 " + LatencyStats.format(h.percentile(0.5))
+                            + ", p99 " + LatencyStats.format(h.percentile(0.99))
+                            + ", p999 " + LatencyStats.format(h.percentile(0.999))
+                            + " (" + h.count() + " lines)");
+                }
+            }
+            sender.sendMessage("Time spent on the main thread per event:");
+            for (Keys.line_to_irc k : Keys.line_to_irc.values()) {
+                LatencyHistogram h = plugin.getPlayerListener().getMainThreadTime(k);
+                if (h.count() == 0) continue;
+                sender.sendMessage("  " + k + ": p50 " + LatencyStats.format(h.percentile(0.5))
+                        + ", p99 " + LatencyStats.format(h.percentile(0.99))
+                        + ", max " + LatencyStats.format(h.max())
+                        + " (" + h.count() + " events)");
+            }
+            sender.sendMessage("Lines waiting to be sent to IRC: " + irc.queuedLines());
+            LoadShedder shedder = plugin.getRelay().getLoadShedder();
+            sender.sendMessage("Server TPS: " + String.format("%.1f", shedder.getTPS())
+                    + ", load shedding stage " + shedder.getStage().ordinal() + " (" + shedder.getStage() + ")");
+            return true;
+        }
+        
+        else if (cmd.equals("hooks")) {
+            List<Hook> hooks = plugin.getHookCache().getHooks();
+            sender.sendMessage("Hook variables: " + hooks.size());
+            for (Hook h : hooks) {
+                long count = h.getRefreshCount();
+                long avg = (count == 0 ? 0 : h.getRefreshNanos() / count / 1000);
+                sender.sendMessage("%" + h.getVariable() + "% - " + count + " refreshes, " + avg + "us average");
+            }
+            return true;
+        }
+        
+        else if (cmd.equals("filter")) {
+            List<WordFilter.Rule> rules = plugin.getRelay().getConfig().filter().getRules();
+            sender.sendMessage("Filter rules: " + rules.size() + " (hits since the filter list was loaded)");
+            for (WordFilter.Rule r : rules) sender.sendMessage("  " + r.getText() + " - " + r.getHits());
+            return true;
+        }
+        
+        else if (cmd.equals("rewrites")) {
+            List<RewriteRules.Rule> rules = plugin.getRelay().getConfig().rewrites().getRules();
+            sender.sendMessage("Rewrite rules: " + rules.size() + " (lines changed since the configuration was loaded)");
+            for (RewriteRules.Rule r : rules) {
+                String off = r.getDisabled();
+                sender.sendMessage("  " + r.getName() + " - " + r.getApplied() + (off == null ? "" : ", turned off: " + off));
+            }
+            return true;
+        }
+        
+        else if (cmd.equals("dump")) {
+            // Writing the file is done off the main thread
+            final CommandSender s = sender;
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new Runnable() {
+                @Override
+                public void run() {
+                    String result;
+                    try {
+                        File file = plugin.getRelayRecorder().dump(plugin.getDataFolder());
+                        result = "Recently relayed lines were written to " + file.getName();
+                    } catch (IOException e) {
+                        result = "Unable to write the relay record: " + e.getMessage();
+                    }
+                    final String message = result;
+                    plugin.getServer().getScheduler().runTask(plugin, new Runnable() {
+                        @Override
+                        public void run() {
+                            s.sendMessage(message);
+                        }
+                    });
+                }
+            });
             return true;
         }
         
@@ -0,0 +1,181 @@
+package com.avisenera.minecraftbot.listeners;
+
+import com.avisenera.minecraftbot.BurstAggregator;
+import com.avisenera.minecraftbot.Formatting;
+import com.avisenera.minecraftbot.Keys;
+import com.avisenera.minecraftbot.MinecraftBot;
+import com.avisenera.minecraftbot.PlayerIndex;
+import com.avisenera.minecraftbot.message.IRCMessage;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.bukkit.BanList.Type;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/**
+ * Runs the commands IRC users give to the game, such as !players.
+ * The relay recognizes the commands and checks that they are enabled; this does the rest.
+ */
+public class IRCCommands {
+    private MinecraftBot plugin;
+    private IRCManager manager;
+    public IRCCommands(MinecraftBot instance, IRCManager irc) {
+        plugin = instance;
+        manager = irc;
+    }
+    
+    /**
+     * Runs a command.
+     * @param command The command
+     * @param sender The nick of the IRC user who gave it
+     * @param message The whole line, command included
+     */
+    public void run(Keys.commands command, String sender, String message) {
+        // Player list
+        if (command == Keys.commands.players) {
+            Collection<? extends Player> pl = plugin.getServer().getOnlinePlayers();
+            String o;
+            int n = pl.size();
+            o = "There " + (n==1?"is ":"are ") + n + " player" + (n==1?"":"s") + " connected" + (n==0?".":":");
+            for (Player p : pl) o += " " + p.getDisplayName();
+            manager.sendMessage(Formatting.toIRC(o));
+            
+            if (plugin.config.commandsB(Keys.commands.show_to_mc)) {
+                // Notify Minecraft players that someone used this command
+                IRCMessage msg = new IRCMessage();
+                msg.name += sender;
+                msg.message = "viewed the player list";
+                send(Keys.line_to_minecraft.action, msg);
+            }
+            
+            return;
+        }
+        
+        // Show world time
+        if (command == Keys.commands.time) {
+        	String worldtimes = "";
+        	for (World w : plugin.getServer().getWorlds()) {
+        		// Only get time from normal environments
+        		if (!(w.getEnvironment() == World.Environment.NORMAL)) continue;
+        		worldtimes += ", "+w.getName()+": ";
+        		
+        		int hr = 0; int min = 0; float time = w.getTime();
+        		// Correct the time so 0600 corresponds to morning
+        		time += 6000;
+        		if (time >= 24000) time -= 24000;
+        		// Format the time
+        		while (time >= 1000) { hr++; time -= 1000; } // 1000 units for each hour
+        		while (time >= 16.7) { min++; time -= 16.7; } // 16 2/3 units for each minute
+        		worldtimes += String.format("%02d:%02d", hr, min);
+        	}
+        	manager.sendMessage(Formatting.toIRC(worldtimes.substring(2)));
+        	
+        	if (plugin.config.commandsB(Keys.commands.show_to_mc)) {
+                // Notify Minecraft players that someone used this command
+                IRCMessage msg = new IRCMessage();
+                msg.name += sender;
+                msg.message = "viewed the time";
+                send(Keys.line_to_minecraft.action, msg);
+            }
+        	
+        	return;
+        }
+        
+        // Kick players
+        if (command == Keys.commands.mckick) {
+        	// Divide the command up into its parts ([0] command, [1] target players, [2] kick reason)
+        	String[] parts = message.split(" ", 3);
+        	if (manager.userHasOp(sender) && parts.length >= 2) {
+				String kickReason = (parts.length == 3) ? parts[2] : "Kicked!";
+				moderate(sender, parts[1], kickReason, false);
+        	}
+        	
+        	return;
+        }
+        
+        // Ban players
+        if (command == Keys.commands.mcban) {
+        	// Divide the command up into its parts ([0] command, [1] target players, [2] ban reason)
+        	String[] parts = message.split(" ", 3);
+        	if (manager.userHasOp(sender) && parts.length >= 2) {
+            	String banReason = (parts.length == 3) ? parts[2] : "Banned!";
+            	moderate(sender, parts[1], banReason, true);
+        	}
+        	
+        	return;
+        }
+    }
+    
+    /**
+     * Kicks or bans players, on the main thread, and tells IRC how it went.
+     * @param sender The nick of the IRC user who gave the command
+     * @param targets The players' names separated by commas. Each may be the name shown in the
+     * player list, or the player's name or the start of it (see {@link PlayerIndex#find}).
+     * @param reason The reason shown to the players
+     * @param ban True to ban the players, even if they are offline; false to kick them
+     */
+    private void moderate(final String sender, final String targets, final String reason, final boolean ban) {
+        plugin.getServer().getScheduler().runTask(plugin, new Runnable() {
+            @Override
+            public void run() {
+                List<String> done = new ArrayList<String>();
+                List<String> failed = new ArrayList<String>();
+                for (String target : targets.split(",")) {
+                    target = target.trim();
+                    if (target.isEmpty()) continue;
+                    
+                    PlayerIndex index = plugin.getPlayerIndex();
+                    Player online = index.findOnline(target);
+                    String name;
+                    if (online != null) name = online.getName();
+                    else {
+                        List<String> candidates = new ArrayList<String>();
+                        PlayerIndex.Match match = index.find(target, candidates);
+                        if (match == null) {
+                            if (candidates.isEmpty()) failed.add(target + " is unknown");
+                            else failed.add(target + " could be " + BurstAggregator.names(candidates.toArray(new String[candidates.size()]), 0));
+                            continue;
+                        }
+                        online = plugin.getServer().getPlayer(match.id);
+                        name = match.name;
+                        if (online == null && ban && index.isStale(match)) {
+                            failed.add(name + " may belong to someone else now, ban them from the console");
+                            continue;
+                        }
+                    }
+                    if (online == null && !ban) {
+                        failed.add(name + " is offline");
+                        continue;
+                    }
+                    
+                    // Bukkit can only ban by name: the server turns the name into a UUID from its
+                    // own cache, or by asking Mojang if it isn't cached. Names that may have
+                    // changed hands were refused above.
+                    if (ban) plugin.getServer().getBanList(Type.NAME).addBan(name, reason, null, sender);
+                    if (online != null) online.kickPlayer(reason);
+                    done.add(name);
+                }
+                
+                String reply = "";
+                if (!done.isEmpty()) reply = (ban ? "Banned " : "Kicked ") + BurstAggregator.names(done.toArray(new String[done.size()]), 0) + ".";
+                if (!failed.isEmpty()) reply += (reply.isEmpty() ? "" : " ") + String.join(", ", failed) + ".";
+                if (!reply.isEmpty()) manager.sendMessage(reply);
+                
+                if (!done.isEmpty() && plugin.config.commandsB(Keys.commands.show_to_mc)) {
+                    // Notify Minecraft players that someone used this command
+                    IRCMessage msg = new IRCMessage();
+                    msg.name += sender;
+                    msg.message = (ban ? "banned " : "kicked ") + String.join(", ", done) + " from IRC: " + reason;
+                    send(Keys.line_to_minecraft.action, msg);
+                }
+            }
+        });
+    }
+    
+    // Shows a line in Minecraft, such as the notice that someone used a command
+    private void send(Keys.line_to_minecraft format, IRCMessage message) {
+        manager.relayToMinecraft(format, message);
+    }
+}
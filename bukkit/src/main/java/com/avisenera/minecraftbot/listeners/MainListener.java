@@ -0,0 +1,218 @@
+package com.avisenera.minecraftbot.listeners;
+
+import com.avisenera.minecraftbot.Keys;
+import com.avisenera.minecraftbot.LatencyHistogram;
+import com.avisenera.minecraftbot.LoadShedder;
+import com.avisenera.minecraftbot.MBListener;
+import com.avisenera.minecraftbot.MinecraftBot;
+import com.avisenera.minecraftbot.OrderedPipeline;
+import com.avisenera.minecraftbot.RelayStats;
+import com.avisenera.minecraftbot.message.IRCMessage;
+import com.avisenera.minecraftbot.message.MCMessage;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.player.*;
+import org.bukkit.event.server.ServerCommandEvent;
+
+/**
+ * This class is the main purpose of this plugin.
+ * It relays messages between IRC and Minecraft using the simple API provided by this plugin.<br>
+ * Events only copy what the line needs from the event, including the player's hook values,
+ * and leave the formatting to the relay's {@link OrderedPipeline} so that neither the server's
+ * tick nor the chat threads are held up. Lines of the same player, or of the console, still go
+ * out in the order their events happened. The time each handler spends on the main thread is recorded.
+ * While the server is lagging, events the relay's {@link LoadShedder} sheds are skipped right away.
+ */
+public class MainListener extends MBListener implements Listener {
+    private static final Object CONSOLE = new Object(); // source of the console's lines
+    
+    private MinecraftBot plugin;
+    private RelayStats stats;
+    private final OrderedPipeline pipeline;
+    private final LatencyHistogram[] mainThread = new LatencyHistogram[Keys.line_to_irc.values().length];
+    
+    // A line on its way through the pipeline
+    private class Line extends OrderedPipeline.Job {
+        private final Keys.line_to_irc format;
+        private final MCMessage message;
+        private String line;
+        
+        Line(Keys.line_to_irc format, MCMessage message) {
+            this.format = format;
+            this.message = message;
+        }
+        
+        @Override
+        protected void format() {
+            line = plugin.getFormatter().toIRC(format, message);
+        }
+        
+        @Override
+        protected void deliver() {
+            // Sending MC event to IRC
+            if (line != null) plugin.getRelay().relayToIRC(format, line, message);
+        }
+        
+        @Override
+        protected void drop() {
+            stats.count(format, RelayStats.Outcome.dropped);
+        }
+    }
+    
+    /**
+     * @param pipeline The relay's pipeline, which formats the lines
+     */
+    public MainListener(MinecraftBot instance, RelayStats stats, OrderedPipeline pipeline) {
+        plugin = instance;
+        this.stats = stats;
+        this.pipeline = pipeline;
+        for (int i = 0; i < mainThread.length; i++) mainThread[i] = new LatencyHistogram();
+    }
+    
+    /**
+     * Returns the time the handler of one kind of event spent on the main thread,
+     * for every event it passed on to be relayed.
+     */
+    public LatencyHistogram getMainThreadTime(Keys.line_to_irc format) {
+        return mainThread[format.ordinal()];
+    }
+    
+    /**
+     * Forgets the recorded main thread times.
+     */
+    public void resetMainThreadTime() {
+        for (LatencyHistogram h : mainThread) h.reset();
+    }
+
+    @Override
+    public void onMessage(String line) {
+        // Received IRC message - sending it to the game
+        plugin.getServer().broadcastMessage(line);
+    }
+    
+    @Override
+    public void onMessage(String line, Keys.line_to_minecraft type, IRCMessage message) {
+        // Players mentioned in chat see the line with their name highlighted
+        boolean chat = (type == Keys.line_to_minecraft.chat || type == Keys.line_to_minecraft.action);
+        if (chat && plugin.getMentions().deliver(line, message.name)) return;
+        onMessage(line);
+    }
+    
+    private void send(Keys.line_to_irc format, MCMessage message) {
+        pipeline.submit(message.player == null ? CONSOLE : message.player.getUniqueId(), new Line(format, message));
+    }
+    
+    // Sends the message from the main thread, recording how long the handler took since start
+    private void sendLater(Keys.line_to_irc format, MCMessage message, long start) {
+        send(format, message);
+        mainThread[format.ordinal()].record(System.nanoTime() - start);
+    }
+    
+    // Skips the event, without copying anything from it, while the server is lagging
+    private boolean shed(Keys.line_to_irc format) {
+        if (!plugin.getRelay().getLoadShedder().sheds(format)) return false;
+        stats.count(format, RelayStats.Outcome.shed);
+        return true;
+    }
+    
+    // Copies what the line needs to know about the player, while still on the main thread
+    private MCMessage from(Player player) {
+        MCMessage msg = new MCMessage();
+        msg.player = player;
+        msg.variables = plugin.getHookCache().capture(player);
+        return msg;
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onServerCommand(ServerCommandEvent event) {
+        long start = System.nanoTime();
+        String check = event.getCommand().toLowerCase();
+        
+        if(check.startsWith("say ")) {
+            MCMessage msg = new MCMessage();
+            msg.message = event.getCommand().split("\\s+", 2)[1];
+            sendLater(Keys.line_to_irc.server, msg, start);
+        }
+        
+        // Plugins like Essentials and CommandBook have a "broadcast"
+        // command which is similar to the console /say.
+        else if(check.startsWith("broadcast ")) {
+            MCMessage msg = new MCMessage();
+            msg.message = event.getCommand().split("\\s+", 2)[1];
+            sendLater(Keys.line_to_irc.server, msg, start);
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerCommandPreprocess(PlayerCommandPreprocessEvent event) {
+        // The command /me can't be registered normally, so it's handled here instead
+        if (event.getMessage().toLowerCase().startsWith("/me ")) {
+            long start = System.nanoTime();
+            try {
+                MCMessage msg = from(event.getPlayer());
+                msg.name = event.getPlayer().getDisplayName();
+                msg.message = event.getMessage().substring(4); // cuts off space after /me
+                sendLater(Keys.line_to_irc.action, msg, start);
+            }
+            catch (IndexOutOfBoundsException e) {
+                // ignore blank messages
+            }
+            
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerChat(AsyncPlayerChatEvent event) {
+        MCMessage msg = new MCMessage();
+        msg.player = event.getPlayer();
+        msg.name = event.getPlayer().getDisplayName();
+        msg.message = event.getMessage();
+        send(Keys.line_to_irc.chat, msg);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        if (shed(Keys.line_to_irc.join)) return;
+        long start = System.nanoTime();
+        MCMessage msg = from(event.getPlayer());
+        msg.name = event.getPlayer().getDisplayName();
+        sendLater(Keys.line_to_irc.join, msg, start);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        if (shed(Keys.line_to_irc.leave)) return;
+        long start = System.nanoTime();
+        MCMessage msg = from(event.getPlayer());
+        msg.name = event.getPlayer().getDisplayName();
+        sendLater(Keys.line_to_irc.leave, msg, start);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerKick(PlayerKickEvent event) {
+        long start = System.nanoTime();
+        MCMessage msg = from(event.getPlayer());
+        msg.name = event.getPlayer().getDisplayName();
+        msg.reason = event.getReason();
+        
+        sendLater(Keys.line_to_irc.kick, msg, start);
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerDeath(PlayerDeathEvent event) {
+        long start = System.nanoTime();
+        // Check if death message is null or blank - if yes, it was cancelled.
+        // Done before shedding, so that cancelled deaths aren't counted as shed.
+        String dm = event.getDeathMessage();
+        if (dm == null || dm.isEmpty()) return;
+        if (shed(Keys.line_to_irc.death)) return;
+        
+        MCMessage msg = from(event.getEntity());
+        msg.name = event.getEntity().getDisplayName();
+        msg.message = dm;
+        sendLater(Keys.line_to_irc.death, msg, start);
+    }
+}
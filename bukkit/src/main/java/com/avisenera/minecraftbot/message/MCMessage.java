@@ -1,5 +1,6 @@
 package com.avisenera.minecraftbot.message;
 
+import java.util.Map;
 import org.bukkit.entity.Player;
 
 /**
@@ -8,4 +9,8 @@ import org.bukkit.entity.Player;
 public class MCMessage extends Message {
     // A bit of extra data that hooks may find useful
     public Player player;
+    
+    // Hook values taken on the main thread when the event happened, by variable name.
+    // If null, the values are looked up in the plugin's cache when the line is formatted.
+    public Map<String, String> variables;
 }
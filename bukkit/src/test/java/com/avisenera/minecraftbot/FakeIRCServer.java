@@ -0,0 +1,493 @@
+package com.avisenera.minecraftbot;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An IRC server that runs inside the test, on the loopback address.<br>
+ * It speaks enough of RFC 1459 for the bot: registration, PING, JOIN, PART, NAMES,
+ * WHO, MODE, PRIVMSG, NOTICE and QUIT, on a single server.<br>
+ * Besides the clients that connect to it, channels can hold simulated users. Tests
+ * use them to talk to the bot and to fake netsplits.<br>
+ * Flood control works like in most IRC daemons: every message adds a penalty to the
+ * client's clock, and a client whose clock gets too far ahead of the real time is
+ * disconnected for excess flood.
+ */
+public class FakeIRCServer implements Closeable, Runnable {
+    static final String NAME = "irc.test";
+    private static final String SIMULATED_HOST = "sim.test";
+
+    /**
+     * Receives every PRIVMSG and NOTICE sent by a connected client.
+     */
+    public interface Listener {
+        public void onMessage(String nick, String target, String text);
+    }
+
+    private final ServerSocket socket;
+    private final Thread acceptor;
+    private final List<Client> clients = new CopyOnWriteArrayList<Client>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+    private final Map<String, Channel> channels = new HashMap<String, Channel>(); // guarded by this
+    private final AtomicInteger floodKills = new AtomicInteger();
+    private volatile long penalty = 0;       // milliseconds added per message, 0 for no flood control
+    private volatile long penaltyLimit = 10000;
+
+    private static class Channel {
+        final String name;
+        final Set<String> members = new LinkedHashSet<String>();
+        final Set<String> ops = new LinkedHashSet<String>();
+        final Set<String> simulated = new LinkedHashSet<String>();
+
+        Channel(String name) {
+            this.name = name;
+        }
+    }
+
+    public FakeIRCServer() throws IOException {
+        socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        acceptor = new Thread(this, "FakeIRCServer");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Turns on flood control.
+     * @param penalty Milliseconds added to a client's clock for every message
+     * @param limit How far ahead of the real time a client's clock may get before it is disconnected
+     */
+    public void setFloodControl(long penalty, long limit) {
+        this.penalty = penalty;
+        this.penaltyLimit = limit;
+    }
+
+    /**
+     * Returns the amount of clients disconnected for excess flood.
+     */
+    public int getFloodKills() {
+        return floodKills.get();
+    }
+
+    /**
+     * Returns the nicks in a channel, with real and simulated users.
+     */
+    public synchronized List<String> members(String channel) {
+        Channel c = channels.get(channel.toLowerCase());
+        return (c == null ? new ArrayList<String>() : new ArrayList<String>(c.members));
+    }
+
+    /**
+     * Waits until the given nick is in the channel.
+     * @return False if it didn't join before the timeout
+     */
+    public boolean awaitJoin(String channel, String nick, long timeout) throws InterruptedException {
+        long end = System.currentTimeMillis() + timeout;
+        while (System.currentTimeMillis() < end) {
+            if (members(channel).contains(nick)) return true;
+            Thread.sleep(20);
+        }
+        return false;
+    }
+
+    /**
+     * Adds a simulated user to a channel.
+     */
+    public synchronized void addUser(String channel, String nick) {
+        Channel c = channel(channel);
+        if (!c.members.add(nick)) return;
+        c.simulated.add(nick);
+        broadcast(c, ":" + simulatedPrefix(nick) + " JOIN :" + c.name, null);
+    }
+
+    /**
+     * Makes a simulated user say something in a channel.
+     */
+    public synchronized void say(String channel, String nick, String text) {
+        Channel c = channels.get(channel.toLowerCase());
+        if (c == null || !c.members.contains(nick)) return;
+        broadcast(c, ":" + simulatedPrefix(nick) + " PRIVMSG " + c.name + " :" + text, null);
+    }
+
+    /**
+     * Splits simulated users off the network. Each one quits with the names of the
+     * two servers that lost their link, like on a real netsplit.
+     */
+    public synchronized void netsplit(String channel, Collection<String> nicks) {
+        Channel c = channels.get(channel.toLowerCase());
+        if (c == null) return;
+        for (String nick : nicks) {
+            if (!c.simulated.contains(nick)) continue;
+            c.members.remove(nick);
+            c.ops.remove(nick);
+            broadcast(c, ":" + simulatedPrefix(nick) + " QUIT :hub.test leaf.test", null);
+        }
+    }
+
+    /**
+     * Brings simulated users back after a netsplit.
+     */
+    public synchronized void netjoin(String channel, Collection<String> nicks) {
+        Channel c = channel(channel);
+        for (String nick : nicks) {
+            if (!c.simulated.contains(nick) || !c.members.add(nick)) continue;
+            broadcast(c, ":" + simulatedPrefix(nick) + " JOIN :" + c.name, null);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        for (Client c : clients) c.close();
+    }
+
+    @Override
+    public void run() {
+        while (!socket.isClosed()) {
+            try {
+                Client c = new Client(socket.accept());
+                clients.add(c);
+                Thread t = new Thread(c, "FakeIRCServer client");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                // Closed
+            }
+        }
+    }
+
+    private static String simulatedPrefix(String nick) {
+        return nick + "!" + nick.toLowerCase() + "@" + SIMULATED_HOST;
+    }
+
+    // Must hold the lock
+    private Channel channel(String name) {
+        Channel c = channels.get(name.toLowerCase());
+        if (c == null) {
+            c = new Channel(name);
+            channels.put(name.toLowerCase(), c);
+        }
+        return c;
+    }
+
+    // Sends a line to every connected client in the channel, except one. Must hold the lock.
+    private void broadcast(Channel c, String line, Client except) {
+        for (Client client : clients)
+            if (client != except && client.registered && c.members.contains(client.nick)) client.send(line);
+    }
+
+    private synchronized boolean nickInUse(String nick) {
+        for (Client c : clients)
+            if (c.registered && c.nick.equalsIgnoreCase(nick)) return true;
+        for (Channel c : channels.values())
+            for (String n : c.simulated)
+                if (n.equalsIgnoreCase(nick) && c.members.contains(n)) return true;
+        return false;
+    }
+
+    private class Client implements Runnable {
+        private final Socket socket;
+        private final Writer out;
+        private volatile String nick = "*";
+        private String user = null;
+        private volatile boolean registered = false;
+        private long clock = 0; // flood control clock, in milliseconds
+
+        Client(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        }
+
+        String prefix() {
+            return nick + "!" + user + "@127.0.0.1";
+        }
+
+        void send(String line) {
+            synchronized (out) {
+                try {
+                    out.write(line + "\r\n");
+                    out.flush();
+                } catch (IOException e) {
+                    close();
+                }
+            }
+        }
+
+        void reply(String numeric, String text) {
+            send(":" + NAME + " " + numeric + " " + nick + " " + text);
+        }
+
+        void close() {
+            clients.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                String line;
+                while ((line = in.readLine()) != null) handle(line);
+            } catch (IOException e) {
+                // Disconnected
+            } finally {
+                quit("Connection closed");
+                close();
+            }
+        }
+
+        private void handle(String line) {
+            if (line.startsWith(":")) {
+                int space = line.indexOf(' ');
+                if (space == -1) return;
+                line = line.substring(space + 1);
+            }
+            List<String> params = new ArrayList<String>();
+            while (!line.isEmpty()) {
+                if (line.startsWith(":")) {
+                    params.add(line.substring(1));
+                    break;
+                }
+                int space = line.indexOf(' ');
+                if (space == -1) {
+                    params.add(line);
+                    break;
+                }
+                if (space > 0) params.add(line.substring(0, space));
+                line = line.substring(space + 1);
+            }
+            if (params.isEmpty()) return;
+            String command = params.remove(0).toUpperCase();
+
+            if (command.equals("NICK")) nick(params);
+            else if (command.equals("USER")) {
+                if (params.size() > 0) user = params.get(0);
+                register();
+            }
+            else if (command.equals("PASS") || command.equals("CAP") || command.equals("PONG")) {}
+            else if (command.equals("PING")) send(":" + NAME + " PONG " + NAME + " :" + (params.isEmpty() ? "" : params.get(0)));
+            else if (command.equals("QUIT")) {
+                send("ERROR :Closing Link: 127.0.0.1 (Quit: " + (params.isEmpty() ? "" : params.get(0)) + ")");
+                quit(params.isEmpty() ? "" : params.get(0));
+                close();
+            }
+            else if (!registered) reply("451", ":You have not registered");
+            else if (command.equals("JOIN") && params.size() > 0) {
+                for (String name : params.get(0).split(",")) join(name);
+            }
+            else if (command.equals("PART") && params.size() > 0) part(params.get(0), params.size() > 1 ? params.get(1) : "");
+            else if (command.equals("NAMES") && params.size() > 0) names(params.get(0));
+            else if (command.equals("WHO") && params.size() > 0) who(params.get(0));
+            else if (command.equals("MODE") && params.size() > 0) mode(params);
+            else if ((command.equals("PRIVMSG") || command.equals("NOTICE")) && params.size() > 1) message(command, params.get(0), params.get(1));
+            else if (command.equals("USERHOST") || command.equals("ISON")) {}
+            else reply("421", command + " :Unknown command");
+        }
+
+        private void nick(List<String> params) {
+            if (params.isEmpty()) {
+                reply("431", ":No nickname given");
+                return;
+            }
+            String wanted = params.get(0);
+            if (nickInUse(wanted)) {
+                reply("433", wanted + " :Nickname is already in use");
+                return;
+            }
+            if (!registered) {
+                nick = wanted;
+                register();
+                return;
+            }
+            synchronized (FakeIRCServer.this) {
+                String line = ":" + prefix() + " NICK :" + wanted;
+                send(line);
+                for (Channel c : channels.values()) {
+                    if (!c.members.remove(nick)) continue;
+                    broadcast(c, line, this);
+                    c.members.add(wanted);
+                    if (c.ops.remove(nick)) c.ops.add(wanted);
+                }
+                nick = wanted;
+            }
+        }
+
+        private void register() {
+            if (registered || nick.equals("*") || user == null) return;
+            registered = true;
+            reply("001", ":Welcome to the test network " + prefix());
+            reply("002", ":Your host is " + NAME + ", running version fake-1.0");
+            reply("003", ":This server was created today");
+            reply("004", NAME + " fake-1.0 iosw biklmnopstv");
+            reply("005", "CHANTYPES=# PREFIX=(ov)@+ NETWORK=Test :are supported by this server");
+            reply("375", ":- " + NAME + " Message of the Day -");
+            reply("372", ":- This server only exists for tests.");
+            reply("376", ":End of /MOTD command.");
+        }
+
+        private void join(String name) {
+            synchronized (FakeIRCServer.this) {
+                Channel c = channel(name);
+                if (c.members.contains(nick)) return;
+                if (c.members.isEmpty()) c.ops.add(nick);
+                c.members.add(nick);
+                broadcast(c, ":" + prefix() + " JOIN :" + c.name, null);
+            }
+            reply("331", name + " :No topic is set");
+            names(name);
+        }
+
+        private void part(String name, String reason) {
+            synchronized (FakeIRCServer.this) {
+                Channel c = channels.get(name.toLowerCase());
+                if (c == null || !c.members.contains(nick)) {
+                    reply("442", name + " :You're not on that channel");
+                    return;
+                }
+                broadcast(c, ":" + prefix() + " PART " + c.name + " :" + reason, null);
+                c.members.remove(nick);
+                c.ops.remove(nick);
+            }
+        }
+
+        private void quit(String reason) {
+            if (!registered) return;
+            synchronized (FakeIRCServer.this) {
+                for (Channel c : channels.values()) {
+                    if (!c.members.remove(nick)) continue;
+                    c.ops.remove(nick);
+                    broadcast(c, ":" + prefix() + " QUIT :" + reason, this);
+                }
+            }
+            registered = false;
+        }
+
+        private void names(String name) {
+            StringBuilder sb = new StringBuilder();
+            synchronized (FakeIRCServer.this) {
+                Channel c = channels.get(name.toLowerCase());
+                if (c != null) {
+                    for (String member : c.members) {
+                        if (sb.length() > 0) sb.append(' ');
+                        if (c.ops.contains(member)) sb.append('@');
+                        sb.append(member);
+                    }
+                }
+            }
+            if (sb.length() > 0) reply("353", "= " + name + " :" + sb);
+            reply("366", name + " :End of /NAMES list.");
+        }
+
+        private void who(String name) {
+            List<String> lines = new ArrayList<String>();
+            synchronized (FakeIRCServer.this) {
+                Channel c = channels.get(name.toLowerCase());
+                if (c != null) {
+                    for (String member : c.members) {
+                        boolean sim = c.simulated.contains(member);
+                        lines.add(name + " " + (sim ? member.toLowerCase() : "bot") + " " + (sim ? SIMULATED_HOST : "127.0.0.1")
+                                + " " + NAME + " " + member + " H" + (c.ops.contains(member) ? "@" : "") + " :0 " + member);
+                    }
+                }
+            }
+            for (String l : lines) reply("352", l);
+            reply("315", name + " :End of /WHO list.");
+        }
+
+        private void mode(List<String> params) {
+            String target = params.get(0);
+            if (!target.startsWith("#")) {
+                if (params.size() > 1) send(":" + nick + " MODE " + nick + " :" + params.get(1));
+                else reply("221", "+i");
+                return;
+            }
+            if (params.size() == 1) {
+                reply("324", target + " +nt");
+                return;
+            }
+            synchronized (FakeIRCServer.this) {
+                Channel c = channels.get(target.toLowerCase());
+                if (c == null) return;
+                if (!c.ops.contains(nick)) {
+                    reply("482", target + " :You're not channel operator");
+                    return;
+                }
+                String modes = params.get(1);
+                boolean add = true;
+                int arg = 2;
+                for (char m : modes.toCharArray()) {
+                    if (m == '+' || m == '-') add = (m == '+');
+                    else if ((m == 'o' || m == 'v') && arg < params.size()) {
+                        String who = params.get(arg++);
+                        if (m == 'o') {
+                            if (add) c.ops.add(who);
+                            else c.ops.remove(who);
+                        }
+                    }
+                }
+                StringBuilder line = new StringBuilder(":" + prefix() + " MODE " + c.name);
+                for (int i = 1; i < params.size(); i++) line.append(' ').append(params.get(i));
+                broadcast(c, line.toString(), null);
+            }
+        }
+
+        private void message(String command, String target, String text) {
+            if (penalty > 0) {
+                long now = System.currentTimeMillis();
+                clock = Math.max(clock, now) + penalty;
+                if (clock - now > penaltyLimit) {
+                    floodKills.incrementAndGet();
+                    send("ERROR :Closing Link: 127.0.0.1 (Excess Flood)");
+                    quit("Excess Flood");
+                    close();
+                    return;
+                }
+            }
+
+            for (Listener l : listeners) l.onMessage(nick, target, text);
+
+            String line = ":" + prefix() + " " + command + " " + target + " :" + text;
+            synchronized (FakeIRCServer.this) {
+                Channel c = channels.get(target.toLowerCase());
+                if (c != null) {
+                    broadcast(c, line, this);
+                    return;
+                }
+            }
+            for (Client client : clients)
+                if (client.registered && client.nick.equalsIgnoreCase(target)) client.send(line);
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.avisenera.minecraftbot;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+/**
+ * Drives chat through the relay in both directions and measures what comes out.<br>
+ * The plugin runs against {@link FakeIRCServer} and {@link TestServer}, in this process.
+ * Players chat at a fixed rate on one side, simulated IRC users talk at a fixed rate on
+ * the other, and every line carries a sequence number so it can be found and timed when
+ * it arrives. At the end, the lines that never arrived are counted as dropped.<br>
+ * It can be run on its own, with options given as key=value:
+ * <pre>java com.avisenera.minecraftbot.LoadDriver seconds=30 to_irc=20 to_minecraft=200 delay=0</pre>
+ */
+public class LoadDriver {
+    static final String CHANNEL = "#load";
+    static final String NICK = "LoadBot";
+
+    /**
+     * What to run. Rates are in lines per second; 0 turns a direction off.
+     */
+    public static class Options {
+        public int seconds = 5;
+        public int toIRC = 20;
+        public int toMinecraft = 50;
+        public int players = 20;
+        public int users = 20;
+        public int threads = 4;             // threads firing chat events
+        public int delay = 0;               // bot_message_delay
+        public long floodPenalty = 0;       // FakeIRCServer flood control, 0 for none
+        public long floodLimit = 10000;
+        public int drainSeconds = 10;
+
+        void set(String key, String value) {
+            int v = Integer.parseInt(value);
+            if (key.equals("seconds")) seconds = v;
+            else if (key.equals("to_irc")) toIRC = v;
+            else if (key.equals("to_minecraft")) toMinecraft = v;
+            else if (key.equals("players")) players = v;
+            else if (key.equals("users")) users = v;
+            else if (key.equals("threads")) threads = v;
+            else if (key.equals("delay")) delay = v;
+            else if (key.equals("flood_penalty")) floodPenalty = v;
+            else if (key.equals("flood_limit")) floodLimit = v;
+            else if (key.equals("drain")) drainSeconds = v;
+            else throw new IllegalArgumentException("Unknown option: " + key);
+        }
+    }
+
+    /**
+     * The lines sent and received in one direction.
+     */
+    public static class Direction {
+        final String name;
+        final AtomicLongArray sentAt;
+        final AtomicIntegerArray seen;
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong received = new AtomicLong();
+        final AtomicLong duplicates = new AtomicLong();
+        final LatencyHistogram latency = new LatencyHistogram();
+        volatile long first = 0, last = 0;
+
+        Direction(String name, int capacity) {
+            this.name = name;
+            this.sentAt = new AtomicLongArray(capacity);
+            this.seen = new AtomicIntegerArray(capacity);
+        }
+
+        // Returns the sequence number for a new line, or -1 if there is no room left
+        int next() {
+            long seq = sent.get();
+            if (seq >= sentAt.length()) return -1;
+            seq = sent.getAndIncrement();
+            if (seq >= sentAt.length()) return -1;
+            long now = System.nanoTime();
+            sentAt.set((int) seq, now);
+            if (seq == 0) first = now;
+            return (int) seq;
+        }
+
+        void arrived(String line) {
+            int start = line.indexOf("[seq:");
+            if (start == -1) return;
+            int end = line.indexOf(']', start);
+            if (end == -1) return;
+            int seq;
+            try {
+                seq = Integer.parseInt(line.substring(start + 5, end));
+            } catch (NumberFormatException e) {
+                return;
+            }
+            if (seq < 0 || seq >= sentAt.length()) return;
+            if (seen.getAndSet(seq, 1) != 0) {
+                duplicates.incrementAndGet();
+                return;
+            }
+            long now = System.nanoTime();
+            latency.record(now - sentAt.get(seq));
+            received.incrementAndGet();
+            last = now;
+        }
+
+        public long getSent() {
+            return Math.min(sent.get(), sentAt.length());
+        }
+        public long getReceived() {
+            return received.get();
+        }
+        public long getDropped() {
+            return getSent() - getReceived();
+        }
+        public long getDuplicates() {
+            return duplicates.get();
+        }
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+        /**
+         * Returns the lines received per second, from the first line sent to the last one received.
+         */
+        public double getRate() {
+            long time = last - first;
+            return (time <= 0 ? 0 : received.get() * 1e9 / time);
+        }
+
+        String report() {
+            return String.format("%-12s sent %6d  received %6d  dropped %6d  duplicates %4d  %8.1f lines/s"
+                    + "  p50 %8.2f ms  p99 %8.2f ms  p99.9 %8.2f ms  max %8.2f ms",
+                    name, getSent(), getReceived(), getDropped(), getDuplicates(), getRate(),
+                    latency.percentile(0.5) / 1e6, latency.percentile(0.99) / 1e6,
+                    latency.percentile(0.999) / 1e6, latency.max() / 1e6);
+        }
+    }
+
+    /**
+     * The outcome of a run.
+     */
+    public static class Result {
+        public final Direction toIRC, toMinecraft;
+        public int floodKills;
+
+        Result(Direction toIRC, Direction toMinecraft) {
+            this.toIRC = toIRC;
+            this.toMinecraft = toMinecraft;
+        }
+
+        public String report() {
+            return toIRC.report() + "\n" + toMinecraft.report() + "\nflood kills: " + floodKills;
+        }
+    }
+
+    /**
+     * The plugin, connected to a fake IRC server and sitting in the test channel.
+     */
+    public static class Session implements Closeable {
+        public final FakeIRCServer irc;
+        public final MinecraftBot plugin;
+        private final File folder;
+
+        public Session(Options o) throws Exception {
+            Server server = TestServer.install();
+            irc = new FakeIRCServer();
+            irc.setFloodControl(o.floodPenalty, o.floodLimit);
+            for (int i = 1; i <= o.users; i++) irc.addUser(CHANNEL, "user" + i);
+
+            folder = Files.createTempDirectory("minecraftbot-test").toFile();
+            writeConfig(new File(folder, "config.yml"), irc.getPort(), o.delay);
+
+            InputStream in = LoadDriver.class.getResourceAsStream("/plugin.yml");
+            PluginDescriptionFile description;
+            try {
+                description = new PluginDescriptionFile(in);
+            } finally {
+                in.close();
+            }
+            plugin = new MinecraftBot(new JavaPluginLoader(server), description, folder, new File(folder, "MinecraftBot.jar"));
+            plugin.config = new Configuration(plugin);
+            if (!plugin.config.load()) throw new IllegalStateException("The test configuration did not load");
+            plugin.startRelay();
+            plugin.getIRCManager().connect();
+
+            if (!irc.awaitJoin(CHANNEL, NICK, 10000)) throw new IllegalStateException("The bot did not join " + CHANNEL);
+            if (!awaitMembers(o.users + 1, 10000)) throw new IllegalStateException("The bot did not see the channel's users");
+        }
+
+        /**
+         * Waits until the bot counts the given amount of users in the channel.
+         * @return False if it didn't before the timeout
+         */
+        public boolean awaitMembers(int count, long timeout) throws InterruptedException {
+            long end = System.currentTimeMillis() + timeout;
+            while (System.currentTimeMillis() < end) {
+                if (plugin.getIRCManager().getMemberCount() == count) return true;
+                Thread.sleep(20);
+            }
+            return false;
+        }
+
+        @Override
+        public void close() {
+            TestServer.setBroadcasts(null);
+            plugin.onDisable();
+            irc.close();
+            File[] files = folder.listFiles();
+            if (files != null) for (File f : files) f.delete();
+            folder.delete();
+        }
+    }
+
+    private static void writeConfig(File file, int port, int delay) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+        try {
+            out.write("connection:\n"
+                    + "  server: '127.0.0.1'\n"
+                    + "  server_port: " + port + "\n"
+                    + "  retries: 1\n"
+                    + "  channel: '" + CHANNEL + "'\n"
+                    + "  nick: '" + NICK + "'\n"
+                    + "  bot_message_delay: " + delay + "\n"
+                    + "settings:\n"
+                    + "  send_log_to_ops: false\n"
+                    + "  shutdown_timeout: 1000\n"
+                    + "  watch_config: false\n"
+                    + "line_formatting:\n"
+                    + "  to_irc:\n"
+                    + "    chat: '<%name%> %message%'\n"
+                    + "  to_minecraft:\n"
+                    + "    chat: '#> <%name%> %message%'\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Runs the load described by the options and waits for the lines to arrive.
+     */
+    public static Result run(Options o) throws Exception {
+        final Direction toIRC = new Direction("to_irc", Math.max(1, o.toIRC * o.seconds));
+        final Direction toMinecraft = new Direction("to_minecraft", Math.max(1, o.toMinecraft * o.seconds));
+        Result result = new Result(toIRC, toMinecraft);
+
+        Session session = new Session(o);
+        try {
+            session.irc.addListener(new FakeIRCServer.Listener() {
+                @Override
+                public void onMessage(String nick, String target, String text) {
+                    if (target.equalsIgnoreCase(CHANNEL)) toIRC.arrived(text);
+                }
+            });
+            TestServer.setBroadcasts(new TestServer.Broadcasts() {
+                @Override
+                public void onBroadcast(String message) {
+                    toMinecraft.arrived(message);
+                }
+            });
+
+            List<Player> players = new ArrayList<Player>();
+            for (int i = 1; i <= o.players; i++) players.add(TestServer.player("player" + i));
+            List<String> users = new ArrayList<String>();
+            for (int i = 1; i <= o.users; i++) users.add("user" + i);
+
+            ScheduledExecutorService timer = Executors.newScheduledThreadPool(2);
+            ExecutorService chat = Executors.newFixedThreadPool(Math.max(1, o.threads));
+            try {
+                if (o.toIRC > 0) timer.scheduleAtFixedRate(chatter(session, chat, players, toIRC),
+                        0, 1000000000L / o.toIRC, TimeUnit.NANOSECONDS);
+                if (o.toMinecraft > 0) timer.scheduleAtFixedRate(talker(session, users, toMinecraft),
+                        0, 1000000000L / o.toMinecraft, TimeUnit.NANOSECONDS);
+                Thread.sleep(o.seconds * 1000L);
+            } finally {
+                timer.shutdownNow();
+                chat.shutdown();
+                chat.awaitTermination(5, TimeUnit.SECONDS);
+            }
+
+            // Wait for the lines still in flight, until nothing arrives for a while
+            long lastCount = -1;
+            long end = System.currentTimeMillis() + o.drainSeconds * 1000L;
+            while (System.currentTimeMillis() < end) {
+                long count = toIRC.getReceived() + toMinecraft.getReceived();
+                if (toIRC.getDropped() == 0 && toMinecraft.getDropped() == 0) break;
+                if (count == lastCount && session.plugin.getIRCManager().queuedLines() == 0) break;
+                lastCount = count;
+                Thread.sleep(500);
+            }
+            result.floodKills = session.irc.getFloodKills();
+        } finally {
+            session.close();
+        }
+        return result;
+    }
+
+    // Fires chat events for random players, each on one of the chat threads like Bukkit does
+    private static Runnable chatter(final Session session, final ExecutorService chat, final List<Player> players, final Direction d) {
+        return new Runnable() {
+            private int i = 0;
+            @Override
+            public void run() {
+                final Player player = players.get(i++ % players.size());
+                chat.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        int seq = d.next();
+                        if (seq == -1) return;
+                        AsyncPlayerChatEvent event = new AsyncPlayerChatEvent(true, player,
+                                "hello from " + player.getName() + " [seq:" + seq + "]", Collections.<Player>emptySet());
+                        session.plugin.getPlayerListener().onPlayerChat(event);
+                    }
+                });
+            }
+        };
+    }
+
+    // Makes simulated IRC users talk in the channel
+    private static Runnable talker(final Session session, final List<String> users, final Direction d) {
+        return new Runnable() {
+            private int i = 0;
+            @Override
+            public void run() {
+                String user = users.get(i++ % users.size());
+                int seq = d.next();
+                if (seq == -1) return;
+                session.irc.say(CHANNEL, user, "hi from " + user + " [seq:" + seq + "]");
+            }
+        };
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options o = new Options();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq == -1) throw new IllegalArgumentException("Options must be given as key=value: " + arg);
+            o.set(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        System.out.println(run(o).report());
+        System.exit(0);
+    }
+}
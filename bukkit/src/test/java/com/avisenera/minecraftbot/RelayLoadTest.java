@@ -0,0 +1,65 @@
+package com.avisenera.minecraftbot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Short runs of {@link LoadDriver}, checking what the relay does under load.
+ * Longer runs are done by running LoadDriver on its own.<br>
+ * These depend on timing and take a while, so they aren't part of the default build.
+ * They run with <code>mvn test -P load-tests</code>.
+ */
+public class RelayLoadTest {
+
+    @Test(timeout = 60000)
+    public void relaysBothWaysWithoutDrops() throws Exception {
+        LoadDriver.Options o = new LoadDriver.Options();
+        o.seconds = 3;
+        o.toIRC = 50;
+        o.toMinecraft = 100;
+        LoadDriver.Result r = LoadDriver.run(o);
+
+        assertEquals(r.report(), 0, r.toIRC.getDropped());
+        assertEquals(r.report(), 0, r.toMinecraft.getDropped());
+        assertEquals(r.report(), 0, r.toIRC.getDuplicates() + r.toMinecraft.getDuplicates());
+        assertEquals(0, r.floodKills);
+    }
+
+    @Test(timeout = 60000)
+    public void floodControlDisconnectsFastBot() throws Exception {
+        LoadDriver.Options o = new LoadDriver.Options();
+        o.seconds = 3;
+        o.toIRC = 50;
+        o.toMinecraft = 0;
+        o.floodPenalty = 2000;
+        o.floodLimit = 10000;
+        o.drainSeconds = 2;
+        LoadDriver.Result r = LoadDriver.run(o);
+
+        assertTrue(r.report(), r.floodKills >= 1);
+        assertTrue(r.report(), r.toIRC.getDropped() > 0);
+    }
+
+    @Test(timeout = 60000)
+    public void netsplitUpdatesMembers() throws Exception {
+        LoadDriver.Options o = new LoadDriver.Options();
+        o.users = 20;
+        LoadDriver.Session session = new LoadDriver.Session(o);
+        try {
+            List<String> split = new ArrayList<String>();
+            for (int i = 1; i <= 10; i++) split.add("user" + i);
+
+            session.irc.netsplit(LoadDriver.CHANNEL, split);
+            assertTrue("Users did not leave", session.awaitMembers(11, 5000));
+
+            session.irc.netjoin(LoadDriver.CHANNEL, split);
+            assertTrue("Users did not come back", session.awaitMembers(21, 5000));
+        } finally {
+            session.close();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.avisenera.minecraftbot;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * A Bukkit server for tests, with no world and no players.<br>
+ * Its scheduler runs tasks on a thread pool, with a tick lasting 50 milliseconds.
+ * Lines broadcast to the server are handed to a listener instead, which is how tests
+ * see what reached Minecraft. No thread counts as the main thread.
+ */
+final class TestServer {
+    private static final long TICK = 50; // milliseconds
+
+    /**
+     * Receives every line broadcast to the server.
+     */
+    interface Broadcasts {
+        void onBroadcast(String message);
+    }
+
+    private static Server server = null;
+    private static volatile Broadcasts broadcasts = null;
+
+    private TestServer() {}
+
+    /**
+     * Makes Bukkit use the test server. Bukkit only takes one server, so every test shares it.
+     */
+    static synchronized Server install() {
+        if (server != null) return server;
+        if (Bukkit.getServer() != null) throw new IllegalStateException("Bukkit already has a server");
+
+        final PluginManager pm = fake(PluginManager.class, null);
+        final BukkitScheduler scheduler = scheduler();
+        final Logger logger = Logger.getLogger("TestServer");
+        server = fake(Server.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getPluginManager")) return pm;
+                if (name.equals("getScheduler")) return scheduler;
+                if (name.equals("getLogger")) return logger;
+                if (name.equals("getOnlinePlayers")) return Collections.<Player>emptyList();
+                if (name.equals("broadcastMessage")) {
+                    Broadcasts b = broadcasts;
+                    if (b != null) b.onBroadcast((String) args[0]);
+                    return 0;
+                }
+                if (method.getReturnType() == String.class) return "TestServer";
+                return empty(method.getReturnType());
+            }
+        });
+        Bukkit.setServer(server);
+        return server;
+    }
+
+    /**
+     * Sets who receives the lines broadcast to the server. Null to ignore them.
+     */
+    static void setBroadcasts(Broadcasts listener) {
+        broadcasts = listener;
+    }
+
+    /**
+     * Creates a player with the given name.
+     */
+    static Player player(final String name) {
+        final UUID id = UUID.nameUUIDFromBytes(name.getBytes());
+        return fake(Player.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String m = method.getName();
+                if (m.equals("getUniqueId")) return id;
+                if (m.equals("getName") || m.equals("getDisplayName") || m.equals("getPlayerListName")) return name;
+                if (m.equals("hashCode")) return id.hashCode();
+                if (m.equals("equals")) return proxy == args[0];
+                if (m.equals("toString")) return "TestPlayer{" + name + "}";
+                return empty(method.getReturnType());
+            }
+        });
+    }
+
+    private static BukkitScheduler scheduler() {
+        final ScheduledExecutorService pool = new ScheduledThreadPoolExecutor(4, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "TestServer scheduler " + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        final AtomicInteger ids = new AtomicInteger();
+        final Map<Integer, Future<?>> tasks = new ConcurrentHashMap<Integer, Future<?>>();
+
+        return fake(BukkitScheduler.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("cancelTask")) {
+                    Future<?> f = tasks.remove((Integer) args[0]);
+                    if (f != null) f.cancel(false);
+                    return null;
+                }
+                if (!name.startsWith("runTask")) return empty(method.getReturnType());
+
+                final Runnable task = (Runnable) args[1];
+                Future<?> f;
+                if (name.startsWith("runTaskTimer"))
+                    f = pool.scheduleAtFixedRate(task, (Long) args[2] * TICK, Math.max(1, (Long) args[3]) * TICK, TimeUnit.MILLISECONDS);
+                else if (name.startsWith("runTaskLater"))
+                    f = pool.schedule(task, (Long) args[2] * TICK, TimeUnit.MILLISECONDS);
+                else
+                    f = pool.submit(task);
+
+                int id = ids.incrementAndGet();
+                tasks.put(id, f);
+                return task(id, f, !name.contains("Asynchronously"), tasks);
+            }
+        });
+    }
+
+    private static BukkitTask task(final int id, final Future<?> future, final boolean sync, final Map<Integer, Future<?>> tasks) {
+        return fake(BukkitTask.class, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if (name.equals("getTaskId")) return id;
+                if (name.equals("isSync")) return sync;
+                if (name.equals("cancel")) {
+                    tasks.remove(id);
+                    future.cancel(false);
+                    return null;
+                }
+                if (name.equals("hashCode")) return id;
+                if (name.equals("equals")) return proxy == args[0];
+                return empty(method.getReturnType());
+            }
+        });
+    }
+
+    private static <T> T fake(Class<T> type, InvocationHandler handler) {
+        if (handler == null) {
+            handler = new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    return empty(method.getReturnType());
+                }
+            };
+        }
+        return type.cast(Proxy.newProxyInstance(TestServer.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    private static Object empty(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) return null;
+        if (type == boolean.class) return false;
+        if (type == char.class) return '\0';
+        if (type == long.class) return 0L;
+        if (type == float.class) return 0f;
+        if (type == double.class) return 0d;
+        if (type == byte.class) return (byte) 0;
+        if (type == short.class) return (short) 0;
+        return 0;
+    }
+}
@@ -0,0 +1,145 @@
+package com.avisenera.minecraftbot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds any of a set of words in a text, in a single pass over the text no matter how
+ * many words there are (Aho-Corasick).<br>
+ * The words are put in a tree of characters, where each node also links to the longest
+ * node that ends the same way. While reading the text, a character without a branch
+ * follows those links instead of starting over, so no character is read twice.
+ * Case is ignored. Once built, the automaton never changes and may be used by any amount
+ * of threads at once; to change the words, build a new one.
+ */
+public final class AhoCorasick {
+    /**
+     * Receives the words found.
+     */
+    public static abstract class Hits {
+        /**
+         * Called for every place a word was found, in the order the words end in the text.
+         * @param word The index of the word in the array the automaton was built from
+         * @param start The index of the word's first character in the text
+         * @param end The index after the word's last character
+         */
+        protected abstract void hit(int word, int start, int end);
+    }
+
+    // Branches of each node, sorted by character
+    private final char[][] labels;
+    private final int[][] targets;
+    private final int[] fail;   // the longest other node ending the same way
+    private final int[] word;   // the word ending at the node, or -1
+    private final int[] next;   // the closest node on the fail chain where a word ends, or -1
+    private final int[] length; // lengths of the words
+    private final int words;
+
+    /**
+     * @param keys The words to find. Empty words are ignored; if a word is given more than
+     * once, only its last index is reported.
+     */
+    public AhoCorasick(String[] keys) {
+        words = keys.length;
+        length = new int[keys.length];
+
+        // The tree, while it's built
+        List<Map<Character, Integer>> branches = new ArrayList<Map<Character, Integer>>();
+        List<Integer> ends = new ArrayList<Integer>();
+        branches.add(new HashMap<Character, Integer>());
+        ends.add(-1);
+        for (int k = 0; k < keys.length; k++) {
+            String key = keys[k];
+            length[k] = key.length();
+            if (key.isEmpty()) continue;
+            int node = 0;
+            for (int i = 0; i < key.length(); i++) {
+                char c = Character.toLowerCase(key.charAt(i));
+                Integer child = branches.get(node).get(c);
+                if (child == null) {
+                    child = branches.size();
+                    branches.add(new HashMap<Character, Integer>());
+                    ends.add(-1);
+                    branches.get(node).put(c, child);
+                }
+                node = child;
+            }
+            ends.set(node, k);
+        }
+
+        int nodes = branches.size();
+        labels = new char[nodes][];
+        targets = new int[nodes][];
+        fail = new int[nodes];
+        word = new int[nodes];
+        next = new int[nodes];
+        for (int n = 0; n < nodes; n++) {
+            Map<Character, Integer> b = branches.get(n);
+            char[] l = new char[b.size()];
+            int i = 0;
+            for (Character c : b.keySet()) l[i++] = c;
+            Arrays.sort(l);
+            int[] t = new int[l.length];
+            for (i = 0; i < l.length; i++) t[i] = b.get(l[i]);
+            labels[n] = l;
+            targets[n] = t;
+            word[n] = ends.get(n);
+        }
+
+        // Links, breadth first so that shorter nodes are done before longer ones
+        int[] queue = new int[nodes];
+        int head = 0, tail = 0;
+        next[0] = -1;
+        for (int child : targets[0]) {
+            fail[child] = 0;
+            next[child] = -1;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int n = queue[head++];
+            for (int i = 0; i < labels[n].length; i++) {
+                char c = labels[n][i];
+                int child = targets[n][i];
+                int f = fail[n];
+                int to;
+                while ((to = branch(f, c)) == -1 && f != 0) f = fail[f];
+                fail[child] = (to == -1 || to == child ? 0 : to);
+                next[child] = (word[fail[child]] != -1 ? fail[child] : next[fail[child]]);
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    /**
+     * Returns the amount of words the automaton was built from.
+     */
+    public int size() {
+        return words;
+    }
+
+    /**
+     * Finds every word in the text, including words inside other words and words that overlap.
+     * @param text The text to search
+     * @param hits Receives the words found
+     */
+    public void find(CharSequence text, Hits hits) {
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int to;
+            while ((to = branch(node, c)) == -1 && node != 0) node = fail[node];
+            node = (to == -1 ? 0 : to);
+            for (int n = (word[node] != -1 ? node : next[node]); n != -1; n = next[n])
+                hits.hit(word[n], i + 1 - length[word[n]], i + 1);
+        }
+    }
+
+    // The node reached from a node by a character, or -1
+    private int branch(int node, char c) {
+        int i = Arrays.binarySearch(labels[node], c);
+        return (i < 0 ? -1 : targets[node][i]);
+    }
+}
@@ -0,0 +1,55 @@
+package com.avisenera.minecraftbot;
+
+/**
+ * A line that stops whoever reads too much of it.<br>
+ * Some regular expressions from the configuration take very long on some lines, reading the
+ * same characters over and over, which would hold up the thread relaying them. An expression
+ * matched against this instead of the line itself gets to read so many characters (see
+ * {@link Keys.settings#rewrite_budget}), and is stopped with {@link OverBudget} after that.
+ */
+final class Budgeted implements CharSequence {
+    static final int DEFAULT_BUDGET = 100000;
+
+    /**
+     * Thrown once an expression read too many characters.
+     */
+    static final class OverBudget extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this; // thrown often enough by a bad rule that the stack isn't worth it
+        }
+    }
+
+    private final String text;
+    private int left;
+    boolean copying = false; // set while the line is copied into a result, which isn't counted
+
+    Budgeted(String text, int budget) {
+        this.text = text;
+        this.left = budget;
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (!copying && --left < 0) throw new OverBudget();
+        return text.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        // Only used to copy groups into a result, which isn't counted either
+        return text.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
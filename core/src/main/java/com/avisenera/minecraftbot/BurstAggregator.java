@@ -0,0 +1,163 @@
+package com.avisenera.minecraftbot;
+
+import com.avisenera.minecraftbot.listeners.IRCManager;
+import com.avisenera.minecraftbot.message.Message;
+import java.util.LinkedHashSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Combines bursts of lines going to IRC, such as everyone joining again after a restart,
+ * into summary lines like "Alice, Bob and 47 others joined the game".<br>
+ * A line is sent right away when no other line of its type was sent in the last
+ * window (see {@link ConfigSnapshot#aggregateWindow}), so sparse traffic looks exactly
+ * as it always did. Lines coming up while a window is open are held until it closes.
+ * A single held line is then sent as it is, more are sent as one summary, and a new
+ * window starts for as long as lines keep coming.
+ */
+public class BurstAggregator {
+    private static final int SHOWN = 2; // names in a summary before "and N others"
+
+    // A summary isn't made from any single event
+    private static class Summary extends Message {}
+
+    // Lines of one type. Only used while holding its lock.
+    private static class Burst {
+        long windowEnd = 0;        // System.nanoTime() when the current window closes
+        boolean scheduled = false; // a flush is waiting for the window to close
+        int held = 0;
+        String firstLine;
+        Message first;
+        final LinkedHashSet<String> names = new LinkedHashSet<String>();
+    }
+
+    private final Relay relay;
+    private final Burst[] bursts = new Burst[Keys.line_to_irc.values().length];
+
+    public BurstAggregator(Relay relay) {
+        this.relay = relay;
+        for (int i = 0; i < bursts.length; i++) bursts[i] = new Burst();
+    }
+
+    /**
+     * Sends a formatted line to IRC now, or holds it to be part of a summary.
+     * The line is counted in the relay's {@link RelayStats} once it is sent.
+     * @param type The kind of event the line was made from
+     * @param line The formatted line
+     * @param message The event's message. Its name is used in summaries.
+     */
+    public void offer(Keys.line_to_irc type, String line, Message message) {
+        int window = window(type);
+        if (window <= 0) {
+            send(type, line, message);
+            return;
+        }
+
+        long now = System.nanoTime();
+        Burst b = bursts[type.ordinal()];
+        boolean sendNow = false;
+        synchronized (b) {
+            if (!b.scheduled && now - b.windowEnd >= 0) {
+                b.windowEnd = now + TimeUnit.SECONDS.toNanos(window);
+                sendNow = true;
+            } else {
+                if (b.held++ == 0) {
+                    b.firstLine = line;
+                    b.first = message;
+                }
+                if (!message.name.isEmpty()) b.names.add(message.name);
+                if (!b.scheduled) {
+                    b.scheduled = true;
+                    schedule(type, b.windowEnd - now);
+                }
+            }
+        }
+        if (sendNow) send(type, line, message);
+    }
+
+    /**
+     * Sends everything still held right away.
+     */
+    public void flush() {
+        for (Keys.line_to_irc type : Keys.line_to_irc.values()) flush(type);
+    }
+
+    // In seconds; longer while the server is lagging
+    private int window(Keys.line_to_irc type) {
+        return relay.getConfig().aggregateWindow(type) * relay.getLoadShedder().windowFactor();
+    }
+
+    private void schedule(final Keys.line_to_irc type, long delay) {
+        try {
+            relay.getTimer().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush(type);
+                }
+            }, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down, so the lines are sent by flush() instead
+        }
+    }
+
+    // Sends the lines held while the window was open
+    private void flush(Keys.line_to_irc type) {
+        Burst b = bursts[type.ordinal()];
+        int held;
+        String firstLine;
+        Message first;
+        String[] names;
+        synchronized (b) {
+            b.scheduled = false;
+            held = b.held;
+            if (held == 0) return;
+            firstLine = b.firstLine;
+            first = b.first;
+            names = b.names.toArray(new String[b.names.size()]);
+            b.held = 0;
+            b.firstLine = null;
+            b.first = null;
+            b.names.clear();
+            // Lines are still coming, so the next ones are collected too
+            b.windowEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(window(type));
+        }
+
+        if (held == 1) {
+            send(type, firstLine, first);
+            return;
+        }
+
+        Message summary = new Summary();
+        summary.name = names(names, held);
+        String line = Message.applyFormatting(relay, relay.getConfig().summary(type), summary);
+        IRCManager manager = relay.getIRCManager();
+        boolean sent = (line != null && manager != null && manager.queue(line, false, type, summary));
+        RelayStats.Outcome outcome = (sent ? RelayStats.Outcome.aggregated : RelayStats.Outcome.dropped);
+        for (int i = 0; i < held; i++) relay.getRelayStats().count(type, outcome);
+    }
+
+    private void send(Keys.line_to_irc type, String line, Message message) {
+        IRCManager manager = relay.getIRCManager();
+        if (manager != null && manager.queue(line, false, type, message))
+            relay.getRelayStats().count(type, RelayStats.Outcome.relayed);
+        else relay.getRelayStats().count(type, RelayStats.Outcome.dropped);
+    }
+
+    /**
+     * Lists names the way a summary shows them, such as "Alice, Bob and 47 others".
+     * @param names The distinct names, in the order they came up
+     * @param lines The amount of lines the names came from, used if none had a name
+     */
+    public static String names(String[] names, int lines) {
+        if (names.length == 0) return lines + " players";
+        if (names.length <= SHOWN + 1) {
+            if (names.length == 1) return names[0];
+            StringBuilder sb = new StringBuilder(names[0]);
+            for (int i = 1; i < names.length - 1; i++) sb.append(", ").append(names[i]);
+            return sb.append(" and ").append(names[names.length - 1]).toString();
+        }
+        StringBuilder sb = new StringBuilder(names[0]);
+        for (int i = 1; i < SHOWN; i++) sb.append(", ").append(names[i]);
+        return sb.append(" and ").append(names.length - SHOWN).append(" others").toString();
+    }
+}
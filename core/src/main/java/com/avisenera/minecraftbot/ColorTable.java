@@ -0,0 +1,82 @@
+package com.avisenera.minecraftbot;
+
+/**
+ * Finds the closest Minecraft color for any RGB color.<br>
+ * Minecraft only has 16 colors, while IRC has 99 palette colors plus hex colors.
+ * The closest color for every cell of a 32x32x32 RGB cube is worked out once
+ * when this class is loaded, so a lookup is a single array index.
+ */
+final class ColorTable {
+    private ColorTable() {}
+
+    // Minecraft's colors, in the order of their codes 0-f
+    private static final int[] MC_RGB = {
+        0x000000, 0x0000AA, 0x00AA00, 0x00AAAA, 0xAA0000, 0xAA00AA, 0xFFAA00, 0xAAAAAA,
+        0x555555, 0x5555FF, 0x55FF55, 0x55FFFF, 0xFF5555, 0xFF55FF, 0xFFFF55, 0xFFFFFF
+    };
+    private static final char[] MC_CODES = "0123456789abcdef".toCharArray();
+
+    // mIRC's extended palette, codes 16 to 98
+    // https://modern.ircdocs.horse/formatting.html#colors-16-98
+    private static final int[] IRC_EXTENDED_RGB = {
+        0x470000, 0x472100, 0x474700, 0x324700, 0x004700, 0x00472C, 0x004747, 0x002747, 0x000047, 0x2E0047, 0x470047, 0x47002A,
+        0x740000, 0x743A00, 0x747400, 0x517400, 0x007400, 0x007449, 0x007474, 0x004074, 0x000074, 0x4B0074, 0x740074, 0x740045,
+        0xB50000, 0xB56300, 0xB5B500, 0x7DB500, 0x00B500, 0x00B571, 0x00B5B5, 0x0063B5, 0x0000B5, 0x7500B5, 0xB500B5, 0xB5006B,
+        0xFF0000, 0xFF8C00, 0xFFFF00, 0xB2FF00, 0x00FF00, 0x00FFA0, 0x00FFFF, 0x008CFF, 0x0000FF, 0xA500FF, 0xFF00FF, 0xFF0098,
+        0xFF5959, 0xFFB459, 0xFFFF71, 0xCFFF60, 0x6FFF6F, 0x65FFC9, 0x6DFFFF, 0x59B4FF, 0x5959FF, 0xC459FF, 0xFF66FF, 0xFF59BC,
+        0xFF9C9C, 0xFFD39C, 0xFFFF9C, 0xE2FF9C, 0x9CFF9C, 0x9CFFDB, 0x9CFFFF, 0x9CD3FF, 0x9C9CFF, 0xDC9CFF, 0xFF9CFF, 0xFF94D3,
+        0x000000, 0x131313, 0x282828, 0x363636, 0x4D4D4D, 0x656565, 0x818181, 0x9F9F9F, 0xBCBCBC, 0xE2E2E2, 0xFFFFFF
+    };
+    static final int IRC_EXTENDED_FIRST = 16;
+
+    // Index of the closest Minecraft color for each cell, 5 bits per channel
+    private static final byte[] CUBE = new byte[32 * 32 * 32];
+
+    static {
+        for (int r = 0; r < 32; r++)
+            for (int g = 0; g < 32; g++)
+                for (int b = 0; b < 32; b++)
+                    // Using the center of each cell
+                    CUBE[(r << 10) | (g << 5) | b] = (byte) closest((r << 3) | 4, (g << 3) | 4, (b << 3) | 4);
+    }
+
+    /**
+     * Returns the code character (0-9, a-f) of the Minecraft color closest to the given color.
+     * @param rgb The color, as 0xRRGGBB
+     */
+    static char nearest(int rgb) {
+        return MC_CODES[CUBE[((rgb >> 9) & 0x7C00) | ((rgb >> 6) & 0x3E0) | ((rgb >> 3) & 0x1F)]];
+    }
+
+    /**
+     * Returns the RGB value of an extended IRC palette color.
+     * @param code A color code between 16 and 98
+     */
+    static int extendedRGB(int code) {
+        return IRC_EXTENDED_RGB[code - IRC_EXTENDED_FIRST];
+    }
+
+    static int extendedCount() {
+        return IRC_EXTENDED_RGB.length;
+    }
+
+    // Only used to build the cube, never while translating lines
+    private static int closest(int r, int g, int b) {
+        int best = 0;
+        long bestDistance = Long.MAX_VALUE;
+        for (int i = 0; i < MC_RGB.length; i++) {
+            int mr = (MC_RGB[i] >> 16) & 0xFF;
+            int mg = (MC_RGB[i] >> 8) & 0xFF;
+            int mb = MC_RGB[i] & 0xFF;
+            // "Redmean" weighting, which is closer to how colors are perceived than plain RGB distance
+            int rmean = (r + mr) / 2;
+            int dr = r - mr, dg = g - mg, db = b - mb;
+            long distance = (((512 + rmean) * dr * dr) >> 8) + 4 * dg * dg + (((767 - rmean) * db * db) >> 8);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,326 @@
+package com.avisenera.minecraftbot;
+
+import com.avisenera.minecraftbot.message.Template;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * All configuration values as they were at one point in time. A snapshot is never
+ * modified once it has been made: reloading the configuration makes a new one.<br>
+ * True/false and numeric values are parsed and formatting strings are compiled when the
+ * snapshot is made, so reading a value never involves any parsing.
+ */
+public final class ConfigSnapshot {
+    private final Values<Keys.connection> connection;
+    private final Values<Keys.commands> commands;
+    private final Values<Keys.settings> settings;
+    private final EnumMap<Keys.line_to_irc, Template> line_to_irc;
+    private final EnumMap<Keys.line_to_minecraft, Template> line_to_minecraft;
+    private final Values<Keys.line_to_irc> aggregate_window;
+    private final EnumMap<Keys.line_to_irc, Template> aggregate_summary;
+    private final Set<String> ignore_list;
+    private final WordFilter filter;
+    private final RewriteRules rewrites;
+
+    /**
+     * The values a snapshot is made from, as they are read. Parts left empty use the defaults.
+     */
+    static final class Builder {
+        final EnumMap<Keys.connection, String> connection = new EnumMap<Keys.connection, String>(Keys.connection.class);
+        final EnumMap<Keys.commands, String> commands = new EnumMap<Keys.commands, String>(Keys.commands.class);
+        final EnumMap<Keys.settings, String> settings = new EnumMap<Keys.settings, String>(Keys.settings.class);
+        final EnumMap<Keys.line_to_irc, String> line_to_irc = new EnumMap<Keys.line_to_irc, String>(Keys.line_to_irc.class);
+        final EnumMap<Keys.line_to_minecraft, String> line_to_minecraft = new EnumMap<Keys.line_to_minecraft, String>(Keys.line_to_minecraft.class);
+        final EnumMap<Keys.line_to_irc, String> aggregate_window = new EnumMap<Keys.line_to_irc, String>(Keys.line_to_irc.class);
+        final EnumMap<Keys.line_to_irc, String> aggregate_summary = new EnumMap<Keys.line_to_irc, String>(Keys.line_to_irc.class);
+        final Set<String> ignore_list = new HashSet<String>();      // lowercase nicks
+        final List<String> filter = new ArrayList<String>();         // lines of the filter list
+        final List<RewriteRules.Definition> rewrites = new ArrayList<RewriteRules.Definition>();
+
+        /**
+         * Parses and compiles the values into a snapshot. The builder may be used again afterwards.
+         */
+        ConfigSnapshot build() {
+            return new ConfigSnapshot(this);
+        }
+    }
+
+    private ConfigSnapshot(Builder b) {
+        this.connection = new Values<Keys.connection>(Keys.connection.class, b.connection);
+        this.commands = new Values<Keys.commands>(Keys.commands.class, b.commands);
+        this.settings = new Values<Keys.settings>(Keys.settings.class, b.settings);
+
+        this.line_to_irc = new EnumMap<Keys.line_to_irc, Template>(Keys.line_to_irc.class);
+        for (Keys.line_to_irc k : Keys.line_to_irc.values())
+            this.line_to_irc.put(k, Template.compile(b.line_to_irc.get(k)));
+        this.line_to_minecraft = new EnumMap<Keys.line_to_minecraft, Template>(Keys.line_to_minecraft.class);
+        for (Keys.line_to_minecraft k : Keys.line_to_minecraft.values())
+            this.line_to_minecraft.put(k, Template.compile(b.line_to_minecraft.get(k)));
+        this.aggregate_window = new Values<Keys.line_to_irc>(Keys.line_to_irc.class, b.aggregate_window);
+        this.aggregate_summary = new EnumMap<Keys.line_to_irc, Template>(Keys.line_to_irc.class);
+        for (Keys.line_to_irc k : Keys.line_to_irc.values())
+            this.aggregate_summary.put(k, Template.compile(b.aggregate_summary.get(k)));
+
+        this.ignore_list = Collections.unmodifiableSet(new HashSet<String>(b.ignore_list));
+        // Expressions in the filter list get the same budget as rewrite rules
+        int budget = this.settings.integer(Keys.settings.rewrite_budget, Budgeted.DEFAULT_BUDGET);
+        this.filter = (b.filter.isEmpty() ? WordFilter.NONE : new WordFilter(b.filter, budget));
+        this.rewrites = new RewriteRules(b.rewrites, budget);
+    }
+
+    // Copy of an existing snapshot with a different ignore list
+    private ConfigSnapshot(ConfigSnapshot other, Set<String> ignore_list) {
+        this.connection = other.connection;
+        this.commands = other.commands;
+        this.settings = other.settings;
+        this.line_to_irc = other.line_to_irc;
+        this.line_to_minecraft = other.line_to_minecraft;
+        this.aggregate_window = other.aggregate_window;
+        this.aggregate_summary = other.aggregate_summary;
+        this.filter = other.filter;
+        this.rewrites = other.rewrites;
+        this.ignore_list = Collections.unmodifiableSet(new HashSet<String>(ignore_list));
+    }
+
+    /**
+     * Returns a copy of this snapshot using the given ignore list.
+     */
+    ConfigSnapshot withIgnoreList(Set<String> ignores) {
+        return new ConfigSnapshot(this, ignores);
+    }
+
+    /**
+     * Returns the given connection value.
+     */
+    public String connection(Keys.connection value) {
+        return connection.string(value);
+    }
+
+    /**
+     * Returns the given connection value as a number, or the default if it isn't a number.
+     */
+    public int connectionI(Keys.connection value, int def) {
+        return connection.integer(value, def);
+    }
+
+    /**
+     * Returns the given connection value as a boolean.
+     */
+    public boolean connectionB(Keys.connection value) {
+        return connection.bool(value);
+    }
+
+    /**
+     * Returns all connection values.
+     */
+    public EnumMap<Keys.connection, String> connection() {
+        return connection.toMap();
+    }
+
+    /**
+     * Returns the given commands value.
+     */
+    public String commandsS(Keys.commands value) {
+        return commands.string(value);
+    }
+
+    /**
+     * Returns the given commands value as a boolean.
+     */
+    public boolean commandsB(Keys.commands value) {
+        return commands.bool(value);
+    }
+
+    /**
+     * Returns the given settings value.
+     */
+    public String settingsS(Keys.settings value) {
+        return settings.string(value);
+    }
+
+    /**
+     * Returns the given settings value as a boolean.
+     */
+    public boolean settingsB(Keys.settings value) {
+        return settings.bool(value);
+    }
+
+    /**
+     * Returns the given settings value as a number, or the default if it isn't a number.
+     */
+    public int settingsI(Keys.settings value, int def) {
+        return settings.integer(value, def);
+    }
+
+    /**
+     * Returns the compiled formatting string for a line sent to IRC.
+     */
+    public Template template(Keys.line_to_irc value) {
+        return line_to_irc.get(value);
+    }
+
+    /**
+     * Returns the compiled formatting string for a line sent to Minecraft.
+     */
+    public Template template(Keys.line_to_minecraft value) {
+        return line_to_minecraft.get(value);
+    }
+
+    /**
+     * Returns how long (in seconds) lines of the given type are collected into a summary
+     * once one was sent. 0 if they are always sent one by one.
+     */
+    public int aggregateWindow(Keys.line_to_irc value) {
+        int window = aggregate_window.integer(value, 0);
+        return (window > 0 && !aggregate_summary.get(value).isEmpty() ? window : 0);
+    }
+
+    /**
+     * Returns the compiled formatting string for a summary of several lines sent to IRC.
+     */
+    public Template summary(Keys.line_to_irc value) {
+        return aggregate_summary.get(value);
+    }
+
+    /**
+     * Returns the ignore list. All nicks are in lowercase. The set can't be modified.
+     */
+    public Set<String> ignoreList() {
+        return ignore_list;
+    }
+
+    /**
+     * Checks if the given nick is in the ignore list.
+     */
+    public boolean isIgnored(String nick) {
+        return ignore_list.contains(nick.toLowerCase());
+    }
+
+    /**
+     * Returns the word filter, compiled from the filter list.
+     */
+    public WordFilter filter() {
+        return filter;
+    }
+
+    /**
+     * Returns the rewrite rules, compiled from the rewrite section.
+     */
+    public RewriteRules rewrites() {
+        return rewrites;
+    }
+
+    /**
+     * Checks if any of the connection values are different in the other snapshot.
+     * If they are, the bot must reconnect for the new values to be used.
+     */
+    public boolean connectionDiffers(ConfigSnapshot other) {
+        return other == null || !connection.equals(other.connection);
+    }
+
+    /**
+     * Lists the parts of the configuration that are different in the other snapshot,
+     * such as "commands", "to_irc.chat" or "ignore list".
+     */
+    public List<String> differences(ConfigSnapshot other) {
+        List<String> changes = new ArrayList<String>();
+        if (other == null) {
+            changes.add("everything");
+            return changes;
+        }
+        if (!connection.equals(other.connection)) changes.add("connection");
+        if (!commands.equals(other.commands)) changes.add("commands");
+        if (!settings.equals(other.settings)) changes.add("settings");
+        for (Keys.line_to_irc k : Keys.line_to_irc.values())
+            if (!template(k).toString().equals(other.template(k).toString())) changes.add("to_irc." + k);
+        for (Keys.line_to_minecraft k : Keys.line_to_minecraft.values())
+            if (!template(k).toString().equals(other.template(k).toString())) changes.add("to_minecraft." + k);
+        if (!aggregate_window.equals(other.aggregate_window)) changes.add("aggregate.window");
+        for (Keys.line_to_irc k : Keys.line_to_irc.values())
+            if (!summary(k).toString().equals(other.summary(k).toString())) changes.add("aggregate.summary." + k);
+        if (!ignore_list.equals(other.ignore_list)) changes.add("ignore list");
+        if (!sameRules(filter, other.filter)) changes.add("filter list");
+        if (!rewrites.sameAs(other.rewrites)) changes.add("rewrite");
+        return changes;
+    }
+
+    private static boolean sameRules(WordFilter a, WordFilter b) {
+        List<WordFilter.Rule> x = a.getRules(), y = b.getRules();
+        if (x.size() != y.size()) return false;
+        for (int i = 0; i < x.size(); i++)
+            if (!x.get(i).getText().equals(y.get(i).getText())) return false;
+        return true;
+    }
+
+    /**
+     * Values of one section of the configuration file, indexed by the key's ordinal.
+     */
+    private static final class Values<K extends Enum<K>> {
+        private final Class<K> type;
+        private final String[] strings;
+        private final boolean[] bools;
+        private final int[] ints;
+        private final boolean[] numeric;
+
+        Values(Class<K> type, Map<K, String> map) {
+            K[] keys = type.getEnumConstants();
+            this.type = type;
+            strings = new String[keys.length];
+            bools = new boolean[keys.length];
+            ints = new int[keys.length];
+            numeric = new boolean[keys.length];
+
+            for (K k : keys) {
+                int i = k.ordinal();
+                String value = map.get(k);
+                strings[i] = (value == null ? "" : value);
+                bools[i] = strings[i].equalsIgnoreCase("true");
+                try {
+                    ints[i] = Integer.parseInt(strings[i].trim());
+                    numeric[i] = true;
+                } catch (NumberFormatException e) {
+                    numeric[i] = false;
+                }
+            }
+        }
+
+        String string(K key) {
+            if (key == null) return "";
+            return strings[key.ordinal()];
+        }
+
+        boolean bool(K key) {
+            if (key == null) return false;
+            return bools[key.ordinal()];
+        }
+
+        int integer(K key, int def) {
+            if (key == null || !numeric[key.ordinal()]) return def;
+            return ints[key.ordinal()];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Values)) return false;
+            return Arrays.equals(strings, ((Values<?>) o).strings);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(strings);
+        }
+
+        EnumMap<K, String> toMap() {
+            EnumMap<K, String> map = new EnumMap<K, String>(type);
+            for (K k : type.getEnumConstants())
+                map.put(k, strings[k.ordinal()]);
+            return map;
+        }
+    }
+}
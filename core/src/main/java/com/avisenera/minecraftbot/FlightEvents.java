@@ -0,0 +1,107 @@
+package com.avisenera.minecraftbot;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JDK Flight Recorder events written by {@link RelayRecorder}.<br>
+ * This is the only class that uses the jdk.jfr package, and it is only loaded when
+ * that package exists, so the plugin still runs on Java versions without it.
+ * Events are only filled in when a recording has them enabled.
+ */
+final class FlightEvents {
+    private FlightEvents() {}
+
+    @Name("minecraftbot.RelayedLine")
+    @Label("Relayed Line")
+    @Category("MinecraftBot")
+    @Description("A line sent from Minecraft to IRC, or from IRC to Minecraft")
+    @StackTrace(false)
+    static final class RelayedLine extends Event {
+        @Label("Direction") String direction;
+        @Label("Type") String type;
+        @Label("Length") int size;
+        @Label("Queue Time") @Timespan(Timespan.NANOSECONDS) long queue;
+        @Label("Format Time") @Timespan(Timespan.NANOSECONDS) long format;
+        @Label("Hooks Time") @Timespan(Timespan.NANOSECONDS) long hooks;
+        @Label("Send Time") @Timespan(Timespan.NANOSECONDS) long send;
+        @Label("Total Time") @Timespan(Timespan.NANOSECONDS) long total;
+    }
+
+    @Name("minecraftbot.Connect")
+    @Label("IRC Connect")
+    @Category("MinecraftBot")
+    @Description("The bot connected to the IRC server")
+    @StackTrace(false)
+    static final class Connect extends Event {
+        @Label("Server") String server;
+        @Label("Reconnect") boolean reconnect;
+        @Label("Connections") int connections;
+    }
+
+    @Name("minecraftbot.FloodStall")
+    @Label("Flood Control Stall")
+    @Category("MinecraftBot")
+    @Description("Sending a line to IRC was held up by the message delay")
+    @StackTrace(false)
+    static final class FloodStall extends Event {
+        @Label("Stall") @Timespan(Timespan.NANOSECONDS) long stall;
+        @Label("Lines Waiting") int queued;
+    }
+
+    @Name("minecraftbot.ListenerDispatch")
+    @Label("Listener Dispatch")
+    @Category("MinecraftBot")
+    @Description("A line from IRC was handed to one listener")
+    @StackTrace(false)
+    static final class ListenerDispatch extends Event {
+        @Label("Listener") String listener;
+        @Label("Type") String type;
+        @Label("Time") @Timespan(Timespan.NANOSECONDS) long time;
+    }
+
+    static void line(boolean toIRC, String type, int size, long queue, long format, long hooks, long send, long total) {
+        RelayedLine e = new RelayedLine();
+        if (!e.isEnabled()) return;
+        e.direction = (toIRC ? "to_irc" : "to_minecraft");
+        e.type = type;
+        e.size = size;
+        e.queue = queue;
+        e.format = format;
+        e.hooks = hooks;
+        e.send = send;
+        e.total = total;
+        e.commit();
+    }
+
+    static void connected(String server, int connections) {
+        Connect e = new Connect();
+        if (!e.isEnabled()) return;
+        e.server = server;
+        e.reconnect = connections > 1;
+        e.connections = connections;
+        e.commit();
+    }
+
+    static void floodStall(long stall, int queued) {
+        FloodStall e = new FloodStall();
+        if (!e.isEnabled()) return;
+        e.stall = stall;
+        e.queued = queued;
+        e.commit();
+    }
+
+    static void dispatched(String listener, String type, long time) {
+        ListenerDispatch e = new ListenerDispatch();
+        if (!e.isEnabled()) return;
+        e.listener = listener;
+        e.type = type;
+        e.time = time;
+        e.commit();
+    }
+}
@@ -0,0 +1,176 @@
+package com.avisenera.minecraftbot;
+
+/**
+ * Representation of a formatting code
+ */
+public enum Formatting {
+    // IRC values based on mIRC's documentation
+    // http://www.mirc.com/colors.html
+    // I used the closest color possible for Minecraft
+    WHITE       ("\u000300", "f"),
+    BLACK       ("\u000301", "0"),
+    DARK_BLUE   ("\u000302", "1"),
+    GREEN       ("\u000303", "2"),
+    RED         ("\u000304", "c"),
+    BROWN       ("\u000305", "4"), // using MC dark red
+    PURPLE      ("\u000306", "5"),
+    ORANGE      ("\u000307", "6"), // using MC gold
+    YELLOW      ("\u000308", "e"),
+    LIGHT_GREEN ("\u000309", "a"),
+    TEAL        ("\u000310", "3"), // Using MC dark aqua
+    LIGHT_CYAN  ("\u000311", "b"), // using MC aqua
+    LIGHT_BLUE  ("\u000312", "9"),
+    PINK        ("\u000313", "d"),
+    GRAY        ("\u000314", "7"),
+    LIGHT_GRAY  ("\u000315", "8"),
+    
+    // Control codes
+    BOLD        ("\u0002",   "l"),
+    RANDOM      ("",         "k"), // No corresponding code in IRC
+    MAGIC       ("",         "k"), // duplicate
+    STRIKE      ("\u001e",   "m"),
+    UNDERLINE   ("\u001f",   "n"),
+    ITALIC      ("\u001d",   "o"),
+    REVERSE     ("\u0016",   "o"), // duplicate, reverses in mIRC
+    NORMAL      ("\u000f",   "r"),
+    RESET       ("\u000f",   "r"), // duplicate
+    
+    // Extra
+    C_RESET     ("\u0003",   "r"); // color code on its own usually means the color ends here  
+    
+    public final String irc; // IRC control code and possibly color value
+    public final String mc; // Minecraft two-character color code
+
+    private Formatting(String irc, String mc) {
+        this.irc = irc;
+        this.mc = '\u00A7' + mc;
+    }
+    
+    public String toString() {
+        return mc;
+    }
+    
+    /**
+     * Translates Minecraft color codes to IRC color codes.
+     * Italics (&sect;o) become \x1D and strikethrough (&sect;m) becomes \x1E; clients that
+     * don't know those codes show the text without them. Obfuscated text (&sect;k) is removed.
+     * @param line The line from Minecraft
+     * @return A line with IRC color codes, if there were codes in the original line.
+     * Adds a \x0F (normal) character at the end of the line to prevent colors from
+     * "leaking" into the rest of the string. Keep this in mind if the entire string is
+     * supposed to have a color.
+     */
+    public static String toIRC(final String line) {
+        String msg = line;
+        for (Formatting c : Formatting.values()) {
+            msg = msg.replaceAll(c.mc, c.irc);
+        }
+        return msg; // Colors shouldn't "leak" into the rest of the string
+    }
+    
+    // Minecraft color for each IRC color code, 00 to 99
+    private static final String[] IRC_COLORS = new String[100];
+    // Minecraft code for each single-character IRC control code, if there is one
+    private static final String[] IRC_CONTROLS = new String[32];
+    
+    static {
+        Formatting[] values = Formatting.values();
+        for (int i = 0; i < 16; i++)
+            IRC_COLORS[i] = values[i].mc;
+        for (int i = 0; i < ColorTable.extendedCount(); i++) {
+            int code = ColorTable.IRC_EXTENDED_FIRST + i;
+            IRC_COLORS[code] = "\u00A7" + ColorTable.nearest(ColorTable.extendedRGB(code));
+        }
+        IRC_COLORS[99] = NORMAL.mc; // 99 is the client's default color
+        
+        for (Formatting f : values) {
+            if (f.irc.length() != 1 || f == C_RESET) continue;
+            char c = f.irc.charAt(0);
+            if (IRC_CONTROLS[c] == null) IRC_CONTROLS[c] = f.mc;
+        }
+    }
+    
+    /**
+     * Translates IRC color codes to Minecraft color codes.
+     * Both the 99 color palette and hex colors (\x04RRGGBB) are understood, and are
+     * shown using the closest Minecraft color. Background colors are removed, as well
+     * as codes Minecraft doesn't understand (monospace, other control characters).
+     * @param line The line from IRC
+     * @return A line with Minecraft color codes, if there were codes in the original line.
+     */
+    public static String toMC(String line) {
+        int length = line.length();
+        int i = 0;
+        // Most lines don't have any codes at all
+        while (i < length && line.charAt(i) >= ' ') i++;
+        if (i == length) return line;
+        
+        StringBuilder sb = new StringBuilder(length + 16);
+        sb.append(line, 0, i);
+        while (i < length) {
+            char c = line.charAt(i++);
+            if (c >= ' ') {
+                sb.append(c);
+            }
+            else if (c == '\u0003') { // color: \x03[fg[,bg]]
+                int fg = digits(line, i);
+                if (fg == -1) {
+                    sb.append(C_RESET.mc);
+                    continue;
+                }
+                i += (fg >> 8);
+                sb.append(IRC_COLORS[fg & 0xFF]);
+                if (i + 1 < length && line.charAt(i) == ',') {
+                    int bg = digits(line, i + 1);
+                    if (bg != -1) i += 1 + (bg >> 8); // Minecraft has no background colors
+                }
+            }
+            else if (c == '\u0004') { // hex color: \x04[RRGGBB[,RRGGBB]]
+                int fg = hex(line, i);
+                if (fg == -1) {
+                    sb.append(C_RESET.mc);
+                    continue;
+                }
+                i += 6;
+                sb.append('\u00A7').append(ColorTable.nearest(fg));
+                if (i + 1 < length && line.charAt(i) == ',' && hex(line, i + 1) != -1) i += 7;
+            }
+            else if (IRC_CONTROLS[c] != null) {
+                sb.append(IRC_CONTROLS[c]);
+            }
+            // Anything else would show up as garbage
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * Reads a one or two digit color code.
+     * @return -1 if there is no color code, otherwise the code in the lowest 8 bits
+     * and the amount of digits read in the bits above that.
+     */
+    private static int digits(String line, int i) {
+        if (i >= line.length()) return -1;
+        int d1 = line.charAt(i) - '0';
+        if (d1 < 0 || d1 > 9) return -1;
+        if (i + 1 < line.length()) {
+            int d2 = line.charAt(i + 1) - '0';
+            if (d2 >= 0 && d2 <= 9) return (2 << 8) | (d1 * 10 + d2);
+        }
+        return (1 << 8) | d1;
+    }
+    
+    /**
+     * Reads a six digit hex color.
+     * @return -1 if there is no hex color, otherwise the color as 0xRRGGBB
+     */
+    private static int hex(String line, int i) {
+        if (i + 6 > line.length()) return -1;
+        int rgb = 0;
+        for (int j = i; j < i + 6; j++) {
+            int d = Character.digit(line.charAt(j), 16);
+            if (d == -1) return -1;
+            rgb = (rgb << 4) | d;
+        }
+        return rgb;
+    }
+}
@@ -20,7 +20,10 @@ public class Keys {
     }
     
     public enum settings {
-        send_log_to_ops, quit_message
+        send_log_to_ops, quit_message, hook_cache_ttl, watch_config,
+        shutdown_timeout, metrics_port, metrics_url, format_threads,
+        repeat_window, peer_bots, shed_tps, shed_broadcasts,
+        mention_highlight, mention_sound, rewrite_budget
     }
     
     public enum line_to_irc {
@@ -29,6 +32,7 @@ public class Keys {
     
     public enum line_to_minecraft {
         chat, action, join, part, quit, kick,
-        nick_change, mode_change, topic_change
+        nick_change, mode_change, topic_change,
+        netsplit, netjoin
     }
 }
@@ -0,0 +1,128 @@
+package com.avisenera.minecraftbot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations, in nanoseconds.<br>
+ * Buckets are laid out like in HdrHistogram: every power of two is split into 16
+ * buckets, so percentiles are accurate to within about 6% from 1 nanosecond up to
+ * about a minute. Recording a value is a couple of shifts and one atomic increment,
+ * and never allocates anything, so it can be done from any thread on every line.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 36; // 2^36 ns is about 68 seconds
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     * @param nanos The duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(index(nanos));
+        total.increment();
+        sum.add(nanos);
+        long m;
+        while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) {}
+    }
+
+    /**
+     * Returns the amount of recorded durations.
+     */
+    public long count() {
+        return total.sum();
+    }
+
+    /**
+     * Returns the sum of all recorded durations, in nanoseconds.
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns the longest recorded duration, in nanoseconds.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the duration that the given fraction of all recorded durations are shorter than.
+     * @param fraction Between 0 and 1, such as 0.99 for the 99th percentile
+     * @return The duration in nanoseconds, or 0 if nothing was recorded
+     */
+    public long percentile(double fraction) {
+        long[] snapshot = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) return 0;
+
+        long target = (long) Math.ceil(fraction * n);
+        if (target < 1) target = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) return Math.min(highestValue(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * Counts the recorded durations that are at most each of the given bounds.
+     * A duration is counted by the highest value of its bucket, so the counts are
+     * accurate to within the histogram's precision.
+     * @param bounds Durations in nanoseconds, in ascending order
+     * @return The amount of recorded durations at or below each bound
+     */
+    public long[] cumulative(long[] bounds) {
+        long[] result = new long[bounds.length];
+        long seen = 0;
+        int b = 0;
+        for (int i = 0; i < BUCKETS && b < bounds.length; i++) {
+            long highest = highestValue(i);
+            while (b < bounds.length && bounds[b] < highest) result[b++] = seen;
+            seen += counts.get(i);
+        }
+        while (b < bounds.length) result[b++] = seen;
+        return result;
+    }
+
+    /**
+     * Forgets all recorded durations.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        total.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int index(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) return BUCKETS - 1;
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + sub;
+    }
+
+    static long highestValue(int index) {
+        if (index < SUB_COUNT) return index;
+        int exponent = (index >> SUB_BITS) + SUB_BITS - 1;
+        long sub = index & (SUB_COUNT - 1);
+        long lowest = (SUB_COUNT + sub) << (exponent - SUB_BITS);
+        return lowest + (1L << (exponent - SUB_BITS)) - 1;
+    }
+}
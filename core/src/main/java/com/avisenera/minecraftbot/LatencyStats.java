@@ -0,0 +1,61 @@
+package com.avisenera.minecraftbot;
+
+/**
+ * Latency histograms for each stage of relaying a line, in both directions.
+ */
+public class LatencyStats {
+    /**
+     * A stage a line goes through on its way.
+     */
+    public enum Stage {
+        queue,  // waiting to be sent
+        format, // filling in the formatting line and translating color codes
+        hooks,  // filling in variables from hooks
+        send,   // writing to IRC, or broadcasting in Minecraft
+        total   // from the event until the line was sent
+    }
+
+    private final LatencyHistogram[] to_irc = create();
+    private final LatencyHistogram[] to_minecraft = create();
+
+    private static LatencyHistogram[] create() {
+        LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+        for (int i = 0; i < histograms.length; i++) histograms[i] = new LatencyHistogram();
+        return histograms;
+    }
+
+    /**
+     * Records the time a line spent in a stage.
+     * @param toIRC True for lines going to IRC, false for lines going to Minecraft
+     * @param stage The stage
+     * @param nanos The time spent, in nanoseconds
+     */
+    public void record(boolean toIRC, Stage stage, long nanos) {
+        (toIRC ? to_irc : to_minecraft)[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * Returns the histogram of one stage.
+     * @param toIRC True for lines going to IRC, false for lines going to Minecraft
+     */
+    public LatencyHistogram get(boolean toIRC, Stage stage) {
+        return (toIRC ? to_irc : to_minecraft)[stage.ordinal()];
+    }
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    public void reset() {
+        for (LatencyHistogram h : to_irc) h.reset();
+        for (LatencyHistogram h : to_minecraft) h.reset();
+    }
+
+    /**
+     * Formats a duration in a short, readable way, such as "850us" or "1.2s".
+     */
+    public static String format(long nanos) {
+        if (nanos < 1000000) return (nanos / 1000) + "us";
+        if (nanos < 1000000000) return String.format("%.1fms", nanos / 1e6);
+        return String.format("%.1fs", nanos / 1e9);
+    }
+}
@@ -0,0 +1,149 @@
+package com.avisenera.minecraftbot;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Does less relaying work while the server is lagging.<br>
+ * The host calls {@link #tick()} once per server tick, and the ticks per second are worked
+ * out from the last few seconds of ticks. Below the configured TPS (see
+ * {@link Keys.settings#shed_tps}), the relay goes through these stages:
+ * <ol>
+ * <li>Joins, leaves and deaths aren't relayed to IRC, without even being formatted.</li>
+ * <li>Repeated lines and bursts are collected for longer before being sent.</li>
+ * <li>Only a few lines from IRC are shown in the game per tick, other than chat.</li>
+ * </ol>
+ * Each stage also does what the ones before it do. Chat, actions, kicks and mode changes are
+ * never held back. The stage goes up as soon as the TPS drops, and down one stage at a time
+ * once the TPS stayed above the stage's limit for a while. Every change is logged.
+ */
+public class LoadShedder {
+    private static final int SAMPLES = 100;  // ticks the TPS is worked out from
+    private static final int EVALUATE = 20; // ticks between checks of the stage
+    private static final long CALM = TimeUnit.SECONDS.toNanos(10); // time above a stage's limit before leaving it
+    private static final double[] LIMITS = {1.0, 0.8, 0.6}; // TPS limit of each stage, as a part of shed_tps
+    private static final int WINDOW_FACTOR = 4; // how much longer windows get in stage 2
+
+    /**
+     * How much work the relay skips.
+     */
+    public enum Stage {
+        normal,      // everything is relayed
+        ambient,     // joins, leaves and deaths aren't relayed to IRC
+        coalescing,  // windows of repeats and summaries are longer
+        capped       // lines from IRC are limited per tick
+    }
+
+    private final Relay relay;
+    private volatile Stage stage = Stage.normal;
+    private volatile double tps = 20;
+    private final AtomicLong changes = new AtomicLong();
+    private final AtomicInteger broadcasts = new AtomicInteger(); // lines shown in the game this tick
+
+    // Only used on the thread calling tick()
+    private final long[] ticks = new long[SAMPLES];
+    private int count = 0;
+    private long calmSince = 0;
+
+    public LoadShedder(Relay relay) {
+        this.relay = relay;
+    }
+
+    /**
+     * Records a server tick. Must be called once per tick, on the same thread every time.
+     */
+    public void tick() {
+        long now = System.nanoTime();
+        broadcasts.set(0);
+        ticks[count % SAMPLES] = now;
+        count++;
+        if (count % EVALUATE != 0) return;
+
+        int samples = Math.min(count, SAMPLES);
+        long oldest = ticks[(count - samples) % SAMPLES];
+        if (now == oldest) return;
+        tps = Math.min(20, (samples - 1) * 1e9 / (now - oldest));
+        evaluate(now);
+    }
+
+    // Moves to the stage the TPS calls for
+    private void evaluate(long now) {
+        double limit = relay.getConfig().settingsI(Keys.settings.shed_tps, 0);
+        Stage wanted = Stage.normal;
+        if (limit > 0)
+            for (int i = LIMITS.length - 1; i >= 0 && wanted == Stage.normal; i--)
+                if (tps < limit * LIMITS[i]) wanted = Stage.values()[i + 1];
+
+        Stage current = stage;
+        if (wanted.compareTo(current) >= 0) calmSince = now;
+        if (wanted.compareTo(current) > 0) change(wanted);
+        else if (wanted.compareTo(current) < 0 && now - calmSince >= CALM) {
+            calmSince = now;
+            change(Stage.values()[current.ordinal() - 1]);
+        }
+    }
+
+    private void change(Stage next) {
+        Stage previous = stage;
+        stage = next;
+        changes.incrementAndGet();
+        String at = String.format("%.1f", tps);
+        if (next == Stage.normal) relay.log(0, "The server is at " + at + " TPS again; relaying everything.");
+        else if (next.compareTo(previous) > 0)
+            relay.log(1, "The server is at " + at + " TPS; shedding load (stage " + next.ordinal() + ", " + next + ").");
+        else relay.log(0, "The server is at " + at + " TPS; shedding less load (stage " + next.ordinal() + ", " + next + ").");
+    }
+
+    /**
+     * Checks if an event shouldn't be relayed to IRC at all, because the server is lagging.
+     */
+    public boolean sheds(Keys.line_to_irc type) {
+        if (stage.compareTo(Stage.ambient) < 0) return false;
+        return type == Keys.line_to_irc.join || type == Keys.line_to_irc.leave || type == Keys.line_to_irc.death;
+    }
+
+    /**
+     * Checks if a line from IRC may be shown in the game now. Lines that are admitted
+     * are counted against the current tick's limit (see {@link Keys.settings#shed_broadcasts}).
+     * @return False if the line shouldn't be shown, because the server is lagging
+     */
+    public boolean admit(Keys.line_to_minecraft type) {
+        if (stage != Stage.capped) return true;
+        switch (type) {
+            case chat: case action: case kick: case mode_change:
+                return true;
+            default:
+                int cap = relay.getConfig().settingsI(Keys.settings.shed_broadcasts, 2);
+                return broadcasts.incrementAndGet() <= cap;
+        }
+    }
+
+    /**
+     * Returns how many times longer the windows of repeats and summaries are.
+     */
+    public int windowFactor() {
+        return (stage.compareTo(Stage.coalescing) >= 0 ? WINDOW_FACTOR : 1);
+    }
+
+    /**
+     * Returns the current stage.
+     */
+    public Stage getStage() {
+        return stage;
+    }
+
+    /**
+     * Returns the ticks per second of the last few seconds, or 20 if the host doesn't report ticks.
+     */
+    public double getTPS() {
+        return tps;
+    }
+
+    /**
+     * Returns the amount of times the stage changed.
+     */
+    public long getChanges() {
+        return changes.get();
+    }
+}
@@ -0,0 +1,187 @@
+package com.avisenera.minecraftbot;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps lines from bouncing between several bots bridging their servers into the same channel.<br>
+ * Other bots are recognised by their nick or hostmask (see {@link Keys.settings#peer_bots}).
+ * Lines this bot writes to IRC end with an invisible marker, so that other bots know the
+ * line was relayed and don't take it for a command. Since channels that strip formatting
+ * also strip the marker, the text of recently relayed lines is remembered too, as hashes in
+ * a {@link TimedBloomFilter}: a line from another bot that this bot wrote, or a line going
+ * to IRC that this bot just showed in the game, is a re-relay and is dropped. People saying
+ * the same line again are never stopped.<br>
+ * Nothing is done unless other bots are configured.
+ */
+public class LoopGuard {
+    /** Bold on and off, which shows as nothing on clients */
+    public static final String MARKER = "\u0002\u0002";
+    private static final long SPAN = TimeUnit.SECONDS.toNanos(15); // 4 spans remembered, so 45 to 60 seconds
+    private static final int BITS = 1 << 15; // 4KB per span, for a few thousand lines at under 1% false positives
+
+    // The peers of one configuration
+    private static class Peers {
+        final ConfigSnapshot config;
+        final ArrayList<String> nicks = new ArrayList<String>(); // lowercase
+        final ArrayList<Pattern> masks = new ArrayList<Pattern>();
+
+        Peers(ConfigSnapshot config) {
+            this.config = config;
+        }
+        boolean isEmpty() {
+            return nicks.isEmpty() && masks.isEmpty();
+        }
+    }
+
+    private final Relay relay;
+    private final TimedBloomFilter toIRC = new TimedBloomFilter(4, BITS, 4, SPAN);
+    private final TimedBloomFilter toMinecraft = new TimedBloomFilter(4, BITS, 4, SPAN);
+    private volatile Peers peers;
+
+    public LoopGuard(Relay relay) {
+        this.relay = relay;
+    }
+
+    /**
+     * Returns true if other bots are configured, so lines are marked and remembered.
+     */
+    public boolean isEnabled() {
+        return !peers().isEmpty();
+    }
+
+    /**
+     * Checks if an IRC user is one of the other bots.
+     * @param nick The user's nick
+     * @param login The user's login (ident)
+     * @param host The user's host
+     */
+    public boolean isPeer(String nick, String login, String host) {
+        Peers p = peers();
+        if (p.isEmpty()) return false;
+        if (p.nicks.contains(nick.toLowerCase())) return true;
+        if (p.masks.isEmpty()) return false;
+        String mask = (nick + "!" + login + "@" + host).toLowerCase();
+        for (Pattern pattern : p.masks) if (pattern.matcher(mask).matches()) return true;
+        return false;
+    }
+
+    /**
+     * Adds the marker to a line about to be written to IRC, and remembers the line.
+     * @return The line to write
+     */
+    public String sentToIRC(String line) {
+        if (!isEnabled()) return line;
+        toIRC.add(hash(line));
+        return line + MARKER;
+    }
+
+    /**
+     * Remembers a line shown in the game.
+     */
+    public void sentToMinecraft(String line) {
+        if (isEnabled()) toMinecraft.add(hash(line));
+    }
+
+    /**
+     * Checks if text coming from IRC is a line this bot wrote there recently.
+     * Only meaningful for lines from other bots.
+     */
+    public boolean isEchoFromIRC(String text) {
+        return isEnabled() && toIRC.mightContain(hash(text));
+    }
+
+    /**
+     * Checks if a line going to IRC is a line this bot recently showed in the game,
+     * either whole or as the message of a player.
+     * @param line The line to send
+     * @param message What the player said, or null
+     */
+    public boolean isEchoToIRC(String line, String message) {
+        if (!isEnabled()) return false;
+        if (toMinecraft.mightContain(hash(line))) return true;
+        return message != null && !message.isEmpty() && toMinecraft.mightContain(hash(message));
+    }
+
+    /**
+     * Checks if a line from IRC ends with the marker.
+     */
+    public static boolean isMarked(String text) {
+        return text.endsWith(MARKER);
+    }
+
+    /**
+     * Removes the marker from a line from IRC, if it has one.
+     */
+    public static String unmark(String text) {
+        return (isMarked(text) ? text.substring(0, text.length() - MARKER.length()) : text);
+    }
+
+    private Peers peers() {
+        ConfigSnapshot config = relay.getConfig();
+        Peers p = peers;
+        if (p != null && p.config == config) return p;
+
+        p = new Peers(config);
+        String list = config.settingsS(Keys.settings.peer_bots);
+        if (list != null) {
+            for (String entry : list.split(",")) {
+                entry = entry.trim().toLowerCase();
+                if (entry.isEmpty()) continue;
+                if (entry.indexOf('!') == -1 && entry.indexOf('@') == -1 && entry.indexOf('*') == -1 && entry.indexOf('?') == -1)
+                    p.nicks.add(entry);
+                else p.masks.add(wildcard(entry));
+            }
+        }
+        peers = p;
+        return p;
+    }
+
+    // Turns a mask such as "*!*@mc2.example.net" into a pattern. A mask without a "!" is a nick.
+    private static Pattern wildcard(String mask) {
+        if (mask.indexOf('!') == -1) mask = (mask.indexOf('@') == -1 ? mask + "!*@*" : "*!" + mask);
+        StringBuilder sb = new StringBuilder();
+        for (String part : mask.split("(?=[*?])|(?<=[*?])")) {
+            if (part.equals("*")) sb.append(".*");
+            else if (part.equals("?")) sb.append('.');
+            else if (!part.isEmpty()) sb.append(Pattern.quote(part));
+        }
+        return Pattern.compile(sb.toString());
+    }
+
+    // FNV-1a of the text, without formatting codes and surrounding spaces, so that the same
+    // line matches whether it went through IRC or the game
+    static long hash(String text) {
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) <= ' ') end--;
+        long h = 0xcbf29ce484222325L;
+        boolean started = false;
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\u0003': // IRC color, followed by up to two digits, a comma and two more
+                    i = digits(text, i + 1, end);
+                    if (i + 1 < end && text.charAt(i + 1) == ',' && i + 2 < end && Character.isDigit(text.charAt(i + 2)))
+                        i = digits(text, i + 2, end);
+                    continue;
+                case '\u00A7': // Minecraft color or format
+                    i++;
+                    continue;
+                case '\u0002': case '\u000F': case '\u0016': case '\u001D': case '\u001F':
+                    continue;
+            }
+            if (!started && c <= ' ') continue;
+            started = true;
+            h = (h ^ c) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // Returns the index of the last of up to two digits starting at the given index
+    private static int digits(String text, int start, int end) {
+        int i = start - 1;
+        while (i + 1 < end && i + 1 < start + 2 && Character.isDigit(text.charAt(i + 1))) i++;
+        return i;
+    }
+}
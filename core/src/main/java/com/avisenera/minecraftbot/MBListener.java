@@ -0,0 +1,109 @@
+package com.avisenera.minecraftbot;
+
+import com.avisenera.minecraftbot.listeners.IRCManager;
+import com.avisenera.minecraftbot.message.IRCMessage;
+import com.avisenera.minecraftbot.message.Message;
+
+/**
+ * The MinecraftBot Listener (MBListener) is the way to make the plugin
+ * send and receive messages on IRC. Other plugins may add their listeners
+ * for their own needs.
+ */
+public abstract class MBListener {
+    private volatile Relay relay; // null until the plugin is first enabled
+    private volatile boolean unregistered = false;
+    
+    // Method only available to the relay and the plugin, and only used when the listener is added.
+    // The plugin adds its listeners to each new relay, so this may change.
+    final void initialize(Relay instance) {
+        relay = instance;
+        unregistered = false;
+    }
+    
+    // Used by the plugin, which keeps its listeners while it is disabled, to forget this one
+    final boolean isUnregistered() {
+        return unregistered;
+    }
+    
+    /**
+     * A line has been received from IRC.
+     * @param line The IRC line exactly as it looks when sent to Minecraft
+     * @param isAction True if the line received was an action (/me)
+     */
+    public void onMessage(final String line) {}
+    
+    /**
+     * A line has been received from IRC. Passes it on to {@link #onMessage(String)},
+     * unless overridden by a listener that needs to know more about the line.
+     * @param line The IRC line exactly as it looks when sent to Minecraft
+     * @param type The kind of line
+     * @param message The values the line was formatted from
+     */
+    public void onMessage(final String line, Keys.line_to_minecraft type, IRCMessage message) {
+        onMessage(line);
+    }
+
+    /**
+     * Sends a line to the IRC channel
+     * @param line The line to send to IRC
+     * @param isAction Set to true if it will be an action (/me), otherwise it will send as a regular message
+     */
+    public final void sendToIRC(String line, boolean isAction) {
+        trySendToIRC(line, isAction);
+    }
+    
+    /**
+     * Sends a line to the IRC channel, if there is room for it.
+     * @param line The line to send to IRC
+     * @param isAction Set to true if it will be an action (/me), otherwise it will send as a regular message
+     * @return False if the line was dropped because too many lines are waiting to be sent,
+     * or because it is a line from another bot coming back (see {@link LoopGuard})
+     */
+    protected final boolean trySendToIRC(String line, boolean isAction) {
+        return trySendToIRC(line, isAction, System.nanoTime());
+    }
+    
+    /**
+     * Sends a line to the IRC channel, if there is room for it.
+     * @param line The line to send to IRC
+     * @param isAction Set to true if it will be an action (/me), otherwise it will send as a regular message
+     * @param origin When the event causing this line happened, as given by System.nanoTime()
+     * @return False if the line was dropped because too many lines are waiting to be sent,
+     * or because it is a line from another bot coming back (see {@link LoopGuard})
+     */
+    protected final boolean trySendToIRC(String line, boolean isAction, long origin) {
+        Relay relay = this.relay;
+        if (line == null || relay == null) return false; // Ignore null string, or not enabled yet
+        IRCManager manager = relay.getIRCManager();
+        if (manager == null) return false;
+        if (relay.getLoopGuard().isEchoToIRC(line, null)) return false;
+        return manager.queue(line, isAction, origin);
+    }
+    
+    /**
+     * Sends a line made from a Minecraft event to the IRC channel, if there is room for it.
+     * @param line The line to send to IRC
+     * @param isAction Set to true if it will be an action (/me), otherwise it will send as a regular message
+     * @param type The kind of event the line was made from
+     * @param source The event's message
+     * @return False if the line was dropped because too many lines are waiting to be sent,
+     * or because it is a line from another bot coming back (see {@link LoopGuard})
+     */
+    protected final boolean trySendToIRC(String line, boolean isAction, Keys.line_to_irc type, Message source) {
+        Relay relay = this.relay;
+        if (line == null || relay == null) return false; // Ignore null string, or not enabled yet
+        IRCManager manager = relay.getIRCManager();
+        if (manager == null) return false;
+        if (relay.getLoopGuard().isEchoToIRC(line, null)) return false;
+        return manager.queue(line, isAction, type, source);
+    }
+    
+    /**
+     * Disables this listener. This listener will no longer receive IRC messages from MinecraftBot.
+     */
+    public final void unregister() {
+        unregistered = true;
+        Relay relay = this.relay;
+        if (relay != null) relay.removeListener(this);
+    }
+}
@@ -0,0 +1,71 @@
+package com.avisenera.minecraftbot;
+
+import com.avisenera.minecraftbot.message.IRCMessage;
+import com.avisenera.minecraftbot.message.Message;
+import com.avisenera.minecraftbot.message.Template;
+
+/**
+ * Various methods that turn Message objects into useful Strings.
+ */
+public class MessageFormatter {
+    private Relay relay;
+    
+    public MessageFormatter(Relay instance) {
+        relay = instance;
+    }
+    
+    /**
+     * Formats a message from Minecraft to be displayed in IRC.
+     * What people wrote in the message is censored first (see {@link #censor(Message)}).
+     * Lines that are not going to be sent are counted in the relay's {@link RelayStats}.
+     * @param format The formatting string to use
+     * @param message The message object containing the formatting variable values
+     * @return A string that is ready to be used, or null if the given format is disabled
+     */
+    public String toIRC(Keys.line_to_irc format, Message message) {
+        Template formatting = relay.getConfig().template(format);
+        if (formatting.isEmpty()) {
+            relay.getRelayStats().count(format, RelayStats.Outcome.filtered);
+            return null;
+        }
+        
+        censor(message);
+        return Message.applyFormatting(relay, formatting, message);
+    }
+    
+    /**
+     * Formats a message from IRC to be displayed in Minecraft.
+     * What people wrote in the message is censored first (see {@link #censor(Message)}).
+     * Lines that are not going to be sent are counted in the relay's {@link RelayStats}.
+     * @param format The formatting string to use
+     * @param message The message object containing the formatting variable values
+     * @return A string that is ready to be used, or null if the given format is disabled
+     * or the user is ignored
+     */
+    public String toMinecraft(Keys.line_to_minecraft format, IRCMessage message) {
+        Template formatting = relay.getConfig().template(format);
+        if (formatting.isEmpty()) {
+            relay.getRelayStats().count(format, RelayStats.Outcome.filtered);
+            return null;
+        }
+        
+        censor(message);
+        String line = Message.applyFormatting(relay, formatting, message);
+        if (line == null) relay.getRelayStats().count(format, RelayStats.Outcome.ignored);
+        return line;
+    }
+    
+    /**
+     * Censors the parts of a message people wrote freely: the message itself, the reason
+     * (for quits, parts and kicks) and the topic, using the configuration's {@link WordFilter}.
+     * Names are left as they are. Filter expressions turned off while censoring are logged.
+     */
+    public void censor(Message message) {
+        WordFilter filter = relay.getConfig().filter();
+        if (filter.isEmpty()) return;
+        message.message = filter.censor(message.message);
+        message.reason = filter.censor(message.reason);
+        message.topic = filter.censor(message.topic);
+        for (String report : filter.takeReports()) relay.log(1, report);
+    }
+}
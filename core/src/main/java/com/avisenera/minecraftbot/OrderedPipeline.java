@@ -0,0 +1,172 @@
+package com.avisenera.minecraftbot;
+
+import java.util.HashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Formats lines on several threads at once, while making sure that the lines of one
+ * source (such as a player, or the console) are passed on in the order their events happened.<br>
+ * Every job is given the next sequence number of its source when it is submitted. Jobs are
+ * then formatted in any order, and a finished job waits until all earlier jobs of the same
+ * source have been passed on. Passing on is done by whichever worker finished the job that
+ * was waited for, one job at a time per source, so a source never has two lines on their way
+ * to the writer at once. Sources with nothing waiting are forgotten.
+ */
+public class OrderedPipeline {
+    private static final int BACKLOG = 4096; // jobs waiting to be formatted; more are dropped
+
+    /**
+     * Work done for one event.
+     */
+    public static abstract class Job {
+        private Object source;
+        private long seq;
+        private boolean dropped = false;
+
+        /**
+         * Formats the line. Called on a worker thread, at the same time as other jobs.
+         */
+        protected abstract void format();
+
+        /**
+         * Passes the line on. Called after all earlier jobs of the same source were
+         * passed on or dropped, and never at the same time as another job of that source.
+         */
+        protected abstract void deliver();
+
+        /**
+         * Called instead of {@link #deliver()} if the job couldn't be formatted,
+         * because too many jobs were waiting or formatting failed.
+         */
+        protected void drop() {}
+
+        /**
+         * Returns the job's position among the jobs of its source, starting at 0.
+         */
+        public final long getSequence() {
+            return seq;
+        }
+    }
+
+    // Jobs of one source. Only used while holding the pipeline's lock.
+    private static class Source {
+        long assigned = 0;  // sequence number of the next submitted job
+        long delivered = 0; // sequence number of the next job to pass on
+        boolean draining = false;
+        final HashMap<Long, Job> finished = new HashMap<Long, Job>();
+    }
+
+    private final Relay relay;
+    private final ThreadPoolExecutor workers;
+    private final HashMap<Object, Source> sources = new HashMap<Object, Source>();
+
+    /**
+     * @param relay The relay, used for logging
+     * @param threads The amount of threads formatting lines
+     */
+    public OrderedPipeline(Relay relay, int threads) {
+        this.relay = relay;
+        final AtomicInteger count = new AtomicInteger();
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(BACKLOG), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "MinecraftBot formatter #" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Queues a job to be formatted. Safe to call from any thread; never waits for
+     * formatting. If too many jobs are waiting, the job is dropped in its turn.
+     * @param source Jobs with equal sources are passed on in the order they were submitted
+     * @param job The job
+     */
+    public void submit(Object source, final Job job) {
+        synchronized (sources) {
+            Source s = sources.get(source);
+            if (s == null) {
+                s = new Source();
+                sources.put(source, s);
+            }
+            job.source = source;
+            job.seq = s.assigned++;
+        }
+
+        try {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        job.format();
+                    } catch (RuntimeException e) {
+                        relay.log(1, "Unable to format a line: " + e);
+                        job.dropped = true;
+                    }
+                    finish(job);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            job.dropped = true;
+            finish(job);
+        }
+    }
+
+    // Passes on the job and every following job of its source that is already finished
+    private void finish(Job job) {
+        Source s;
+        synchronized (sources) {
+            s = sources.get(job.source);
+            s.finished.put(job.seq, job);
+            if (s.draining) return; // The thread draining this source will get to it
+            s.draining = true;
+        }
+
+        while (true) {
+            Job next;
+            synchronized (sources) {
+                next = s.finished.remove(s.delivered);
+                if (next == null) {
+                    s.draining = false;
+                    if (s.assigned == s.delivered) sources.remove(job.source);
+                    return;
+                }
+                s.delivered++;
+            }
+            try {
+                if (next.dropped) next.drop();
+                else next.deliver();
+            } catch (RuntimeException e) {
+                relay.log(1, "Unable to send a line: " + e);
+            }
+        }
+    }
+
+    /**
+     * Returns the amount of jobs waiting to be formatted.
+     */
+    public int waiting() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * Finishes the jobs already submitted and stops the worker threads.
+     * Jobs submitted afterwards are dropped.
+     * @param timeout The maximum time to wait, in milliseconds
+     */
+    public void shutdown(long timeout) {
+        workers.shutdown();
+        try {
+            workers.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.avisenera.minecraftbot;
+
+import com.avisenera.minecraftbot.listeners.IRCManager;
+import com.avisenera.minecraftbot.message.Message;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The relay engine: everything between an event happening and its line being sent,
+ * in both directions. It formats lines, queues them, keeps the statistics and owns the
+ * connection to IRC. It doesn't know about Bukkit; whatever runs it is its {@link RelayHost}.
+ */
+public class Relay {
+    private final RelayHost host;
+    private final RelayStats stats = new RelayStats();
+    private final LatencyStats latency = new LatencyStats();
+    private final RelayRecorder recorder = new RelayRecorder(1024);
+    private final MessageFormatter format = new MessageFormatter(this);
+    // Read on the IRC thread for every line, changed on the main thread now and then
+    private final CopyOnWriteArrayList<MBListener> listeners = new CopyOnWriteArrayList<MBListener>();
+    private volatile Variables variables = Variables.NONE;
+    private IRCManager irc;
+    private OrderedPipeline pipeline;
+    private final BurstAggregator aggregator = new BurstAggregator(this);
+    private final RepeatCollapser repeatsToIRC = new RepeatCollapser(this);
+    private final RepeatCollapser repeatsToMinecraft = new RepeatCollapser(this);
+    private final LoopGuard loops = new LoopGuard(this);
+    private final LoadShedder shedder = new LoadShedder(this);
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "MinecraftBot timer");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    public Relay(RelayHost host) {
+        this.host = host;
+    }
+
+    /**
+     * Creates the IRC connection, without connecting yet, and the threads formatting lines.
+     */
+    public synchronized void start() {
+        if (irc == null) irc = createIRCManager();
+        if (pipeline == null) pipeline = new OrderedPipeline(this, formatThreads());
+    }
+    
+    // Up to 4 threads by default; formatting a line is quick, and the lines go to a single writer anyway
+    private int formatThreads() {
+        int threads = getConfig().settingsI(Keys.settings.format_threads, 0);
+        if (threads > 0) return threads;
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Creates the IRC connection. Runners that don't connect to a server may
+     * give one that writes the lines somewhere else.
+     */
+    protected IRCManager createIRCManager() {
+        return new IRCManager(this);
+    }
+
+    /**
+     * Sends the lines still waiting and quits IRC, if the relay was started.
+     * @param message The message to use when quitting the server
+     * @param timeout The maximum time to spend shutting down, in milliseconds
+     */
+    public void shutdown(String message, long timeout) {
+        long start = System.currentTimeMillis();
+        OrderedPipeline lines = getPipeline();
+        if (lines != null) lines.shutdown(timeout / 2);
+        repeatsToIRC.flush();
+        repeatsToMinecraft.flush();
+        aggregator.flush();
+        timer.shutdownNow();
+        long left = Math.max(timeout - (System.currentTimeMillis() - start), 0);
+        IRCManager manager = getIRCManager();
+        if (manager != null) manager.shutdown(message, left);
+    }
+
+    /**
+     * Sends a formatted line made from a Minecraft event to IRC. Repeated chat is folded into
+     * one line, and bursts of lines are combined into summaries, so the line may be held for
+     * a while or not be sent on its own at all. Lines that another bot's line just caused
+     * aren't sent. The line is counted in the {@link RelayStats}.
+     * @param format The kind of event the line was made from
+     * @param line The formatted line
+     * @param message The event's message
+     */
+    public void relayToIRC(final Keys.line_to_irc format, final String line, final Message message) {
+        if (loops.isEchoToIRC(line, message.message)) {
+            stats.count(format, RelayStats.Outcome.filtered);
+            return;
+        }
+        if (format == Keys.line_to_irc.chat || format == Keys.line_to_irc.action) {
+            boolean repeat = repeatsToIRC.offer(format, message.name, message.message, new RepeatCollapser.Repeats() {
+                @Override
+                protected void send(int times) {
+                    for (int i = 1; i < times; i++) stats.count(format, RelayStats.Outcome.aggregated);
+                    aggregator.offer(format, RepeatCollapser.repeated(line, times), message);
+                }
+            });
+            if (repeat) return;
+        }
+        aggregator.offer(format, line, message);
+    }
+    
+    public RelayHost getHost() {
+        return host;
+    }
+
+    /**
+     * Returns the configuration currently in use.
+     */
+    public ConfigSnapshot getConfig() {
+        return host.currentConfig();
+    }
+
+    public void log(int level, String message) {
+        host.log(level, message);
+    }
+
+    /**
+     * Returns the IRC connection, or null if the relay hasn't been started.
+     */
+    public synchronized IRCManager getIRCManager() {
+        return irc;
+    }
+
+    /**
+     * Returns the pipeline that formats lines on several threads, keeping the
+     * order of each source's lines. Null if the relay hasn't been started.
+     */
+    public synchronized OrderedPipeline getPipeline() {
+        return pipeline;
+    }
+    
+    /**
+     * Returns the thread that runs the relay's short delayed tasks, such as sending
+     * summaries. Tasks must not wait for anything.
+     */
+    public ScheduledExecutorService getTimer() {
+        return timer;
+    }
+    
+    /**
+     * Returns what folds repeated lines going in one direction into one.
+     * @param toIRC True for lines going to IRC, false for lines going to Minecraft
+     */
+    public RepeatCollapser getRepeats(boolean toIRC) {
+        return (toIRC ? repeatsToIRC : repeatsToMinecraft);
+    }
+    
+    /**
+     * Returns what combines bursts of lines going to IRC into summaries.
+     */
+    public BurstAggregator getAggregator() {
+        return aggregator;
+    }
+    
+    /**
+     * Returns what keeps lines from bouncing between this bot and other bots in the channel.
+     */
+    public LoopGuard getLoopGuard() {
+        return loops;
+    }
+    
+    /**
+     * Returns what decides which work is skipped while the server is lagging.
+     */
+    public LoadShedder getLoadShedder() {
+        return shedder;
+    }
+    
+    /**
+     * Returns the message formatter.
+     */
+    public MessageFormatter getFormatter() {
+        return format;
+    }
+
+    /**
+     * Returns the counters of relayed lines.
+     */
+    public RelayStats getRelayStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the latency histograms of relayed lines.
+     */
+    public LatencyStats getLatencyStats() {
+        return latency;
+    }
+
+    /**
+     * Returns the record of recently relayed lines.
+     */
+    public RelayRecorder getRelayRecorder() {
+        return recorder;
+    }
+
+    /**
+     * Returns what fills in variables that don't come from the message itself.
+     */
+    public Variables getVariables() {
+        return variables;
+    }
+
+    public void setVariables(Variables variables) {
+        this.variables = (variables == null ? Variables.NONE : variables);
+    }
+
+    /**
+     * Registers a listener. It receives every line sent to Minecraft, and may send lines to IRC.
+     */
+    public void registerListener(MBListener listener) {
+        listener.initialize(this);
+        listeners.addIfAbsent(listener);
+    }
+
+    /**
+     * Removes a listener. It will no longer receive lines.
+     */
+    public void removeListener(MBListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the registered listeners.
+     */
+    public List<MBListener> getListeners() {
+        return listeners;
+    }
+}
@@ -0,0 +1,32 @@
+package com.avisenera.minecraftbot;
+
+/**
+ * What the relay needs from the program running it.<br>
+ * The plugin is the usual host, but anything that can give a configuration and
+ * take log messages can run the relay, such as {@link ReplayRunner}.
+ */
+public interface RelayHost {
+    /**
+     * Returns the configuration currently in use. Called often, from any thread.
+     */
+    public ConfigSnapshot currentConfig();
+
+    /**
+     * Logs a message.
+     * @param level 0 for information, 1 for a warning, 2 for an error
+     */
+    public void log(int level, String message);
+
+    /**
+     * Returns the version shown to IRC users who ask the bot for it.
+     */
+    public String getVersion();
+
+    /**
+     * Runs a command given on IRC, such as !players. Only called for enabled commands.
+     * @param command The command
+     * @param sender The nick of the IRC user who gave it
+     * @param message The whole line, command included
+     */
+    public void onCommand(Keys.commands command, String sender, String message);
+}
@@ -0,0 +1,150 @@
+package com.avisenera.minecraftbot;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps a record of the last lines relayed, so a stutter can be looked at after it happened.<br>
+ * The records are always kept, in a ring that overwrites the oldest one. They can be written
+ * to a file with /minecraftbot dump. The same lines, connections, flood control stalls and
+ * listener calls are also sent to JDK Flight Recorder, when it exists and is recording.
+ */
+public class RelayRecorder {
+    private static final boolean JFR = flightRecorderExists();
+
+    /**
+     * One relayed line. Times are in nanoseconds.
+     */
+    public static final class Record {
+        public final long time; // as given by System.currentTimeMillis()
+        public final boolean toIRC;
+        public final String type;
+        public final int size;
+        public final long queue, format, hooks, send, total;
+
+        Record(boolean toIRC, String type, int size, long queue, long format, long hooks, long send, long total) {
+            this.time = System.currentTimeMillis();
+            this.toIRC = toIRC;
+            this.type = type;
+            this.size = size;
+            this.queue = queue;
+            this.format = format;
+            this.hooks = hooks;
+            this.send = send;
+            this.total = total;
+        }
+    }
+
+    private final AtomicReferenceArray<Record> ring;
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * @param capacity The amount of lines to remember
+     */
+    public RelayRecorder(int capacity) {
+        ring = new AtomicReferenceArray<Record>(capacity);
+    }
+
+    private static boolean flightRecorderExists() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if events are sent to JDK Flight Recorder.
+     */
+    public static boolean hasFlightRecorder() {
+        return JFR;
+    }
+
+    /**
+     * Records a line that was relayed.
+     * @param toIRC True for lines going to IRC, false for lines going to Minecraft
+     * @param type The kind of line, such as "chat"
+     * @param size The length of the line
+     */
+    public void line(boolean toIRC, String type, int size, long queue, long format, long hooks, long send, long total) {
+        int slot = (int) (next.getAndIncrement() % ring.length());
+        ring.set(slot, new Record(toIRC, type, size, queue, format, hooks, send, total));
+        if (JFR) FlightEvents.line(toIRC, type, size, queue, format, hooks, send, total);
+    }
+
+    /**
+     * Records that the bot connected to the server.
+     * @param connections The amount of times it has connected, including this one
+     */
+    public void connected(String server, int connections) {
+        if (JFR) FlightEvents.connected(server, connections);
+    }
+
+    /**
+     * Records that sending a line to IRC had to wait for flood control.
+     * @param stall How long sending the line took, in nanoseconds
+     * @param queued The amount of lines still waiting
+     */
+    public void floodStall(long stall, int queued) {
+        if (JFR) FlightEvents.floodStall(stall, queued);
+    }
+
+    /**
+     * Records the time a listener took to handle a line.
+     */
+    public void dispatched(String listener, String type, long time) {
+        if (JFR) FlightEvents.dispatched(listener, type, time);
+    }
+
+    /**
+     * Returns the remembered lines, oldest first.
+     */
+    public List<Record> recent() {
+        int capacity = ring.length();
+        long end = next.get();
+        long start = Math.max(0, end - capacity);
+        List<Record> list = new ArrayList<Record>((int) (end - start));
+        for (long i = start; i < end; i++) {
+            Record r = ring.get((int) (i % capacity));
+            if (r != null) list.add(r);
+        }
+        return list;
+    }
+
+    /**
+     * Writes the remembered lines to a new tab-separated file. Times are in microseconds.
+     * @param folder The folder to create the file in
+     * @return The file that was written
+     */
+    public File dump(File folder) throws IOException {
+        List<Record> records = recent();
+        File file = new File(folder, "relay-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".tsv");
+        SimpleDateFormat time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8));
+        try {
+            out.println("time\tdirection\ttype\tsize\tqueue\tformat\thooks\tsend\ttotal");
+            for (Record r : records) {
+                out.println(time.format(new Date(r.time)) + '\t' + (r.toIRC ? "to_irc" : "to_minecraft")
+                        + '\t' + r.type + '\t' + r.size
+                        + '\t' + r.queue / 1000 + '\t' + r.format / 1000 + '\t' + r.hooks / 1000
+                        + '\t' + r.send / 1000 + '\t' + r.total / 1000);
+            }
+        } finally {
+            out.close();
+        }
+        if (out.checkError()) throw new IOException("Could not write " + file.getName());
+        return file;
+    }
+}
@@ -0,0 +1,75 @@
+package com.avisenera.minecraftbot;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts relayed lines by direction, event type and outcome.<br>
+ * Lines are counted from many threads at once (every async chat event), so the
+ * counters are LongAdders, which don't make those threads wait on each other.
+ */
+public class RelayStats {
+    /**
+     * What happened to a line.
+     */
+    public enum Outcome {
+        relayed,  // sent on to IRC or Minecraft
+        filtered, // the event's formatting line is blank, or the line was blocked
+        ignored,  // the IRC user is in the ignore list
+        dropped,  // couldn't be sent, such as when the outgoing queue is full
+        aggregated, // sent as part of a summary of several lines
+        shed      // not relayed because the server is lagging
+    }
+
+    private final LongAdder[][] to_irc = create(Keys.line_to_irc.values().length);
+    private final LongAdder[][] to_minecraft = create(Keys.line_to_minecraft.values().length);
+
+    private static LongAdder[][] create(int types) {
+        LongAdder[][] counters = new LongAdder[types][Outcome.values().length];
+        for (LongAdder[] type : counters)
+            for (int i = 0; i < type.length; i++)
+                type[i] = new LongAdder();
+        return counters;
+    }
+
+    /**
+     * Counts a line going from Minecraft to IRC.
+     */
+    public void count(Keys.line_to_irc type, Outcome outcome) {
+        to_irc[type.ordinal()][outcome.ordinal()].increment();
+    }
+
+    /**
+     * Counts a line going from IRC to Minecraft.
+     */
+    public void count(Keys.line_to_minecraft type, Outcome outcome) {
+        to_minecraft[type.ordinal()][outcome.ordinal()].increment();
+    }
+
+    public long get(Keys.line_to_irc type, Outcome outcome) {
+        return to_irc[type.ordinal()][outcome.ordinal()].sum();
+    }
+
+    public long get(Keys.line_to_minecraft type, Outcome outcome) {
+        return to_minecraft[type.ordinal()][outcome.ordinal()].sum();
+    }
+
+    /**
+     * Returns the amount of lines going to IRC with the given outcome, of all types.
+     */
+    public long totalToIRC(Outcome outcome) {
+        return total(to_irc, outcome);
+    }
+
+    /**
+     * Returns the amount of lines going to Minecraft with the given outcome, of all types.
+     */
+    public long totalToMinecraft(Outcome outcome) {
+        return total(to_minecraft, outcome);
+    }
+
+    private static long total(LongAdder[][] counters, Outcome outcome) {
+        long sum = 0;
+        for (LongAdder[] type : counters) sum += type[outcome.ordinal()].sum();
+        return sum;
+    }
+}
@@ -0,0 +1,161 @@
+package com.avisenera.minecraftbot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Folds lines that are repeated over and over, such as spam, into one line.<br>
+ * The first time someone says something, it is sent as usual and remembered for a while
+ * (see {@link Keys.settings#repeat_window}). If they say the same thing again in that time,
+ * it isn't sent. Once the time is up, the line is sent once more with the amount of times
+ * it was repeated, such as "(\u00D75)", and remembered for another while in case the
+ * repeating goes on. A line that wasn't repeated is simply forgotten.<br>
+ * Lines are remembered by a hash of their sender and text, in a small table that never
+ * grows. When the table is full, new lines are sent without being remembered.
+ */
+public class RepeatCollapser {
+    private static final int SIZE = 512;  // slots in the table, a power of two
+    private static final int PROBES = 8;  // slots tried for each hash
+    private static final long SWEEP = 1;  // seconds between checks for windows that closed
+
+    /**
+     * Sends a line once more, for its repeats.
+     */
+    public static abstract class Repeats {
+        /**
+         * Called on the relay's timer thread once the window closed.
+         * @param times The amount of times the line was repeated and not sent
+         */
+        protected abstract void send(int times);
+    }
+
+    // A remembered line. Only used while holding the collapser's lock.
+    private static class Entry {
+        final long hash;
+        final Repeats repeats;
+        long expires; // System.nanoTime() when the window closes
+        int held = 0;
+
+        Entry(long hash, Repeats repeats, long expires) {
+            this.hash = hash;
+            this.repeats = repeats;
+            this.expires = expires;
+        }
+    }
+
+    private final Relay relay;
+    private final Entry[] table = new Entry[SIZE];
+    private boolean sweeping = false;
+
+    public RepeatCollapser(Relay relay) {
+        this.relay = relay;
+    }
+
+    /**
+     * Checks if the line is a repeat. If it is, it is held, and counted in a later line.
+     * @param type The kind of line, such as chat or action
+     * @param sender Who sent the line
+     * @param content What was said
+     * @param repeats What sends the line again if it gets repeated. Only used if the line is new.
+     * @return True if the line is a repeat and must not be sent now
+     */
+    public boolean offer(Enum<?> type, String sender, String content, Repeats repeats) {
+        int window = window();
+        if (window <= 0) return false;
+
+        long hash = hash(type, sender, content);
+        int start = (int) (hash ^ (hash >>> 32));
+        synchronized (this) {
+            int free = -1;
+            for (int i = 0; i < PROBES; i++) {
+                int slot = (start + i) & (SIZE - 1);
+                Entry e = table[slot];
+                if (e == null) {
+                    if (free == -1) free = slot;
+                } else if (e.hash == hash) {
+                    e.held++;
+                    return true;
+                }
+            }
+            if (free != -1) {
+                table[free] = new Entry(hash, repeats, System.nanoTime() + TimeUnit.SECONDS.toNanos(window));
+                if (!sweeping) startSweeping();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends every line that has repeats waiting right away, and forgets all lines.
+     */
+    public void flush() {
+        sweep(true);
+    }
+
+    /**
+     * Adds the amount of repeats to a line, such as "spam (\u00D75)".
+     */
+    public static String repeated(String line, int times) {
+        return line + " (\u00D7" + times + ")";
+    }
+
+    // In seconds; longer while the server is lagging
+    private int window() {
+        return relay.getConfig().settingsI(Keys.settings.repeat_window, 0) * relay.getLoadShedder().windowFactor();
+    }
+
+    private void startSweeping() {
+        try {
+            relay.getTimer().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    sweep(false);
+                }
+            }, SWEEP, SWEEP, TimeUnit.SECONDS);
+            sweeping = true;
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+
+    // Sends the repeats of lines whose window closed, and forgets lines that weren't repeated
+    private void sweep(boolean all) {
+        List<Entry> due = new ArrayList<Entry>();
+        List<Integer> times = new ArrayList<Integer>();
+        long now = System.nanoTime();
+        synchronized (this) {
+            long window = TimeUnit.SECONDS.toNanos(window());
+            for (int i = 0; i < SIZE; i++) {
+                Entry e = table[i];
+                if (e == null || (!all && now - e.expires < 0)) continue;
+                boolean repeated = (e.held > 0);
+                if (repeated) {
+                    due.add(e);
+                    times.add(e.held);
+                    e.held = 0;
+                    e.expires = now + window;
+                }
+                if (all || window <= 0 || !repeated) table[i] = null;
+            }
+        }
+        for (int i = 0; i < due.size(); i++) {
+            try {
+                due.get(i).repeats.send(times.get(i));
+            } catch (RuntimeException ex) {
+                relay.log(1, "Unable to send a repeated line: " + ex);
+            }
+        }
+    }
+
+    // FNV-1a over the type, sender and text
+    private static long hash(Enum<?> type, String sender, String content) {
+        long h = 0xcbf29ce484222325L;
+        h = (h ^ type.ordinal()) * 0x100000001b3L;
+        for (int i = 0; i < sender.length(); i++) h = (h ^ sender.charAt(i)) * 0x100000001b3L;
+        h = (h ^ 0xFFFF) * 0x100000001b3L; // so that "ab"+"c" differs from "a"+"bc"
+        for (int i = 0; i < content.length(); i++) h = (h ^ content.charAt(i)) * 0x100000001b3L;
+        return h;
+    }
+}
@@ -0,0 +1,363 @@
+package com.avisenera.minecraftbot;
+
+import com.avisenera.minecraftbot.listeners.IRCManager;
+import com.avisenera.minecraftbot.message.IRCMessage;
+import com.avisenera.minecraftbot.message.Message;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays recorded events through the relay as fast as it takes them, without a
+ * Minecraft server. Used to profile the relay and to run it for a long time.<br>
+ * Events are read from a tab-separated UTF-8 file, one per line:
+ * <pre>direction	type	name	message	reason</pre>
+ * The direction is to_irc or to_minecraft, and the type is one of that direction's
+ * line types in the configuration, such as chat or join. The reason may be left out.
+ * Empty lines and lines starting with # are skipped.<br>
+ * The configuration is read from a properties file, using the same names as config.yml,
+ * such as line_formatting.to_irc.chat or connection.server. Formatting lines that aren't
+ * given use the plugin's defaults. The ignore list is given as ignore_list, separated by commas,
+ * and the filter list as filter_list, with one rule per line (written \n in a properties file).
+ * Rewrite rules are given as rewrite.(name).pattern, .replace and .direction, and are applied
+ * in the order of their names.<br>
+ * If connection.server is set, the bot connects and sends the lines there. Otherwise lines
+ * going to IRC are counted and thrown away as soon as the writer takes them, so only the
+ * relay's own cost is measured.
+ * <pre>java com.avisenera.minecraftbot.ReplayRunner events.tsv [config.properties] [loops=N] [warmup=N] [dump=folder]</pre>
+ */
+public class ReplayRunner implements RelayHost {
+    private static final int BACKLOG = 256; // replaying waits while more lines than this wait to be sent
+
+    private static final String[][] DEFAULT_FORMATTING = {
+        {"to_irc.server", "<*Server> %message%"},
+        {"to_irc.chat", "<%name%> %message%"},
+        {"to_irc.action", "* %name% %message%"},
+        {"to_irc.join", "&b* %name% has joined the game"},
+        {"to_irc.leave", "&b* %name% has left the game"},
+        {"to_irc.kick", "&c* %name% has been kicked &r(%reason%&r)"},
+        {"to_irc.death", "&c* %message%"},
+        {"to_minecraft.chat", "#> <%name%> %message%"},
+        {"to_minecraft.action", "#> * %name% %message%"},
+        {"to_minecraft.join", "#> &b* %name% has joined %channel%"},
+        {"to_minecraft.part", "#> &b* %name% has left %channel% &r(%reason%&r)"},
+        {"to_minecraft.quit", "#> &b* %name% has quit IRC &r(%reason%&r)"},
+        {"to_minecraft.kick", "#> &c* %kicker% has kicked %name% &r(%reason%&r)"},
+        {"to_minecraft.nick_change", "#> &b* %oldname% is now known as %name%"},
+        {"to_minecraft.mode_change", "#> &b* %name% set mode: %mode%"},
+        {"to_minecraft.topic_change", "#> &b* %name% changed the topic to: &r%topic%"},
+        {"to_minecraft.netsplit", "#> &b* Netsplit (%reason%): %name% quit IRC"},
+        {"to_minecraft.netjoin", "#> &b* Netsplit over (%reason%): %name% joined %channel%"}
+    };
+
+    /**
+     * One recorded event.
+     */
+    public static final class Event {
+        final Keys.line_to_irc toIRC;             // null for events going to Minecraft
+        final Keys.line_to_minecraft toMinecraft; // null for events going to IRC
+        final String name, message, reason;
+
+        Event(Keys.line_to_irc toIRC, Keys.line_to_minecraft toMinecraft, String name, String message, String reason) {
+            this.toIRC = toIRC;
+            this.toMinecraft = toMinecraft;
+            this.name = name;
+            this.message = message;
+            this.reason = reason;
+        }
+    }
+
+    // A message from Minecraft. The plugin's MCMessage also has the player, which isn't recorded.
+    private static class ReplayedMessage extends Message {}
+
+    // Takes the lines sent to Minecraft, and sends lines to IRC the way the plugin's listener does
+    private class Endpoint extends MBListener {
+        @Override
+        public void onMessage(String line) {
+            toMinecraft.incrementAndGet();
+        }
+
+        void send(Keys.line_to_irc format, Message message) {
+            String line = relay.getFormatter().toIRC(format, message);
+            if (line != null) relay.relayToIRC(format, line, message);
+        }
+    }
+
+    private final ConfigSnapshot config;
+    private final Relay relay;
+    private final Endpoint endpoint = new Endpoint();
+    private final AtomicLong toIRC = new AtomicLong();       // lines the writer took
+    private final AtomicLong toMinecraft = new AtomicLong(); // lines the listeners got
+
+    public ReplayRunner(ConfigSnapshot config) {
+        this.config = config;
+        final boolean offline = config.connection(Keys.connection.server).isEmpty();
+        relay = new Relay(this) {
+            @Override
+            protected IRCManager createIRCManager() {
+                if (!offline) return super.createIRCManager();
+                return new IRCManager(this) {
+                    @Override
+                    protected void write(String message, boolean action) {
+                        toIRC.incrementAndGet();
+                    }
+                };
+            }
+        };
+        relay.start();
+        relay.registerListener(endpoint);
+    }
+
+    @Override
+    public ConfigSnapshot currentConfig() {
+        return config;
+    }
+
+    @Override
+    public void log(int level, String message) {
+        System.err.println((level == 2 ? "[SEVERE] " : level == 1 ? "[WARNING] " : "[INFO] ") + message);
+    }
+
+    @Override
+    public String getVersion() {
+        return "replay";
+    }
+
+    @Override
+    public void onCommand(Keys.commands command, String sender, String message) {
+        // There is no game to run commands in
+    }
+
+    public Relay getRelay() {
+        return relay;
+    }
+
+    /**
+     * Connects to IRC, if a server is configured, and waits until the bot is in the channel.
+     * @return False if it didn't get there before the timeout
+     */
+    public boolean connect(long timeout) throws InterruptedException {
+        if (config.connection(Keys.connection.server).isEmpty()) return true;
+        IRCManager irc = relay.getIRCManager();
+        irc.connect();
+        long end = System.currentTimeMillis() + timeout;
+        while (System.currentTimeMillis() < end) {
+            if (irc.getMemberCount() > 0) return true;
+            Thread.sleep(50);
+        }
+        return false;
+    }
+
+    /**
+     * Sends every event through the relay once, in order, then waits for the lines
+     * still queued to be sent.
+     */
+    public void replay(List<Event> events) throws InterruptedException {
+        IRCManager irc = relay.getIRCManager();
+        String channel = config.connection(Keys.connection.channel);
+        for (Event e : events) {
+            if (e.toIRC != null) {
+                while (irc.queuedLines() > BACKLOG) Thread.yield();
+                Message msg = new ReplayedMessage();
+                msg.name = e.name;
+                msg.message = e.message;
+                msg.reason = e.reason;
+                endpoint.send(e.toIRC, msg);
+            } else {
+                IRCMessage msg = new IRCMessage();
+                msg.name = e.name;
+                msg.message = e.message;
+                msg.reason = e.reason;
+                msg.channel = channel;
+                irc.relayToMinecraft(e.toMinecraft, msg);
+            }
+        }
+        while (irc.queuedLines() > 0) Thread.sleep(1);
+    }
+
+    /**
+     * Returns the amount of lines that were sent to IRC, or thrown away in their place.
+     */
+    public long getSentToIRC() {
+        return toIRC.get();
+    }
+
+    /**
+     * Returns the amount of lines that reached the listeners on the Minecraft side.
+     */
+    public long getSentToMinecraft() {
+        return toMinecraft.get();
+    }
+
+    /**
+     * Reads events from a file in the format described above.
+     */
+    public static List<Event> readEvents(InputStream in) throws IOException {
+        List<Event> events = new ArrayList<Event>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+        int n = 0;
+        while ((line = reader.readLine()) != null) {
+            n++;
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] f = line.split("\t", -1);
+            if (f.length < 4) throw new IOException("Line " + n + ": expected at least 4 tab-separated values");
+            String reason = (f.length > 4 ? f[4] : "");
+            try {
+                if (f[0].equals("to_irc"))
+                    events.add(new Event(Keys.line_to_irc.valueOf(f[1]), null, f[2], f[3], reason));
+                else if (f[0].equals("to_minecraft"))
+                    events.add(new Event(null, Keys.line_to_minecraft.valueOf(f[1]), f[2], f[3], reason));
+                else throw new IOException("Line " + n + ": unknown direction " + f[0]);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + n + ": unknown type " + f[1]);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Makes a configuration from properties named like the values in config.yml.
+     */
+    public static ConfigSnapshot readConfig(Properties p) {
+        Properties defaults = new Properties();
+        for (String[] d : DEFAULT_FORMATTING) defaults.setProperty("line_formatting." + d[0], d[1]);
+        defaults.setProperty("connection.nick", "MinecraftBot");
+        defaults.setProperty("connection.bot_message_delay", "1000");
+
+        ConfigSnapshot.Builder b = new ConfigSnapshot.Builder();
+        for (Keys.connection k : Keys.connection.values())
+            b.connection.put(k, value(p, defaults, "connection." + k));
+        for (Keys.commands k : Keys.commands.values())
+            b.commands.put(k, value(p, defaults, "commands." + k));
+        for (Keys.settings k : Keys.settings.values())
+            b.settings.put(k, value(p, defaults, "settings." + k));
+        for (Keys.line_to_irc k : Keys.line_to_irc.values())
+            b.line_to_irc.put(k, value(p, defaults, "line_formatting.to_irc." + k));
+        for (Keys.line_to_minecraft k : Keys.line_to_minecraft.values())
+            b.line_to_minecraft.put(k, value(p, defaults, "line_formatting.to_minecraft." + k));
+        for (Keys.line_to_irc k : Keys.line_to_irc.values()) {
+            b.aggregate_window.put(k, value(p, defaults, "aggregate.window." + k));
+            b.aggregate_summary.put(k, value(p, defaults, "aggregate.summary." + k));
+        }
+
+        for (String nick : p.getProperty("ignore_list", "").split(","))
+            if (!nick.trim().isEmpty()) b.ignore_list.add(nick.trim().toLowerCase());
+        for (String line : p.getProperty("filter_list", "").split("\n"))
+            b.filter.add(line);
+
+        // Rules are applied in the order of their names, since properties have no order
+        TreeSet<String> rules = new TreeSet<String>();
+        for (String key : p.stringPropertyNames())
+            if (key.startsWith("rewrite.") && key.lastIndexOf('.') > "rewrite.".length())
+                rules.add(key.substring("rewrite.".length(), key.lastIndexOf('.')));
+        for (String name : rules)
+            b.rewrites.add(new RewriteRules.Definition(name, p.getProperty("rewrite." + name + ".pattern"),
+                    p.getProperty("rewrite." + name + ".replace"), p.getProperty("rewrite." + name + ".direction")));
+
+        return b.build();
+    }
+
+    private static String value(Properties p, Properties defaults, String key) {
+        String value = p.getProperty(key);
+        if (value == null) value = defaults.getProperty(key, "");
+        return value;
+    }
+
+    // Line counts so far in each direction. The report subtracts the ones from the warmup.
+    private long[][] counts() {
+        RelayStats stats = relay.getRelayStats();
+        int outcomes = RelayStats.Outcome.values().length;
+        long[][] counts = new long[2][outcomes + 1]; // the last one is the amount of lines that came out
+        for (RelayStats.Outcome o : RelayStats.Outcome.values()) {
+            counts[0][o.ordinal()] = stats.totalToIRC(o);
+            counts[1][o.ordinal()] = stats.totalToMinecraft(o);
+        }
+        counts[0][outcomes] = getSentToIRC();
+        counts[1][outcomes] = getSentToMinecraft();
+        return counts;
+    }
+
+    private String report(long events, long nanos, long[][] before) {
+        long[][] after = counts();
+        LatencyStats latency = relay.getLatencyStats();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%d events in %.1f ms, %.0f events/s%n", events, nanos / 1e6, events * 1e9 / Math.max(nanos, 1)));
+        for (boolean irc : new boolean[] {true, false}) {
+            int d = (irc ? 0 : 1);
+            int last = after[d].length - 1;
+            sb.append(irc ? "to_irc:      " : "to_minecraft:");
+            for (RelayStats.Outcome o : RelayStats.Outcome.values())
+                sb.append(' ').append(o).append(' ').append(after[d][o.ordinal()] - before[d][o.ordinal()]);
+            sb.append(irc ? ", sent " : ", delivered ").append(after[d][last] - before[d][last]);
+            sb.append(String.format("%n"));
+            for (LatencyStats.Stage s : LatencyStats.Stage.values()) {
+                LatencyHistogram h = latency.get(irc, s);
+                if (h.count() == 0) continue;
+                sb.append(String.format("  %-7s p50 %-8s p99 %-8s p99.9 %-8s max %s%n", s,
+                        LatencyStats.format(h.percentile(0.5)), LatencyStats.format(h.percentile(0.99)),
+                        LatencyStats.format(h.percentile(0.999)), LatencyStats.format(h.max())));
+            }
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: ReplayRunner events.tsv [config.properties] [loops=N] [warmup=N] [dump=folder]");
+            System.exit(1);
+        }
+        Properties properties = new Properties();
+        int loops = 1, warmup = 0;
+        File dump = null;
+        for (int i = 1; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("loops=")) loops = Integer.parseInt(arg.substring(6));
+            else if (arg.startsWith("warmup=")) warmup = Integer.parseInt(arg.substring(7));
+            else if (arg.startsWith("dump=")) dump = new File(arg.substring(5));
+            else {
+                InputStream in = new FileInputStream(arg);
+                try {
+                    properties.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+                } finally {
+                    in.close();
+                }
+            }
+        }
+
+        List<Event> events;
+        InputStream in = new FileInputStream(args[0]);
+        try {
+            events = readEvents(in);
+        } finally {
+            in.close();
+        }
+
+        ReplayRunner runner = new ReplayRunner(readConfig(properties));
+        if (!runner.connect(30000)) {
+            runner.log(2, "Could not join the channel.");
+            System.exit(1);
+        }
+        for (int i = 0; i < warmup; i++) runner.replay(events);
+        runner.relay.getLatencyStats().reset();
+        long[][] before = runner.counts();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < loops; i++) runner.replay(events);
+        long time = System.nanoTime() - start;
+
+        System.out.print(runner.report((long) events.size() * loops, time, before));
+        if (dump != null) System.out.println("Wrote " + runner.relay.getRelayRecorder().dump(dump));
+        runner.relay.shutdown("", 1000);
+        System.exit(0);
+    }
+}
@@ -0,0 +1,208 @@
+package com.avisenera.minecraftbot;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Replaces parts of relayed lines using regular expressions from the configuration file,
+ * such as links or emoji shortcodes.<br>
+ * Some expressions take very long on some lines, so each rule only gets to read so many
+ * characters of a line (see {@link Budgeted}). A rule that runs out of budget, or fails in
+ * any other way, is turned off until the configuration is reloaded, and is reported by
+ * {@link #takeReports()}.
+ */
+public final class RewriteRules {
+    /**
+     * A rule as written in the configuration file.
+     */
+    public static final class Definition {
+        final String name, pattern, replacement, direction;
+
+        /**
+         * @param name The rule's name, used when reporting it
+         * @param pattern The regular expression
+         * @param replacement What replaces each match. $1 and so on are the expression's groups,
+         * and &amp; starts a color code.
+         * @param direction to_irc, to_minecraft or both
+         */
+        public Definition(String name, String pattern, String replacement, String direction) {
+            this.name = name;
+            this.pattern = (pattern == null ? "" : pattern);
+            this.replacement = (replacement == null ? "" : replacement);
+            this.direction = (direction == null || direction.isEmpty() ? "both" : direction.toLowerCase());
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + pattern + " -> " + replacement + " (" + direction + ")";
+        }
+    }
+
+    /**
+     * A compiled rule.
+     */
+    public static final class Rule {
+        private final Definition definition;
+        private final Pattern pattern;
+        private final String replacement;
+        private final boolean toIRC, toMinecraft;
+        private final LongAdder applied = new LongAdder();
+        private volatile String disabled = null; // why the rule was turned off
+
+        private Rule(Definition definition, Pattern pattern, String replacement, boolean toIRC, boolean toMinecraft) {
+            this.definition = definition;
+            this.pattern = pattern;
+            this.replacement = replacement;
+            this.toIRC = toIRC;
+            this.toMinecraft = toMinecraft;
+        }
+
+        public String getName() {
+            return definition.name;
+        }
+
+        /**
+         * Returns the amount of lines the rule changed.
+         */
+        public long getApplied() {
+            return applied.sum();
+        }
+
+        /**
+         * Returns why the rule was turned off, or null if it is in use.
+         */
+        public String getDisabled() {
+            return disabled;
+        }
+    }
+
+    private final List<Definition> definitions;
+    private final List<Rule> rules;
+    private final List<String> errors;
+    private final int budget;
+    private final ConcurrentLinkedQueue<String> reports = new ConcurrentLinkedQueue<String>();
+
+    /**
+     * @param definitions The rules, in the order they are applied
+     * @param budget The amount of characters each rule may read per line
+     */
+    public RewriteRules(List<Definition> definitions, int budget) {
+        List<Rule> compiled = new ArrayList<Rule>();
+        List<String> problems = new ArrayList<String>();
+        for (Definition d : definitions) {
+            boolean toIRC = d.direction.equals("both") || d.direction.equals("to_irc");
+            boolean toMinecraft = d.direction.equals("both") || d.direction.equals("to_minecraft");
+            if (!toIRC && !toMinecraft) {
+                problems.add("Rule " + d.name + " has an unknown direction: " + d.direction);
+                continue;
+            }
+            if (d.pattern.isEmpty()) {
+                problems.add("Rule " + d.name + " has no pattern");
+                continue;
+            }
+            try {
+                Pattern p = Pattern.compile(d.pattern);
+                // Color codes like in the formatting, with && for a literal &
+                String r = d.replacement.replace("&&", "\u00FE").replace("&", "\u00A7").replace("\u00FE", "&");
+                compiled.add(new Rule(d, p, r, toIRC, toMinecraft));
+            } catch (PatternSyntaxException e) {
+                problems.add("Rule " + d.name + " is not a valid expression (" + e.getDescription() + ")");
+            }
+        }
+        this.definitions = new ArrayList<Definition>(definitions);
+        this.rules = Collections.unmodifiableList(compiled);
+        this.errors = Collections.unmodifiableList(problems);
+        this.budget = (budget > 0 ? budget : Budgeted.DEFAULT_BUDGET);
+    }
+
+    /**
+     * Applies the rules going in the line's direction, one after the other.
+     * @param line The formatted line
+     * @param toIRC True if the line goes to IRC
+     * @return The line with the rules applied
+     */
+    public String apply(String line, boolean toIRC) {
+        for (Rule r : rules) {
+            if (r.disabled != null || (toIRC ? !r.toIRC : !r.toMinecraft)) continue;
+            try {
+                // A single pass, so that each rule is only charged once for reading the line.
+                // Copying the line into the result reads it through charAt too, but only once,
+                // so that isn't counted: the budget is for the expression alone.
+                Budgeted text = new Budgeted(line, budget);
+                Matcher m = r.pattern.matcher(text);
+                if (!m.find()) continue;
+                StringBuffer sb = new StringBuffer(line.length() + 16);
+                do {
+                    text.copying = true;
+                    m.appendReplacement(sb, r.replacement);
+                    text.copying = false;
+                } while (m.find());
+                text.copying = true;
+                m.appendTail(sb);
+                line = sb.toString();
+                r.applied.increment();
+            } catch (Budgeted.OverBudget e) {
+                disable(r, "took more than " + budget + " steps on a line " + line.length() + " characters long");
+            } catch (RuntimeException e) {
+                disable(r, "failed: " + e);
+            }
+        }
+        return line;
+    }
+
+    private void disable(Rule r, String why) {
+        synchronized (r) {
+            if (r.disabled != null) return;
+            r.disabled = why;
+        }
+        reports.add("Rewrite rule " + r.getName() + " " + why + ", and is turned off until the configuration is reloaded.");
+    }
+
+    /**
+     * Returns the reports of rules that were turned off since the last call, and forgets them.
+     */
+    public List<String> takeReports() {
+        if (reports.isEmpty()) return Collections.emptyList();
+        List<String> taken = new ArrayList<String>();
+        String report;
+        while ((report = reports.poll()) != null) taken.add(report);
+        return taken;
+    }
+
+    /**
+     * Returns the rules, in the order they are applied.
+     */
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Returns why some rules couldn't be compiled. Those rules are skipped.
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Checks if the other rules were made from the same definitions and budget.
+     */
+    boolean sameAs(RewriteRules other) {
+        if (budget != other.budget || definitions.size() != other.definitions.size()) return false;
+        for (int i = 0; i < definitions.size(); i++)
+            if (!definitions.get(i).toString().equals(other.definitions.get(i).toString())) return false;
+        return true;
+    }
+
+    /**
+     * Returns true if there are no rules.
+     */
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+}
@@ -0,0 +1,84 @@
+package com.avisenera.minecraftbot;
+
+import java.util.Arrays;
+
+/**
+ * Remembers hashes for a limited time, in a fixed amount of memory.<br>
+ * The filter is made of a few Bloom filters, each covering a span of time. New hashes go
+ * into the newest one, and lookups check all of them. When the newest one's span is over,
+ * the oldest one is emptied and becomes the newest, so a hash is remembered for at least
+ * (buckets - 1) spans and at most (buckets) spans. Like any Bloom filter, it may say it has
+ * seen a hash it hasn't, but never the other way around.
+ */
+public class TimedBloomFilter {
+    private final long[][] buckets;
+    private final int mask;   // bits per bucket, minus one
+    private final int hashes; // bits set per hash
+    private final long span;  // nanoseconds per bucket
+    private int current = 0;
+    private long started;
+
+    /**
+     * @param buckets The amount of spans remembered
+     * @param bits The size of each bucket in bits, a power of two
+     * @param hashes The amount of bits set for each hash
+     * @param span The time covered by each bucket, in nanoseconds
+     */
+    public TimedBloomFilter(int buckets, int bits, int hashes, long span) {
+        if (Integer.bitCount(bits) != 1 || bits < 64) throw new IllegalArgumentException("bits must be a power of two");
+        this.buckets = new long[buckets][bits / 64];
+        this.mask = bits - 1;
+        this.hashes = hashes;
+        this.span = span;
+        this.started = System.nanoTime();
+    }
+
+    /**
+     * Remembers a hash.
+     */
+    public synchronized void add(long hash) {
+        rotate();
+        long[] bits = buckets[current];
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < hashes; i++) {
+            int bit = (h1 + i * h2) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * Checks if a hash was remembered recently.
+     * @return False if it certainly wasn't, true if it probably was
+     */
+    public synchronized boolean mightContain(long hash) {
+        rotate();
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (long[] bits : buckets) {
+            boolean all = true;
+            for (int i = 0; i < hashes && all; i++) {
+                int bit = (h1 + i * h2) & mask;
+                all = (bits[bit >>> 6] & (1L << bit)) != 0;
+            }
+            if (all) return true;
+        }
+        return false;
+    }
+
+    // Empties the buckets whose time is over
+    private void rotate() {
+        long now = System.nanoTime();
+        if (now - started < span) return;
+        if (now - started >= span * buckets.length) {
+            for (long[] bits : buckets) Arrays.fill(bits, 0);
+            started = now;
+            return;
+        }
+        while (now - started >= span) {
+            current = (current + 1) % buckets.length;
+            Arrays.fill(buckets[current], 0);
+            started += span;
+        }
+    }
+}
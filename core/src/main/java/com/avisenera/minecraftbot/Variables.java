@@ -0,0 +1,27 @@
+package com.avisenera.minecraftbot;
+
+import com.avisenera.minecraftbot.message.Message;
+
+/**
+ * Fills in variables that don't come from the message itself, such as the
+ * values the plugin gets from other plugins through hooks.
+ */
+public interface Variables {
+    /**
+     * Leaves lines as they are.
+     */
+    public static final Variables NONE = new Variables() {
+        @Override
+        public String apply(String line, Message msg) {
+            return line;
+        }
+    };
+
+    /**
+     * Replaces the variables in the line. Called from any thread.
+     * @param line The line which may include variables
+     * @param msg The message the line is made from
+     * @return The line with the variables replaced
+     */
+    public String apply(String line, Message msg);
+}
@@ -0,0 +1,273 @@
+package com.avisenera.minecraftbot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Censors words and patterns in what is said, in both directions.<br>
+ * Rules come from a list with one rule per line. A line is a word to censor, matched as a
+ * whole word, or as part of a longer word if it starts or ends with "*". A line starting with
+ * "regex:" is a regular expression instead. All words are put in one {@link AhoCorasick}
+ * automaton, so a line is searched for all of them in one pass, while each character is read
+ * in lowercase and with leetspeak undone ("h3ll0" reads as "hello"). Expressions are matched
+ * one by one against the line as it is, ignoring case, so there should only be a few. Like
+ * rewrite rules, each expression only gets to read so many characters of a line (see
+ * {@link Budgeted}); one that runs out of budget, or fails in any other way, is turned off
+ * until the configuration is reloaded, and is reported by {@link #takeReports()}.
+ * Several rules for the same word, such as "darn" and "darn*", are all checked.
+ * Whatever matches is replaced with asterisks. Every rule counts its hits.<br>
+ * A filter's rules never change once it has been made, other than being turned off.
+ */
+public final class WordFilter {
+    private static final String REGEX = "regex:";
+
+    /**
+     * A filter without rules.
+     */
+    public static final WordFilter NONE = new WordFilter(Collections.<String>emptyList());
+
+    /**
+     * One line of the list.
+     */
+    public static final class Rule {
+        private final String text;
+        private final Pattern pattern; // null for words
+        private final boolean partialStart, partialEnd;
+        private final LongAdder hits = new LongAdder();
+        private volatile String disabled = null; // why the rule was turned off
+
+        private Rule(String text, Pattern pattern, boolean partialStart, boolean partialEnd) {
+            this.text = text;
+            this.pattern = pattern;
+            this.partialStart = partialStart;
+            this.partialEnd = partialEnd;
+        }
+
+        /**
+         * Returns the line the rule was made from.
+         */
+        public String getText() {
+            return text;
+        }
+
+        public boolean isRegex() {
+            return pattern != null;
+        }
+
+        /**
+         * Returns the amount of times the rule matched.
+         */
+        public long getHits() {
+            return hits.sum();
+        }
+
+        /**
+         * Returns why the rule was turned off, or null if it is in use.
+         */
+        public String getDisabled() {
+            return disabled;
+        }
+    }
+
+    // The text as the automaton reads it: in lowercase and with leetspeak undone, one character at a time
+    private static final class Folded implements CharSequence {
+        private final CharSequence text;
+
+        Folded(CharSequence text) {
+            this.text = text;
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return fold(text.charAt(index));
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new Folded(text.subSequence(start, end));
+        }
+
+        @Override
+        public String toString() {
+            char[] c = new char[text.length()];
+            for (int i = 0; i < c.length; i++) c[i] = charAt(i);
+            return new String(c);
+        }
+    }
+
+    private final List<Rule> rules;
+    private final List<String> errors;
+    private final AhoCorasick words;
+    private final Rule[][] wordRules; // by the index of the word in the automaton
+    private final Rule[] patterns;
+    private final int budget;
+    private final ConcurrentLinkedQueue<String> reports = new ConcurrentLinkedQueue<String>();
+
+    /**
+     * @param lines The rules, one per line. Blank lines and lines starting with "#" are skipped.
+     */
+    public WordFilter(List<String> lines) {
+        this(lines, Budgeted.DEFAULT_BUDGET);
+    }
+
+    /**
+     * @param lines The rules, one per line. Blank lines and lines starting with "#" are skipped.
+     * @param budget The amount of characters each expression may read per line
+     */
+    public WordFilter(List<String> lines, int budget) {
+        List<Rule> all = new ArrayList<Rule>();
+        List<String> problems = new ArrayList<String>();
+        Map<String, List<Rule>> terms = new LinkedHashMap<String, List<Rule>>(); // rules by folded word
+        List<Rule> regexes = new ArrayList<Rule>();
+        for (String line : lines) {
+            String rule = line.trim();
+            if (rule.isEmpty() || rule.startsWith("#")) continue;
+            if (rule.startsWith(REGEX)) {
+                try {
+                    Pattern p = Pattern.compile(rule.substring(REGEX.length()).trim(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+                    Rule r = new Rule(rule, p, false, false);
+                    all.add(r);
+                    regexes.add(r);
+                } catch (PatternSyntaxException e) {
+                    problems.add("Not a valid expression: " + rule + " (" + e.getDescription() + ")");
+                }
+                continue;
+            }
+            boolean start = rule.startsWith("*"), end = rule.endsWith("*") && rule.length() > 1;
+            String word = rule.substring(start ? 1 : 0, rule.length() - (end ? 1 : 0));
+            if (word.isEmpty()) continue;
+            Rule r = new Rule(rule, null, start, end);
+            all.add(r);
+            String term = new Folded(word).toString();
+            List<Rule> same = terms.get(term);
+            if (same == null) terms.put(term, same = new ArrayList<Rule>());
+            same.add(r);
+        }
+        rules = Collections.unmodifiableList(all);
+        errors = Collections.unmodifiableList(problems);
+        words = new AhoCorasick(terms.keySet().toArray(new String[terms.size()]));
+        wordRules = new Rule[terms.size()][];
+        int i = 0;
+        for (List<Rule> same : terms.values()) wordRules[i++] = same.toArray(new Rule[same.size()]);
+        patterns = regexes.toArray(new Rule[regexes.size()]);
+        this.budget = (budget > 0 ? budget : Budgeted.DEFAULT_BUDGET);
+    }
+
+    /**
+     * Replaces everything the rules match with asterisks.
+     * @return The censored text, or the same text if nothing matched
+     */
+    public String censor(final String text) {
+        if (rules.isEmpty() || text == null || text.isEmpty()) return text;
+
+        final boolean[] hidden = new boolean[text.length()];
+        final boolean[] any = new boolean[1];
+        words.find(new Folded(text), new AhoCorasick.Hits() {
+            @Override
+            protected void hit(int word, int start, int end) {
+                for (Rule r : wordRules[word]) {
+                    if (!r.partialStart && start > 0 && isWordChar(text.charAt(start - 1))) continue;
+                    if (!r.partialEnd && end < text.length() && isWordChar(text.charAt(end))) continue;
+                    Arrays.fill(hidden, start, end, true);
+                    r.hits.increment();
+                    any[0] = true;
+                }
+            }
+        });
+        for (Rule r : patterns) {
+            if (r.disabled != null) continue;
+            try {
+                Matcher m = r.pattern.matcher(new Budgeted(text, budget));
+                while (m.find()) {
+                    if (m.end() == m.start()) continue;
+                    Arrays.fill(hidden, m.start(), m.end(), true);
+                    r.hits.increment();
+                    any[0] = true;
+                }
+            } catch (Budgeted.OverBudget e) {
+                disable(r, "took more than " + budget + " steps on a line " + text.length() + " characters long");
+            } catch (RuntimeException e) {
+                disable(r, "failed: " + e);
+            }
+        }
+        if (!any[0]) return text;
+
+        char[] c = text.toCharArray();
+        for (int i = 0; i < c.length; i++)
+            if (hidden[i] && !Character.isWhitespace(c[i])) c[i] = '*';
+        return new String(c);
+    }
+
+    private void disable(Rule r, String why) {
+        synchronized (r) {
+            if (r.disabled != null) return;
+            r.disabled = why;
+        }
+        reports.add("Filter rule " + r.getText() + " " + why + ", and is turned off until the configuration is reloaded.");
+    }
+
+    /**
+     * Returns the reports of expressions that were turned off since the last call, and forgets them.
+     */
+    public List<String> takeReports() {
+        if (reports.isEmpty()) return Collections.emptyList();
+        List<String> taken = new ArrayList<String>();
+        String report;
+        while ((report = reports.poll()) != null) taken.add(report);
+        return taken;
+    }
+
+    /**
+     * Returns the rules, in the order they were given.
+     */
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Returns why some lines couldn't be made into rules. Those lines are skipped.
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns true if there are no rules, so nothing is ever censored.
+     */
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    // Lowercase, with the characters commonly used in leetspeak read as the letters they stand for
+    static char fold(char c) {
+        switch (c) {
+            case '0': return 'o';
+            case '1': case '!': case '|': return 'i';
+            case '3': return 'e';
+            case '4': case '@': return 'a';
+            case '5': case '$': return 's';
+            case '7': case '+': return 't';
+            case '8': return 'b';
+            case '9': return 'g';
+            default: return Character.toLowerCase(c);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.avisenera.minecraftbot.listeners;
+
+import com.avisenera.minecraftbot.Keys;
+import com.avisenera.minecraftbot.LatencyStats;
+import com.avisenera.minecraftbot.LoopGuard;
+import com.avisenera.minecraftbot.MBListener;
+import com.avisenera.minecraftbot.Relay;
+import com.avisenera.minecraftbot.RelayRecorder;
+import com.avisenera.minecraftbot.RelayStats;
+import com.avisenera.minecraftbot.RepeatCollapser;
+import com.avisenera.minecraftbot.message.IRCMessage;
+
+import org.pircbotx.User;
+import org.pircbotx.hooks.ListenerAdapter;
+import org.pircbotx.hooks.events.*;
+
+@SuppressWarnings("rawtypes")
+public class IRCListener extends ListenerAdapter {
+    private Relay relay;
+    private IRCManager manager;
+    IRCListener(Relay instance, IRCManager irc) {
+        relay = instance;
+        manager = irc;
+    }
+    
+    // Server-related handlers
+    @Override
+    public void onConnect(ConnectEvent event) {
+        manager.connected();
+        
+        // Check for any nick issues
+        nickCheck();
+        
+        // Join channel
+        manager.joinChannel();
+    }
+    private void nickCheck() {
+        String nick = manager.config.connection(Keys.connection.nick);
+        String nickpass = manager.config.connection(Keys.connection.nick_password);
+        if (nickpass.isEmpty()) return;
+        
+        // Have nickpass - must identify
+        if (manager.getServer().getUserBot().getNick().equals(nick)) {
+            manager.getServer().sendMessage("NickServ", "IDENTIFY "+nickpass);
+            pause(2000);
+            return;
+        }
+        
+        // Ghosting
+        manager.getServer().sendMessage("NickServ", "GHOST "+nick+" "+nickpass);
+        pause(2000);
+        manager.getServer().changeNick(nick);
+        pause(2000);
+        
+        // Try again
+        if (manager.getServer().getUserBot().getNick().equals(nick)) {
+            manager.getServer().sendMessage("NickServ", "IDENTIFY "+nickpass);
+            pause(2000);
+        }
+        // If the original nick is still not being used, nothing is done.
+    }
+    private void pause(long millis) { // It's annoying having to surround everything in try-catch statements.
+        try { Thread.sleep(millis); }
+        catch (InterruptedException ex) { }
+    }
+
+    @Override
+    public void onDisconnect(DisconnectEvent e) {
+        relay.log((autoreconnect?1:0), "Disconnected.");
+        manager.netsplits.clear();
+        if (autoreconnect) manager.connect();
+        else autoreconnect = true;
+    }
+    public boolean autoreconnect = true;
+    
+    @Override
+    public void onUnknown(UnknownEvent e) {
+        // Answer to the ping sent to measure the lag
+        String line = e.getLine();
+        if (line != null && line.contains(" PONG ") && line.endsWith(IRCManager.LAG_TOKEN)) manager.lagPong();
+    }
+    
+    @Override
+    public void onUserList(UserListEvent e) {
+        manager.updateMembers();
+    }
+    
+    // With most events, the channel is checked. This is because it's possible for an IRC
+    // op to force the bot into another channel. This bot should only be concerned with
+    // what's happening in one channel.
+    // The exception is on joins and parts.
+
+    @Override
+    public void onMessage(MessageEvent e) {
+        if (!e.getChannel().equals(manager.getChannel())) return;
+        String text = e.getMessage();
+        boolean relayed = isRelayed(e.getUser(), text);
+        if (!relayed && isCommand(e.getUser().getNick(), text)) return;
+        if (relayed && isEcho(Keys.line_to_minecraft.chat, text)) return;
+        
+        IRCMessage msg = new IRCMessage();
+        msg.name = e.getUser().getNick();
+        msg.message = LoopGuard.unmark(text);
+        
+        send(Keys.line_to_minecraft.chat, msg);
+    }
+    
+    @Override
+    public void onAction(ActionEvent e) {
+        if (!e.getChannel().equals(manager.getChannel())) return;
+        if (isRelayed(e.getUser(), e.getAction()) && isEcho(Keys.line_to_minecraft.action, e.getAction())) return;
+        
+        IRCMessage msg = new IRCMessage();
+        msg.name = e.getUser().getNick();
+        msg.message = LoopGuard.unmark(e.getAction());
+        send(Keys.line_to_minecraft.action, msg);
+    }
+
+    
+    @Override
+    public void onJoin(JoinEvent e) {
+        if (e.getUser().getNick().equals(manager.getServer().getNick())) manager.updateMembers(); // the bot itself
+        else if (e.getChannel().equals(manager.getChannel())) manager.memberJoined();
+        if (manager.netsplits.join(e.getUser().getNick(), e.getChannel().getName())) return;
+        
+        IRCMessage msg = new IRCMessage();
+        msg.name = e.getUser().getNick();
+        msg.channel = e.getChannel().getName();
+        send(Keys.line_to_minecraft.join, msg);
+    }
+
+    @Override
+    public void onPart(PartEvent e) {
+        if (e.getChannel().equals(manager.getChannel())) manager.memberLeft();
+        IRCMessage msg = new IRCMessage();
+        msg.name = e.getUser().getNick();
+        msg.channel = e.getChannel().getName();
+        if (e.getReason() != null) msg.reason = e.getReason();
+        send(Keys.line_to_minecraft.part, msg);
+    }
+    
+    @Override
+    public void onQuit(QuitEvent e) {
+        manager.memberLeft();
+        if (manager.netsplits.quit(e.getUser().getNick(), e.getReason())) return;
+        
+        IRCMessage msg = new IRCMessage();
+        msg.name = e.getUser().getNick();
+        msg.reason = e.getReason();
+        send(Keys.line_to_minecraft.quit, msg);
+    }
+    
+    @Override
+    public void onKick(KickEvent e) {
+        if (!e.getChannel().equals(manager.getChannel())) return;
+        manager.memberLeft();
+        
+        IRCMessage msg = new IRCMessage();
+        msg.kicker = e.getSource().getNick();
+        msg.name = e.getRecipient().getNick();
+        msg.reason = e.getReason();
+        send(Keys.line_to_minecraft.kick, msg);
+    }
+    
+    @Override
+    public void onNickChange(NickChangeEvent e) {
+        IRCMessage msg = new IRCMessage();
+        msg.oldname = e.getOldNick();
+        msg.name = e.getNewNick();
+        send(Keys.line_to_minecraft.nick_change, msg);
+    }
+
+    @Override
+    public void onMode(ModeEvent e) {
+        if (!e.getChannel().equals(manager.getChannel())) return;
+        
+        IRCMessage msg = new IRCMessage();
+        msg.name = e.getUser().getNick();
+        msg.mode = e.getMode();
+        send(Keys.line_to_minecraft.mode_change, msg);
+    }
+    
+    @Override
+    public void onTopic(TopicEvent e) {
+        if (!e.isChanged()) return; // Only looking for new topics
+        if (!e.getChannel().equals(manager.getChannel())) return;
+        
+        IRCMessage msg = new IRCMessage();
+        msg.name = e.getUser().getNick();
+        msg.topic = e.getTopic();
+        send(Keys.line_to_minecraft.topic_change, msg);
+    }
+
+    
+    /**
+     * Checks if the message is actually a command.
+     * @param sender The User that sent the message
+     * @param message The message that is sent
+     * @return True if the message was an enabled command. If true, stop the message.
+     */
+    private boolean isCommand(String sender, String message) {
+        Keys.commands command = commandOf(message);
+        if (command == null || !relay.getConfig().commandsB(command)) return false;
+        
+        // What the commands do depends on the host, such as listing the players in the game
+        relay.getHost().onCommand(command, sender, message);
+        return true;
+    }
+    
+    /**
+     * Checks if the message was relayed by another bot, so it can't be a command.
+     */
+    private boolean isRelayed(User user, String message) {
+        return LoopGuard.isMarked(message) || relay.getLoopGuard().isPeer(user.getNick(), user.getLogin(), user.getHostmask());
+    }
+    
+    /**
+     * Checks if the message is a line this bot wrote to IRC coming back, such as when
+     * another bot relays it again. If it is, it is counted and must be stopped.
+     * Only used for lines from peer bots, so people repeating a line aren't stopped.
+     */
+    private boolean isEcho(Keys.line_to_minecraft format, String message) {
+        if (!relay.getLoopGuard().isEchoFromIRC(message)) return false;
+        relay.getRelayStats().count(format, RelayStats.Outcome.filtered);
+        return true;
+    }
+    
+    /**
+     * Returns the command the message starts with, or null if it doesn't start with one.
+     * This doesn't check whether the command is enabled.
+     */
+    static Keys.commands commandOf(String message) {
+        String lower = message.toLowerCase();
+        if (lower.startsWith("!players")) return Keys.commands.players;
+        if (lower.startsWith("!time")) return Keys.commands.time;
+        if (lower.startsWith("!mckick")) return Keys.commands.mckick;
+        if (lower.startsWith("!mcban")) return Keys.commands.mcban;
+        return null;
+    }
+    
+    /**
+     * Passes an IRC message to the listeners.
+     * @param format The formatting string the message should use
+     * @param message The message object that contains formatting values
+     */
+    void send(final Keys.line_to_minecraft format, final IRCMessage message) {
+        if (!relay.getLoadShedder().admit(format)) {
+            relay.getRelayStats().count(format, RelayStats.Outcome.shed);
+            return;
+        }
+        final String send = relay.getFormatter().toMinecraft(format, message);
+        if (send == null) return; // Blank line - ignore
+        
+        // Lines said over and over are sent once, and then once more with the amount of repeats
+        if (format == Keys.line_to_minecraft.chat || format == Keys.line_to_minecraft.action) {
+            boolean repeat = relay.getRepeats(false).offer(format, message.name, message.message, new RepeatCollapser.Repeats() {
+                @Override
+                protected void send(int times) {
+                    for (int i = 1; i < times; i++) relay.getRelayStats().count(format, RelayStats.Outcome.aggregated);
+                    dispatch(format, RepeatCollapser.repeated(send, times), message);
+                }
+            });
+            if (repeat) return;
+        }
+        dispatch(format, send, message);
+    }
+    
+    // Passes a formatted line to the listeners
+    private void dispatch(Keys.line_to_minecraft format, String send, IRCMessage message) {
+        RelayRecorder recorder = relay.getRelayRecorder();
+        long start = System.nanoTime();
+        long before = start;
+        relay.getLoopGuard().sentToMinecraft(send);
+        for (MBListener l : relay.getListeners()) {
+            l.onMessage(send, format, message);
+            long after = System.nanoTime();
+            recorder.dispatched(l.getClass().getName(), format.name(), after - before);
+            before = after;
+        }
+        relay.getRelayStats().count(format, RelayStats.Outcome.relayed);
+        
+        long done = System.nanoTime();
+        LatencyStats latency = relay.getLatencyStats();
+        latency.record(false, LatencyStats.Stage.send, done - start);
+        latency.record(false, LatencyStats.Stage.total, done - message.created);
+        recorder.line(false, format.name(), send.length(), 0, message.formatTime, message.hookTime,
+                done - start, done - message.created);
+    }
+}
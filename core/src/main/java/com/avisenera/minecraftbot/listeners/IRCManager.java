@@ -0,0 +1,452 @@
+package com.avisenera.minecraftbot.listeners;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pircbotx.Channel;
+import org.pircbotx.PircBotX;
+import org.pircbotx.User;
+import org.pircbotx.UtilSSLSocketFactory;
+
+import com.avisenera.minecraftbot.ConfigSnapshot;
+import com.avisenera.minecraftbot.Keys;
+import com.avisenera.minecraftbot.Relay;
+import com.avisenera.minecraftbot.message.IRCMessage;
+import com.avisenera.minecraftbot.message.Message;
+
+/**
+ * Manages the connection to the IRC server. 
+ */
+public class IRCManager implements Runnable {
+    public final Relay relay;
+    
+    private PircBotX bot;
+    private IRCListener listener;
+    private OutboundQueue outbound;
+    private final ScheduledExecutorService tasks; // connecting, measuring the lag and sending netsplit lines
+    final NetsplitTracker netsplits;
+    
+    // Connection statistics. Kept up to date here so that reading them is always cheap.
+    static final String LAG_TOKEN = "MinecraftBot-lag";
+    private final AtomicLong connects = new AtomicLong();
+    private volatile long lagPingSent = 0;
+    private volatile long lag = -1;
+    private volatile int members = 0;
+    // The configuration used for the current connection. Set again on the tasks thread when connecting.
+    volatile ConfigSnapshot config;
+    
+    // Only listeners in this package should have access to server and channel
+    PircBotX getServer() { return bot; }
+    Channel getChannel() {
+        return bot.getChannel(config.connection(Keys.connection.channel));
+    }
+    
+    public IRCManager(Relay instance) {
+        this.relay = instance;
+        this.config = instance.getConfig(); // until the first connection is made
+        this.listener = new IRCListener(instance, this);
+        this.netsplits = new NetsplitTracker(this);
+        
+        bot = new PircBotX();
+        bot.setAutoNickChange(true);
+        bot.setLogin("MinecraftBot");
+        bot.setFinger("What are you doing? Stop it.");
+        bot.setVersion("MinecraftBot v" + relay.getHost().getVersion() +
+                " - https://github.com/TerrorBite/MinecraftBot");
+        
+        bot.getListenerManager().addListener(listener);
+        
+        outbound = new OutboundQueue(this);
+        outbound.start();
+        
+        tasks = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "MinecraftBot IRC connection");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        
+        // Measure the lag every 30 seconds
+        tasks.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                if (!bot.isConnected()) return;
+                updateMembers(); // in case a change was missed
+                lagPingSent = System.nanoTime();
+                bot.sendRawLineNow("PING :" + LAG_TOKEN);
+            }
+        }, 30, 30, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Begins attempting to connect to the server, if it isn't already connected.
+     */
+    public synchronized void connect() {
+        if (bot.isConnected()) {
+            relay.log(0, "Attempted to connect to IRC while already connected.");
+            relay.log(0, "To force reconnecting, reload the plugin.");
+        }
+        else if (!tasks.isShutdown()) tasks.execute(this);
+    }
+    
+    /**
+     * Quits the IRC server.
+     * @param message The message to use when quitting the server
+     */
+    public void disconnect(String message) {
+        listener.autoreconnect = false;
+        bot.quitServer(message);
+    }
+    
+    /**
+     * Quits the IRC server and connects again, using the current configuration.
+     * @param message The message to use when quitting the server
+     */
+    public void reconnect(String message) {
+        // The listener connects again once it sees the disconnect
+        if (bot.isConnected()) bot.quitServer(message);
+        else connect();
+    }
+    
+    /**
+     * Shuts down the connection for good, when the plugin is being disabled.
+     * No more lines are accepted, and lines still waiting to be sent get until the
+     * timeout to go out. The bot then quits the server and closes the connection.
+     * @param message The message to use when quitting the server
+     * @param timeout The maximum time to spend shutting down, in milliseconds
+     */
+    public void shutdown(final String message, long timeout) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        listener.autoreconnect = false;
+        tasks.shutdownNow();
+        
+        long sentBefore = outbound.getSent();
+        int dropped = outbound.drain(deadline);
+        outbound.stop(remaining(deadline));
+        long flushed = outbound.getSent() - sentBefore;
+        
+        // A connection that stopped responding must not hold up the server
+        Thread closer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                if (bot.isConnected()) bot.quitServer(message);
+                bot.shutdown();
+            }
+        }, "MinecraftBot shutdown");
+        closer.setDaemon(true);
+        closer.start();
+        try {
+            closer.join(Math.max(remaining(deadline), 1)); // join(0) would wait forever
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (closer.isAlive()) relay.log(1, "Timed out while closing the IRC connection.");
+        
+        relay.log(0, "Sent " + flushed + " remaining line" + (flushed==1?"":"s") + " to IRC, dropped " + dropped + ".");
+    }
+    private static long remaining(long deadline) {
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()), 0);
+    }
+    
+    private boolean busyconnecting = false;
+    @Override
+    public void run() {
+        if (busyconnecting) return;
+        
+        busyconnecting = true;
+        
+        start();
+        busyconnecting = false;
+    }
+    
+    /**
+     * Begins the connection to IRC. This method should never be called directly. Use run() instead.
+     */
+    private synchronized void start() {
+        config = relay.getConfig(); // Keep the configuration used for this connection
+        bot.setMessageDelay(config.connectionI(Keys.connection.bot_message_delay, 1000));
+        bot.setName(config.connection(Keys.connection.nick));
+        start(
+                config.connection(Keys.connection.server),
+                config.connectionI(Keys.connection.server_port, 6667),
+                config.connection(Keys.connection.server_password),
+                config.connectionB(Keys.connection.use_ssl),
+                1,
+                config.connectionI(Keys.connection.retries, 5)
+                );
+    }
+    
+    /**
+     * Attempts to connect to the IRC server.
+     * @param server The server name to connect to
+     * @param port The port nubmer to connect to
+     * @param password Server password, or a blank string if none
+     * @param ssl Connecting through SSL?
+     * @param current The connect attempt number
+     * @param maxtries The max number of connect attempts
+     */
+    private void start(String server, int port, String password, boolean ssl, int current, int maxtries) {
+        if (current > maxtries) {
+            relay.log(2, "Exceeded number of reconnect attempts. Failed to connect to IRC.");
+            return;
+        } else if (current > 1) { // Wait 5 seconds before another attempt
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException ex) {}
+        }
+        
+        relay.log(0, "Connecting to " + server + "... (Attempt " + current + ")");
+        
+        try {
+            if (password.isEmpty()) {
+                if (ssl) bot.connect(server, port, new UtilSSLSocketFactory().trustAllCertificates());
+                else bot.connect(server, port);
+            } else {
+                if (ssl) bot.connect(server, port, password, new UtilSSLSocketFactory().trustAllCertificates());
+                else bot.connect(server, port, password);
+            }
+        } catch (Exception ex) {
+            relay.log(1, "Failed to connect: " + ex.getMessage());
+        }
+        if (!bot.isConnected()) start(server, port, password, ssl, (current + 1), maxtries);
+        // Listener's onConnect() takes over from here
+    }
+    
+// Statistics
+    // Called by the listener
+    void connected() {
+        long n = connects.incrementAndGet();
+        relay.getRelayRecorder().connected(config.connection(Keys.connection.server), (int) n);
+    }
+    void lagPong() {
+        if (lagPingSent != 0) lag = System.nanoTime() - lagPingSent;
+    }
+    void updateMembers() {
+        Channel channel = getChannel();
+        members = (channel == null ? 0 : channel.getUsers().size());
+    }
+    // Joins and leaves only change the count, so that a netsplit doesn't count the channel for every user
+    synchronized void memberJoined() {
+        members++;
+    }
+    synchronized void memberLeft() {
+        if (members > 0) members--;
+    }
+    
+    // Runs a task on the connection thread after the given delay, in nanoseconds
+    void schedule(Runnable task, long delay) {
+        try {
+            tasks.schedule(task, delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+    
+    /**
+     * Returns the amount of times the bot has connected again after the first connection.
+     */
+    public long getReconnects() {
+        return Math.max(connects.get() - 1, 0);
+    }
+    
+    /**
+     * Returns the time the server last took to answer a ping, in nanoseconds, or -1 if not known yet.
+     */
+    public long getLag() {
+        return lag;
+    }
+    
+    /**
+     * Returns the amount of users in the channel, kept up to date with every join, part, quit or kick.
+     */
+    public int getMemberCount() {
+        return members;
+    }
+    
+// Other methods
+    public int usercount() {
+        return getChannel().getUsers().size();
+    }
+    
+// Used by other plugins
+    public Set<User> getIRCUserList()
+    {
+    	return getChannel().getUsers();
+    }
+    
+// Methods used by commands
+    /**
+     * Gets the list of all users in the channel.
+     * @return Formatted list of users to display to the player. 30 nicks maximum.
+     */
+    public String userlist() {
+        int totalnicks = usercount();
+        int displayed = (totalnicks>30?30:totalnicks);
+        String list = "Displaying "+displayed+" out of "+totalnicks+" nicks in "+getChannel().getName()+":";
+        try {
+            Iterator<User> users = getChannel().getUsers().iterator();
+            int count = 1;
+            while (users.hasNext()) {
+                if (count > 30) break;
+                User user = users.next();
+                list += " " + user.getNick();
+                count++;
+            }
+        } catch (NullPointerException ex) {
+            list += "An error occured when getting the user list.";
+        }
+        
+        return list;
+    }
+    
+    public String getNick() {
+        return bot.getUserBot().getNick();
+    }
+    
+    public void joinChannel() {
+        String channel = config.connection(Keys.connection.channel);
+        String key = config.connection(Keys.connection.channel_key);
+        if (key.isEmpty()) bot.joinChannel(channel);
+        else bot.joinChannel(channel, key);
+    }
+    public void partChannel() {
+        bot.partChannel(getChannel());
+    }
+    
+    public void op(String nick) {
+        bot.setMode(getChannel(), "+o "+nick);
+    }
+    public void deop(String nick) {
+        bot.setMode(getChannel(), "-o "+nick);
+    }
+    public void voice(String nick) {
+        bot.setMode(getChannel(), "+v "+nick);
+    }
+    public void devoice(String nick) {
+        bot.setMode(getChannel(), "-v "+nick);
+    }
+    public void kick(String nick) {
+        bot.kick(getChannel(), bot.getUser(nick));
+    }
+    public void kick(String nick, String reason) {
+        bot.kick(getChannel(), bot.getUser(nick), reason);
+    }
+    public void ban(String nick) {
+        bot.ban(getChannel(), "*!*@"+bot.getUser(nick).getHostmask());
+    }
+    public void unban(String hostmask) {
+        bot.unBan(getChannel(), hostmask);
+    }
+    
+    /**
+     * Queues a message to be sent to the channel.
+     * @return False if the message was dropped because the queue is full
+     */
+    public boolean sendMessage(String message) {
+        return queue(message, false, System.nanoTime());
+    }
+    /**
+     * Queues an action to be sent to the channel.
+     * @return False if the action was dropped because the queue is full
+     */
+    public boolean sendAction(String action) {
+        return queue(action, true, System.nanoTime());
+    }
+    /**
+     * Queues a line to be sent to the channel.
+     * @param line The line to send
+     * @param action True to send it as an action
+     * @param origin When the event causing this line happened, as given by System.nanoTime()
+     * @return False if the line was dropped because the queue is full
+     */
+    public boolean queue(String line, boolean action, long origin) {
+        return outbound.offer(line, action, origin, "other", null);
+    }
+    /**
+     * Queues a line made from a Minecraft event to be sent to the channel.
+     * @param line The line to send
+     * @param action True to send it as an action
+     * @param type The kind of event the line was made from
+     * @param source The event's message, which has the time it happened and how long formatting took
+     * @return False if the line was dropped because the queue is full
+     */
+    public boolean queue(String line, boolean action, Keys.line_to_irc type, Message source) {
+        return outbound.offer(line, action, source.created, type.name(), source);
+    }
+    
+    /**
+     * Returns the amount of lines waiting to be sent to IRC.
+     */
+    public int queuedLines() {
+        return outbound.size();
+    }
+    
+    /**
+     * Sends a line to the channel. Called by the writer thread only, one line at a time.
+     * PircBotX makes it wait for the message delay.
+     */
+    protected void write(String message, boolean action) {
+        if (action) bot.sendAction(getChannel(), message);
+        else bot.sendMessage(getChannel(), message);
+    }
+    
+    /**
+     * Passes a line from IRC to the listeners, as if it had been said in the channel.
+     * Nothing is sent to IRC.
+     * @param format The formatting string the message should use
+     * @param message The message object that contains formatting values
+     */
+    public void relayToMinecraft(Keys.line_to_minecraft format, IRCMessage message) {
+        listener.send(format, message);
+    }
+    
+    /**
+     * Sends a message to IRC and to the listeners.
+     */
+    public void sendMessage(Keys.line_to_minecraft format, IRCMessage message) {
+        listener.send(format, message);
+        
+        if (format != Keys.line_to_minecraft.action) sendMessage(message.message);
+        else sendAction(message.message);
+    }
+    
+    /**
+     * Checks if the specified IRC user has voice in the channel
+     * @param nick IRC nickname
+     * @return Whether or not user is voiced
+     */
+    public boolean userHasVoice(String nick) {
+    	// Get a reference to the user
+    	User u = bot.getUser(nick);
+    	// Check if user has voice
+    	Set<Channel> channelsVoiceIn = u.getChannelsVoiceIn();
+    	if (channelsVoiceIn.contains(getChannel())) {
+    		return true;
+    	}
+    	return false;
+    }
+    
+    /**
+     * Checks if the specified IRC user has operator in the channel
+     * @param nick IRC nickname
+     * @return Whether or not user is an IRC operator
+     */
+    public boolean userHasOp(String nick) {
+    	// Get a reference to the user
+    	User u = bot.getUser(nick);
+    	// Check if user has op
+    	Set<Channel> channelsOpIn = u.getChannelsOpIn();
+    	if (channelsOpIn.contains(getChannel())) {
+    		return true;
+    	}
+    	return false;
+    }
+}
@@ -0,0 +1,189 @@
+package com.avisenera.minecraftbot.listeners;
+
+import com.avisenera.minecraftbot.BurstAggregator;
+import com.avisenera.minecraftbot.Keys;
+import com.avisenera.minecraftbot.RelayStats;
+import com.avisenera.minecraftbot.message.IRCMessage;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Notices netsplits, and turns them into one line each instead of a line per user.<br>
+ * When servers split, every user behind them quits with the names of the two servers as
+ * the reason, such as "hub.example.net leaf.example.net". Users can't give such a reason
+ * themselves, since servers put "Quit: " in front of theirs. Those quits are collected until
+ * none came for a moment, and sent as a single netsplit line. When the same users join again
+ * later, their joins are collected the same way and sent as a single netjoin line.
+ */
+class NetsplitTracker {
+    private static final Pattern SPLIT = Pattern.compile("[^\\s.]+(\\.[^\\s.]+)+ [^\\s.]+(\\.[^\\s.]+)+");
+    private static final long QUIET = TimeUnit.SECONDS.toNanos(2);      // a split is over once nobody quit for this long
+    private static final long REMEMBER = TimeUnit.MINUTES.toNanos(30); // how long users of a split are waited for
+
+    // One split between two servers
+    private static class Split {
+        final String servers;
+        final long started;
+        final LinkedHashSet<String> quit = new LinkedHashSet<String>(); // not yet sent
+        final LinkedHashSet<String> back = new LinkedHashSet<String>(); // not yet sent
+        String channel = "";
+        long lastQuit, lastJoin;
+        boolean quitScheduled = false, joinScheduled = false;
+
+        Split(String servers, long now) {
+            this.servers = servers;
+            this.started = now;
+        }
+    }
+
+    private final IRCManager manager;
+    private final RelayStats stats;
+    // Only used while holding the tracker's lock
+    private final HashMap<String, Split> collecting = new HashMap<String, Split>(); // by the servers, while users quit
+    private final HashMap<String, Split> waiting = new HashMap<String, Split>();    // by lowercase nick, until they join
+
+    NetsplitTracker(IRCManager manager) {
+        this.manager = manager;
+        this.stats = manager.relay.getRelayStats();
+    }
+
+    /**
+     * Checks if the quit is part of a netsplit. If it is, it is held to be sent with the rest.
+     * @return True if the quit is taken care of and must not be sent on its own
+     */
+    boolean quit(String nick, String reason) {
+        if (reason == null || !SPLIT.matcher(reason).matches()) return false;
+        long now = System.nanoTime();
+        synchronized (this) {
+            Split split = collecting.get(reason);
+            if (split == null) {
+                forgetOld(now);
+                split = new Split(reason, now);
+                collecting.put(reason, split);
+            }
+            split.quit.add(nick);
+            split.lastQuit = now;
+            waiting.put(nick.toLowerCase(), split);
+            if (!split.quitScheduled) {
+                split.quitScheduled = true;
+                scheduleQuits(split, QUIET);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the join is a user coming back from a netsplit. If it is, it is held
+     * to be sent with the rest.
+     * @return True if the join is taken care of and must not be sent on its own
+     */
+    boolean join(String nick, String channel) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            Split split = waiting.remove(nick.toLowerCase());
+            if (split == null || now - split.started > REMEMBER) return false;
+            if (split.quit.remove(nick)) {
+                // Came back before the split was even sent, so there's nothing to tell
+                stats.count(Keys.line_to_minecraft.quit, RelayStats.Outcome.aggregated);
+                stats.count(Keys.line_to_minecraft.join, RelayStats.Outcome.aggregated);
+                return true;
+            }
+            split.back.add(nick);
+            split.channel = channel;
+            split.lastJoin = now;
+            if (!split.joinScheduled) {
+                split.joinScheduled = true;
+                scheduleJoins(split, QUIET);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forgets all splits, such as when the bot itself is disconnected.
+     */
+    synchronized void clear() {
+        collecting.clear();
+        waiting.clear();
+    }
+
+    // Users of splits from long ago aren't waited for anymore
+    private void forgetOld(long now) {
+        for (Iterator<Map.Entry<String, Split>> it = waiting.entrySet().iterator(); it.hasNext();)
+            if (now - it.next().getValue().started > REMEMBER) it.remove();
+    }
+
+    private void scheduleQuits(final Split split, long delay) {
+        manager.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flushQuits(split);
+            }
+        }, delay);
+    }
+
+    private void scheduleJoins(final Split split, long delay) {
+        manager.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flushJoins(split);
+            }
+        }, delay);
+    }
+
+    // Sends the netsplit line once users stopped quitting
+    private void flushQuits(Split split) {
+        String[] names;
+        synchronized (this) {
+            long quiet = System.nanoTime() - split.lastQuit;
+            if (quiet < QUIET) {
+                scheduleQuits(split, QUIET - quiet);
+                return;
+            }
+            split.quitScheduled = false;
+            if (collecting.get(split.servers) == split) collecting.remove(split.servers);
+            names = split.quit.toArray(new String[split.quit.size()]);
+            split.quit.clear();
+        }
+        if (names.length == 0) return;
+
+        IRCMessage msg = new IRCMessage();
+        msg.name = BurstAggregator.names(names, names.length);
+        msg.reason = split.servers;
+        send(Keys.line_to_minecraft.netsplit, Keys.line_to_minecraft.quit, msg, names.length);
+    }
+
+    // Sends the netjoin line once users stopped joining
+    private void flushJoins(Split split) {
+        String[] names;
+        String channel;
+        synchronized (this) {
+            long quiet = System.nanoTime() - split.lastJoin;
+            if (quiet < QUIET) {
+                scheduleJoins(split, QUIET - quiet);
+                return;
+            }
+            split.joinScheduled = false;
+            names = split.back.toArray(new String[split.back.size()]);
+            channel = split.channel;
+            split.back.clear();
+        }
+        if (names.length == 0) return;
+
+        IRCMessage msg = new IRCMessage();
+        msg.name = BurstAggregator.names(names, names.length);
+        msg.reason = split.servers;
+        msg.channel = channel;
+        send(Keys.line_to_minecraft.netjoin, Keys.line_to_minecraft.join, msg, names.length);
+    }
+
+    // Sends the summary, and counts the lines it stands for as aggregated
+    private void send(Keys.line_to_minecraft format, Keys.line_to_minecraft each, IRCMessage msg, int lines) {
+        for (int i = 0; i < lines; i++) stats.count(each, RelayStats.Outcome.aggregated);
+        manager.relayToMinecraft(format, msg);
+    }
+}
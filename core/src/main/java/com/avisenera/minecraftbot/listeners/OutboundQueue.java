@@ -0,0 +1,161 @@
+package com.avisenera.minecraftbot.listeners;
+
+import com.avisenera.minecraftbot.LatencyStats;
+import com.avisenera.minecraftbot.RelayRecorder;
+import com.avisenera.minecraftbot.message.Message;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lines waiting to be sent to IRC.<br>
+ * PircBotX makes the sending thread wait for the message delay, which is far too long
+ * to hold up a chat event. Instead, lines are put in this queue and a single thread
+ * owned by the relay sends them one by one, in the order they were added.
+ */
+class OutboundQueue implements Runnable {
+    private static final int CAPACITY = 500;
+    private static final long STALL = 50000000; // sending for longer than this is a flood control stall
+
+    private final IRCManager manager;
+    private final LinkedBlockingQueue<Line> queue = new LinkedBlockingQueue<Line>(CAPACITY);
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicInteger pending = new AtomicInteger(); // queued or being sent
+    private volatile boolean accepting = true;
+    private Thread thread;
+
+    static final class Line {
+        final String text;
+        final boolean action;
+        final long origin; // when the event happened
+        final long queued; // when the line was added to the queue
+        final String type;
+        final Message source; // the message the line was made from, or null
+
+        Line(String text, boolean action, long origin, String type, Message source) {
+            this.text = text;
+            this.action = action;
+            this.origin = origin;
+            this.queued = System.nanoTime();
+            this.type = type;
+            this.source = source;
+        }
+    }
+
+    OutboundQueue(IRCManager manager) {
+        this.manager = manager;
+    }
+
+    synchronized void start() {
+        if (thread != null) return;
+        thread = new Thread(this, "MinecraftBot IRC writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Adds a line to the queue.
+     * @param origin When the event causing this line happened, as given by System.nanoTime()
+     * @param type The kind of line, for the relay recorder
+     * @param source The message the line was made from, or null
+     * @return False if the line was dropped, because the queue is full or shutting down.
+     */
+    boolean offer(String text, boolean action, long origin, String type, Message source) {
+        if (accepting) {
+            pending.incrementAndGet();
+            if (queue.offer(new Line(text, action, origin, type, source))) return true;
+            pending.decrementAndGet();
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Returns the amount of lines waiting to be sent.
+     */
+    int size() {
+        return pending.get();
+    }
+
+    long getSent() {
+        return sent.get();
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Stops accepting new lines and waits until all lines in the queue have been sent,
+     * or until the deadline has passed.
+     * @param deadline The time to stop waiting at, as given by System.nanoTime()
+     * @return The amount of lines that were still waiting. These are dropped.
+     */
+    int drain(long deadline) {
+        accepting = false;
+        while (size() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int left = 0;
+        while (queue.poll() != null) left++;
+        pending.addAndGet(-left);
+        dropped.addAndGet(left);
+        return left;
+    }
+
+    /**
+     * Stops the sending thread and waits for it to end.
+     * @param timeout Maximum time to wait, in milliseconds
+     */
+    synchronized void stop(long timeout) {
+        if (thread == null) return;
+        thread.interrupt();
+        try {
+            thread.join(Math.max(timeout, 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Line line = queue.poll(1, TimeUnit.SECONDS);
+                if (line == null) continue;
+                long taken = System.nanoTime();
+                try {
+                    manager.write(manager.relay.getLoopGuard().sentToIRC(line.text), line.action);
+                    sent.incrementAndGet();
+                    
+                    long done = System.nanoTime();
+                    LatencyStats latency = manager.relay.getLatencyStats();
+                    latency.record(true, LatencyStats.Stage.queue, taken - line.queued);
+                    latency.record(true, LatencyStats.Stage.send, done - taken);
+                    latency.record(true, LatencyStats.Stage.total, done - line.origin);
+                    
+                    RelayRecorder recorder = manager.relay.getRelayRecorder();
+                    Message m = line.source;
+                    recorder.line(true, line.type, line.text.length(), taken - line.queued,
+                            (m == null ? 0 : m.formatTime), (m == null ? 0 : m.hookTime), done - taken, done - line.origin);
+                    if (done - taken > STALL) recorder.floodStall(done - taken, queue.size());
+                } catch (RuntimeException e) {
+                    // Most likely not connected
+                    dropped.incrementAndGet();
+                } finally {
+                    pending.decrementAndGet();
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        }
+    }
+}
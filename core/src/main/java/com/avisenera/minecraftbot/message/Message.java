@@ -0,0 +1,107 @@
+package com.avisenera.minecraftbot.message;
+
+import com.avisenera.minecraftbot.ConfigSnapshot;
+import com.avisenera.minecraftbot.Formatting;
+import com.avisenera.minecraftbot.LatencyStats;
+import com.avisenera.minecraftbot.Relay;
+import com.avisenera.minecraftbot.Variables;
+
+/**
+ * Representation of a message to be relayed. Holds values that replace
+ * certain words entered in the configuration file.
+ */
+public class Message {
+    // To distinguish between where the messages are from, two different classes inherit
+    // from this class. They are both exactly alike except for the name.
+    protected Message() {}
+    
+    // Internal values
+    // Assigning empty strings avoids NullPointerExceptions when using applyFormatting
+    public String name = "";
+    public String message = "";
+    public String reason = "";
+    public String channel = "";
+    public String kicker = "";
+    public String oldname = "";
+    public String mode = "";
+    public String topic = "";
+    
+    // When the event happened, used to measure how long relaying the message takes
+    public final long created = System.nanoTime();
+    
+    // How long applyFormatting took, in nanoseconds, kept for the relay recorder
+    public long formatTime = 0;
+    public long hookTime = 0;
+    
+    // External values come from Variables (such as the plugin's hooks) and may depend on the internal values
+    
+    /**
+     * Given a formatting string, replaces values such as %name% with their actual values.
+     * @param p The relay, used to get the configuration and the other variables' values
+     * @param formatting The formatting string to use
+     * @param msg A Message object containing the values to replace with
+     * @return A formatted string with variables replaced with the actual values
+     */
+    public static String applyFormatting(Relay p, String formatting, Message msg) {
+        return applyFormatting(p, Template.compile(formatting), msg);
+    }
+    
+    /**
+     * Given a compiled formatting string, replaces values such as %name% with their actual values.
+     * @param p The relay, used to get the configuration and the other variables' values
+     * @param formatting The formatting string to use
+     * @param msg A Message object containing the values to replace with
+     * @return A formatted string with variables replaced with the actual values,
+     * or null if the message should be ignored
+     */
+    public static String applyFormatting(Relay p, Template formatting, Message msg) {
+        ConfigSnapshot config = p.getConfig();
+        String line = applyFormatting(config, p.getVariables(), p.getLatencyStats(), formatting, msg);
+        for (String report : config.rewrites().takeReports()) p.log(1, report);
+        return line;
+    }
+    
+    /**
+     * Given a compiled formatting string, replaces values such as %name% with their actual values.
+     * This does the work of {@link #applyFormatting(Relay, Template, Message)} without
+     * needing the relay, so that it can also be measured on its own.
+     * @param config The configuration, used for the ignore list and the rewrite rules
+     * @param hooks The other variables, such as the cache of hook values
+     * @param latency Where to record the time spent
+     * @param formatting The formatting string to use
+     * @param msg A Message object containing the values to replace with
+     * @return A formatted string with variables replaced with the actual values,
+     * or null if the message should be ignored
+     */
+    public static String applyFormatting(ConfigSnapshot config, Variables hooks, LatencyStats latency,
+            Template formatting, Message msg) {
+        // Checking if message should be ignored
+        if (msg instanceof IRCMessage && config.isIgnored(msg.name)) return null;
+        
+        boolean toIRC = !(msg instanceof IRCMessage);
+        long start = System.nanoTime();
+        
+        // Formatting is reset at the end of each variable to
+        // prevent formatting in one variable from spreading to the rest of the line
+        String fullmessage = formatting.render(msg);
+        long rendered = System.nanoTime();
+        
+        fullmessage = hooks.apply(fullmessage, msg);
+        long hooked = System.nanoTime();
+        
+        // Turn special characters back into ampersands
+        fullmessage = fullmessage.replace(Template.AMPERSAND, "&");
+        
+        fullmessage = config.rewrites().apply(fullmessage, toIRC);
+        
+        // Translate formatting codes
+        if (toIRC) fullmessage = Formatting.toIRC(fullmessage);
+        else fullmessage = Formatting.toMC(fullmessage);
+        
+        msg.formatTime = (rendered - start) + (System.nanoTime() - hooked);
+        msg.hookTime = hooked - rendered;
+        latency.record(toIRC, LatencyStats.Stage.format, msg.formatTime);
+        latency.record(toIRC, LatencyStats.Stage.hooks, msg.hookTime);
+        return fullmessage;
+    }
+}
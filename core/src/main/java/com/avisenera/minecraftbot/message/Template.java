@@ -0,0 +1,117 @@
+package com.avisenera.minecraftbot.message;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A formatting string from the configuration file, split up ahead of time into
+ * text and variables so that it doesn't need to be searched for every message.<br>
+ * Color codes entered with &amp; are already translated. Variables not known to
+ * Message (such as the ones handled by hooks) are left in the text as they are.
+ */
+public final class Template {
+    // && temporarily becomes U+00FE - Latin Small Letter Thorn
+    static final String AMPERSAND = "\u00FE";
+    private static final String MC_CONTROL_CODE = "\u00A7";
+
+    // Variables filled in from Message values, in the order of their ids
+    private static final String[] VARIABLES = {
+        "name", "message", "reason", "channel", "kicker", "oldname", "mode", "topic"
+    };
+
+    private final String raw;
+    private final String[] text; // always one more than variables
+    private final int[] variables;
+    private final int length;
+
+    private Template(String raw, String[] text, int[] variables) {
+        this.raw = raw;
+        this.text = text;
+        this.variables = variables;
+        int l = 0;
+        for (String t : text) l += t.length();
+        this.length = l;
+    }
+
+    /**
+     * Splits up a formatting string.
+     * @param formatting The formatting string, as entered in the configuration file
+     */
+    public static Template compile(String formatting) {
+        if (formatting == null) formatting = "";
+        String line = formatting.replace("&&", AMPERSAND).replace("&", MC_CONTROL_CODE);
+
+        List<String> text = new ArrayList<String>();
+        List<Integer> variables = new ArrayList<Integer>();
+
+        int start = 0; // start of the text not yet added
+        int i = line.indexOf('%');
+        while (i != -1) {
+            int end = line.indexOf('%', i + 1);
+            if (end == -1) break;
+            int id = variableId(line.substring(i + 1, end));
+            if (id == -1) {
+                // Not a variable. The closing % may be the start of one, though.
+                i = end;
+                continue;
+            }
+            text.add(line.substring(start, i));
+            variables.add(id);
+            start = end + 1;
+            i = line.indexOf('%', start);
+        }
+        text.add(line.substring(start));
+
+        int[] v = new int[variables.size()];
+        for (int j = 0; j < v.length; j++) v[j] = variables.get(j);
+        return new Template(formatting, text.toArray(new String[text.size()]), v);
+    }
+
+    private static int variableId(String name) {
+        for (int i = 0; i < VARIABLES.length; i++)
+            if (VARIABLES[i].equals(name)) return i;
+        return -1;
+    }
+
+    /**
+     * Returns true if the formatting string was blank, meaning the event is disabled.
+     */
+    public boolean isEmpty() {
+        return raw.isEmpty();
+    }
+
+    /**
+     * Fills in the variables with the values in the message.
+     * Ampersands entered as && are still represented by {@link #AMPERSAND}.
+     */
+    String render(Message msg) {
+        StringBuilder sb = new StringBuilder(length + 64);
+        sb.append(text[0]);
+        for (int i = 0; i < variables.length; i++) {
+            sb.append(value(variables[i], msg));
+            sb.append(text[i + 1]);
+        }
+        return sb.toString();
+    }
+
+    private static String value(int id, Message msg) {
+        switch (id) {
+            case 0: return msg.name;
+            case 1: return msg.message;
+            case 2: return msg.reason;
+            case 3: return msg.channel;
+            case 4: return msg.kicker;
+            case 5: return msg.oldname;
+            case 6: return msg.mode;
+            default: return msg.topic;
+        }
+    }
+
+    /**
+     * Returns the formatting string exactly as it was entered in the configuration file.
+     */
+    @Override
+    public String toString() {
+        return raw;
+    }
+}
@@ -0,0 +1,101 @@
+package com.avisenera.minecraftbot;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Checks the words {@link AhoCorasick} finds, including against searching for each word on its own.
+ */
+public class AhoCorasickTest {
+
+    // Every hit as "word@start-end", in the order they were reported
+    private static List<String> find(AhoCorasick automaton, String text) {
+        final List<String> hits = new ArrayList<String>();
+        automaton.find(text, new AhoCorasick.Hits() {
+            @Override
+            protected void hit(int word, int start, int end) {
+                hits.add(word + "@" + start + "-" + end);
+            }
+        });
+        return hits;
+    }
+
+    @Test
+    public void findsOverlappingWords() {
+        AhoCorasick a = new AhoCorasick(new String[] {"he", "she", "his", "hers"});
+        // "ushers": she and he end at the same place, hers starts inside she
+        assertEquals("[1@1-4, 0@2-4, 3@2-6]", find(a, "ushers").toString());
+    }
+
+    @Test
+    public void findsWordsInsideWords() {
+        AhoCorasick a = new AhoCorasick(new String[] {"a", "aa", "aaa"});
+        assertEquals("[0@0-1, 1@0-2, 0@1-2, 2@0-3, 1@1-3, 0@2-3]", find(a, "aaa").toString());
+    }
+
+    @Test
+    public void ignoresCase() {
+        AhoCorasick a = new AhoCorasick(new String[] {"Notch"});
+        assertEquals("[0@4-9, 0@10-15]", find(a, "hey NOTCH notch").toString());
+    }
+
+    @Test
+    public void reportsOnlyTheLastIndexOfDuplicateWords() {
+        AhoCorasick a = new AhoCorasick(new String[] {"word", "other", "WORD"});
+        assertEquals(3, a.size());
+        assertEquals("[2@0-4]", find(a, "word").toString());
+    }
+
+    @Test
+    public void skipsEmptyWords() {
+        AhoCorasick a = new AhoCorasick(new String[] {"", "x"});
+        assertEquals("[1@1-2]", find(a, "ax").toString());
+        assertEquals("[]", find(new AhoCorasick(new String[0]), "anything").toString());
+    }
+
+    @Test
+    public void agreesWithSearchingEachWord() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            String[] words = new String[1 + random.nextInt(8)];
+            for (int w = 0; w < words.length; w++) words[w] = randomText(random, 1 + random.nextInt(4));
+            String text = randomText(random, random.nextInt(60));
+
+            // Duplicates are reported under their last index
+            List<String> expected = new ArrayList<String>();
+            for (int end = 1; end <= text.length(); end++)
+                for (int w = 0; w < words.length; w++) {
+                    if (lastIndexOf(words, words[w]) != w) continue;
+                    int start = end - words[w].length();
+                    if (start >= 0 && text.regionMatches(true, start, words[w], 0, words[w].length()))
+                        expected.add(w + "@" + start + "-" + end);
+                }
+
+            List<String> actual = find(new AhoCorasick(words), text);
+            assertEquals(sorted(expected), sorted(actual));
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] c = new char[length];
+        for (int i = 0; i < length; i++) c[i] = "abAB".charAt(random.nextInt(4));
+        return new String(c);
+    }
+
+    private static int lastIndexOf(String[] words, String word) {
+        for (int w = words.length - 1; w >= 0; w--) if (words[w].equalsIgnoreCase(word)) return w;
+        return -1;
+    }
+
+    // Hits ending at the same place may come in any order
+    private static List<String> sorted(List<String> hits) {
+        List<String> copy = new ArrayList<String>(hits);
+        Collections.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,94 @@
+package com.avisenera.minecraftbot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Checks how {@link Formatting} translates color codes between IRC and Minecraft.
+ */
+public class FormattingTest {
+    private static final String COLOR = "\u0003", HEX = "\u0004", S = "\u00A7";
+
+    @Test
+    public void leavesLinesWithoutCodesAlone() {
+        String line = "just some chat, 100% plain";
+        assertTrue(line == Formatting.toMC(line));
+        assertEquals("", Formatting.toMC(""));
+    }
+
+    @Test
+    public void readsOneAndTwoDigitColors() {
+        assertEquals(S + "cred", Formatting.toMC(COLOR + "4red"));
+        assertEquals(S + "cred", Formatting.toMC(COLOR + "04red"));
+        assertEquals(S + "93", Formatting.toMC(COLOR + "123")); // only two digits are read
+        assertEquals("a" + S + "4", Formatting.toMC("a" + COLOR + "5"));
+    }
+
+    @Test
+    public void dropsBackgroundColors() {
+        assertEquals(S + "ctext", Formatting.toMC(COLOR + "4,12text"));
+        assertEquals(S + "ctext", Formatting.toMC(COLOR + "04,1text"));
+        assertEquals(S + "c,text", Formatting.toMC(COLOR + "4,text")); // not a background
+        assertEquals(S + "c,", Formatting.toMC(COLOR + "4,"));
+    }
+
+    @Test
+    public void endsColorsWithABareCode() {
+        assertEquals(S + "cred" + S + "r plain", Formatting.toMC(COLOR + "4red" + COLOR + " plain"));
+        assertEquals(S + "r,5", Formatting.toMC(COLOR + ",5"));
+        assertEquals("end" + S + "r", Formatting.toMC("end" + COLOR));
+        assertEquals(S + "rdefault", Formatting.toMC(COLOR + "99default"));
+    }
+
+    @Test
+    public void usesTheClosestColorForTheExtendedPalette() {
+        for (int code = 16; code <= 98; code++) {
+            String expected = S + ColorTable.nearest(ColorTable.extendedRGB(code)) + "x";
+            assertEquals("code " + code, expected, Formatting.toMC(COLOR + code + "x"));
+        }
+        assertEquals(S + "0", Formatting.toMC(COLOR + "88")); // black
+        assertEquals(S + "f", Formatting.toMC(COLOR + "98")); // white
+    }
+
+    @Test
+    public void readsHexColors() {
+        assertEquals(S + "fwhite", Formatting.toMC(HEX + "FFFFFFwhite"));
+        assertEquals(S + "0black", Formatting.toMC(HEX + "000000black"));
+        assertEquals(S + ColorTable.nearest(0x00AA00) + "x", Formatting.toMC(HEX + "00aa00x"));
+        assertEquals(S + "ftext", Formatting.toMC(HEX + "FFFFFF,000000text"));
+    }
+
+    @Test
+    public void endsColorsWithAMalformedHexCode() {
+        assertEquals(S + "rGGGGGG", Formatting.toMC(HEX + "GGGGGG"));
+        assertEquals(S + "rFFF", Formatting.toMC(HEX + "FFF"));
+        assertEquals("end" + S + "r", Formatting.toMC("end" + HEX));
+        assertEquals(S + "f,zz", Formatting.toMC(HEX + "FFFFFF,zz")); // not a background
+    }
+
+    @Test
+    public void translatesControlCodes() {
+        assertEquals(S + "lbold", Formatting.toMC("\u0002bold"));
+        assertEquals(S + "nunder", Formatting.toMC("\u001funder"));
+        assertEquals(S + "oitalic", Formatting.toMC("\u001ditalic"));
+        assertEquals(S + "oreverse", Formatting.toMC("\u0016reverse"));
+        assertEquals(S + "mstrike", Formatting.toMC("\u001estrike"));
+        assertEquals(S + "rnormal", Formatting.toMC("\u000fnormal"));
+        assertEquals("mono", Formatting.toMC("\u0011mono")); // Minecraft has no monospace
+        assertEquals("bell", Formatting.toMC("\u0007bell"));
+    }
+
+    @Test
+    public void translatesMinecraftCodesToIRC() {
+        assertEquals(COLOR + "04red", Formatting.toIRC(S + "cred"));
+        assertEquals("\u0002bold\u000f", Formatting.toIRC(S + "lbold" + S + "r"));
+        assertEquals("\u001funder", Formatting.toIRC(S + "nunder"));
+        assertEquals("magic", Formatting.toIRC(S + "kmagic"));
+        // Italics and strikethrough used to be sent as reverse, and dropped
+        assertEquals("\u001ditalic", Formatting.toIRC(S + "oitalic"));
+        assertEquals("\u001estrike", Formatting.toIRC(S + "mstrike"));
+        assertEquals("plain", Formatting.toIRC("plain"));
+    }
+}
@@ -0,0 +1,165 @@
+package com.avisenera.minecraftbot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that {@link OrderedPipeline} keeps each source's order while formatting on several threads.
+ */
+public class OrderedPipelineTest {
+    private static final int THREADS = 8;
+
+    private OrderedPipeline pipeline;
+    private final AtomicInteger warnings = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        final ConfigSnapshot config = ReplayRunner.readConfig(new Properties());
+        Relay relay = new Relay(new RelayHost() {
+            @Override
+            public ConfigSnapshot currentConfig() {
+                return config;
+            }
+
+            @Override
+            public void log(int level, String message) {
+                if (level > 0) warnings.incrementAndGet();
+            }
+
+            @Override
+            public String getVersion() {
+                return "test";
+            }
+
+            @Override
+            public void onCommand(Keys.commands command, String sender, String message) {}
+        });
+        pipeline = new OrderedPipeline(relay, THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        pipeline.shutdown(5000);
+    }
+
+    // A job that takes a random time to format, and records when it's passed on
+    private static class Step extends OrderedPipeline.Job {
+        final int number;
+        final long delay;
+        final List<Integer> delivered;
+        final AtomicInteger busy;
+        final AtomicInteger overlaps;
+        final CountDownLatch done;
+
+        Step(int number, long delay, List<Integer> delivered, AtomicInteger busy, AtomicInteger overlaps, CountDownLatch done) {
+            this.number = number;
+            this.delay = delay;
+            this.delivered = delivered;
+            this.busy = busy;
+            this.overlaps = overlaps;
+            this.done = done;
+        }
+
+        @Override
+        protected void format() {
+            LockSupport.parkNanos(delay);
+        }
+
+        @Override
+        protected void deliver() {
+            if (busy.incrementAndGet() != 1) overlaps.incrementAndGet();
+            synchronized (delivered) {
+                delivered.add(number);
+            }
+            busy.decrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        protected void drop() {
+            done.countDown();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void keepsEachSourcesOrder() throws Exception {
+        final int sources = 6, jobs = 300;
+        final CountDownLatch done = new CountDownLatch(sources * jobs);
+        final List<List<Integer>> delivered = new ArrayList<List<Integer>>();
+        final AtomicInteger overlaps = new AtomicInteger();
+        Thread[] submitters = new Thread[sources];
+
+        // Every source submits from its own thread, so the sources' jobs are interleaved
+        for (int s = 0; s < sources; s++) {
+            final String source = "player" + s;
+            final List<Integer> lines = new ArrayList<Integer>();
+            final AtomicInteger busy = new AtomicInteger();
+            final Random random = new Random(s);
+            delivered.add(lines);
+            submitters[s] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < jobs; i++) {
+                        long delay = TimeUnit.MICROSECONDS.toNanos(random.nextInt(500));
+                        pipeline.submit(source, new Step(i, delay, lines, busy, overlaps, done));
+                        if (random.nextInt(4) == 0) Thread.yield();
+                    }
+                }
+            });
+        }
+        for (Thread t : submitters) t.start();
+        for (Thread t : submitters) t.join();
+
+        assertTrue("Not every job was passed on", done.await(30, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (int s = 0; s < sources; s++) {
+            List<Integer> lines = delivered.get(s);
+            assertEquals("player" + s, jobs, lines.size());
+            for (int i = 0; i < jobs; i++) assertEquals("player" + s + " line " + i, i, (int) lines.get(i));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void failedJobDoesNotHoldUpItsSource() throws Exception {
+        final CountDownLatch done = new CountDownLatch(3);
+        final List<Integer> delivered = new ArrayList<Integer>();
+        final List<Integer> dropped = new ArrayList<Integer>();
+        final AtomicInteger busy = new AtomicInteger(), overlaps = new AtomicInteger();
+
+        pipeline.submit("console", new Step(0, TimeUnit.MILLISECONDS.toNanos(50), delivered, busy, overlaps, done));
+        pipeline.submit("console", new Step(1, 0, delivered, busy, overlaps, done) {
+            @Override
+            protected void format() {
+                throw new IllegalStateException("broken hook");
+            }
+
+            @Override
+            protected void drop() {
+                synchronized (dropped) {
+                    dropped.add(number);
+                }
+                super.drop();
+            }
+        });
+        pipeline.submit("console", new Step(2, 0, delivered, busy, overlaps, done));
+
+        assertTrue("Not every job was passed on", done.await(10, TimeUnit.SECONDS));
+        assertEquals(2, delivered.size());
+        assertEquals(0, (int) delivered.get(0));
+        assertEquals(2, (int) delivered.get(1));
+        assertEquals(1, dropped.size());
+        assertEquals(1, warnings.get());
+    }
+}
@@ -0,0 +1,99 @@
+package com.avisenera.minecraftbot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Checks what {@link RewriteRules} replaces, and that slow rules are turned off.
+ */
+public class RewriteRulesTest {
+
+    private static RewriteRules rules(int budget, RewriteRules.Definition... definitions) {
+        return new RewriteRules(Arrays.asList(definitions), budget);
+    }
+
+    private static RewriteRules.Definition rule(String name, String pattern, String replacement, String direction) {
+        return new RewriteRules.Definition(name, pattern, replacement, direction);
+    }
+
+    private static String repeat(char c, int times) {
+        char[] chars = new char[times];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @Test
+    public void replacesEveryMatchInOrder() {
+        RewriteRules r = rules(0,
+                rule("smile", ":smile:", ":)", "both"),
+                rule("link", "https?://(\\S+)", "&9$1&r", "both"),
+                rule("and", " and ", " && ", "both"));
+        assertEquals("see \u00A79example.com\u00A7r & \u00A79x.org\u00A7r",
+                r.apply("see http://example.com and https://x.org", true));
+        assertEquals(0, r.getRules().get(0).getApplied());
+        assertEquals(1, r.getRules().get(1).getApplied());
+        assertEquals(1, r.getRules().get(2).getApplied());
+        assertEquals(":) & :)", r.apply(":smile: and :smile:", false));
+        assertEquals(1, r.getRules().get(0).getApplied());
+    }
+
+    @Test
+    public void keepsToTheRulesDirection() {
+        RewriteRules r = rules(0,
+                rule("irc", "a", "i", "to_irc"),
+                rule("mc", "b", "m", "TO_MINECRAFT"));
+        assertEquals("ib", r.apply("ab", true));
+        assertEquals("am", r.apply("ab", false));
+    }
+
+    @Test
+    public void reportsRulesThatCantBeUsed() {
+        RewriteRules r = rules(0,
+                rule("broken", "(unclosed", "", "both"),
+                rule("nowhere", "x", "y", "sideways"),
+                rule("empty", "", "y", "both"),
+                rule("fine", "x", "y", null));
+        assertEquals(3, r.getErrors().size());
+        assertEquals(1, r.getRules().size());
+        assertEquals("y", r.apply("x", false));
+    }
+
+    @Test
+    public void turnsOffRulesThatBacktrackTooMuch() {
+        // Takes seconds without a budget, since (.*a) can split the a's in every possible way
+        RewriteRules r = rules(10000,
+                rule("slow", "(.*a){12}x", "", "both"),
+                rule("after", "!", "?", "both"));
+        String line = repeat('a', 30) + "!";
+
+        assertEquals(repeat('a', 30) + "?", r.apply(line, true));
+        RewriteRules.Rule slow = r.getRules().get(0);
+        assertTrue(slow.getDisabled(), slow.getDisabled().startsWith("took more than 10000 steps"));
+        assertNull(r.getRules().get(1).getDisabled());
+
+        List<String> reports = r.takeReports();
+        assertEquals(1, reports.size());
+        assertTrue(reports.get(0), reports.get(0).startsWith("Rewrite rule slow took more than"));
+        assertTrue(r.takeReports().isEmpty());
+
+        // Stays off without being reported again
+        assertEquals(repeat('a', 30) + "?", r.apply(line, false));
+        assertTrue(r.takeReports().isEmpty());
+    }
+
+    @Test
+    public void chargesMatchingRulesOnlyOnce() {
+        // Finding the match reads about 100 characters, so reading the line a second time
+        // to replace it would go over
+        RewriteRules r = rules(150, rule("end", "z", "!", "both"));
+        String line = repeat('y', 99) + "z";
+        assertEquals(repeat('y', 99) + "!", r.apply(line, true));
+        assertNull(r.getRules().get(0).getDisabled());
+        assertTrue(r.takeReports().isEmpty());
+    }
+}
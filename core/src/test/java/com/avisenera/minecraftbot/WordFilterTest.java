@@ -0,0 +1,117 @@
+package com.avisenera.minecraftbot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Checks what {@link WordFilter} censors.
+ */
+public class WordFilterTest {
+
+    private static WordFilter filter(String... lines) {
+        return new WordFilter(Arrays.asList(lines));
+    }
+
+    @Test
+    public void censorsWholeWordsOnly() {
+        WordFilter f = filter("ass");
+        assertEquals("you *** ", f.censor("you ass "));
+        assertEquals("*** and ***", f.censor("ass and ass"));
+        assertEquals("class assignment", f.censor("class assignment"));
+        assertEquals("_ass", f.censor("_ass")); // underscores belong to words, like in names
+        assertEquals("(***)", f.censor("(ass)"));
+    }
+
+    @Test
+    public void censorsPartsOfWordsWithAsterisks() {
+        assertEquals("****it", filter("darn*").censor("darnit"));
+        assertEquals("bad****", filter("*darn").censor("baddarn"));
+        assertEquals("a****b", filter("*darn*").censor("adarnb"));
+        assertEquals("darnit", filter("*darn").censor("darnit"));
+    }
+
+    @Test
+    public void undoesLeetspeakAndCase() {
+        WordFilter f = filter("hello");
+        assertEquals("*****", f.censor("h3ll0"));
+        assertEquals("*****", f.censor("HeLLo"));
+        assertEquals("say *****!", f.censor("say H3LL0!"));
+        assertEquals('o', WordFilter.fold('0'));
+        assertEquals('i', WordFilter.fold('1'));
+        assertEquals('a', WordFilter.fold('@'));
+        assertEquals('s', WordFilter.fold('$'));
+        assertEquals('x', WordFilter.fold('X'));
+    }
+
+    @Test
+    public void keepsEveryRuleForTheSameWord() {
+        // The whole word rule must not hide the partial one, or the other way around
+        WordFilter f = filter("darn*", "darn");
+        assertEquals("****it ****", f.censor("darnit darn"));
+        assertEquals(2, f.getRules().get(0).getHits());
+        assertEquals(1, f.getRules().get(1).getHits());
+
+        WordFilter g = filter("Darn", "d4rn");
+        assertEquals("****", g.censor("darn"));
+        assertEquals(1, g.getRules().get(0).getHits());
+        assertEquals(1, g.getRules().get(1).getHits());
+    }
+
+    @Test
+    public void matchesExpressionsIgnoringCase() {
+        WordFilter f = filter("regex: f+u+n+");
+        assertEquals("so ****** today", f.censor("so FFuuNN today"));
+        assertTrue(f.getRules().get(0).isRegex());
+        assertEquals(1, f.getRules().get(0).getHits());
+    }
+
+    @Test
+    public void keepsSpacesInsideMatches() {
+        assertEquals("*** ****", filter("regex:bad word").censor("bad word"));
+    }
+
+    @Test
+    public void turnsOffExpressionsThatBacktrackTooMuch() {
+        WordFilter f = new WordFilter(Arrays.asList("regex:(.*a){12}x", "darn"), 10000);
+        String line = "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaa darn";
+        assertEquals("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaa ****", f.censor(line));
+        assertTrue(f.getRules().get(0).getDisabled().startsWith("took more than 10000 steps"));
+
+        List<String> reports = f.takeReports();
+        assertEquals(1, reports.size());
+        assertTrue(reports.get(0), reports.get(0).startsWith("Filter rule regex:(.*a){12}x took more than"));
+        assertTrue(f.takeReports().isEmpty());
+
+        // Stays off without being reported again, while the words are still censored
+        assertEquals("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaa ****", f.censor(line));
+        assertTrue(f.takeReports().isEmpty());
+        assertEquals(2, f.getRules().get(1).getHits());
+    }
+
+    @Test
+    public void reportsBrokenExpressions() {
+        WordFilter f = filter("regex:(unclosed", "fine");
+        assertEquals(1, f.getErrors().size());
+        assertEquals(1, f.getRules().size());
+        assertEquals("****", f.censor("fine"));
+    }
+
+    @Test
+    public void skipsCommentsAndBlankLines() {
+        WordFilter f = filter("# a comment", "", "   ", "*");
+        assertTrue(f.isEmpty());
+        assertEquals("# a comment", f.censor("# a comment"));
+        assertTrue(WordFilter.NONE.isEmpty());
+    }
+
+    @Test
+    public void leavesTextWithoutMatchesAlone() {
+        String text = "nothing to see here";
+        assertTrue(text == filter("darn", "regex:x+y").censor(text));
+        assertEquals(null, filter("darn").censor(null));
+    }
+}